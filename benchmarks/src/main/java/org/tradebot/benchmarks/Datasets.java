@@ -0,0 +1,169 @@
+package org.tradebot.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.tradebot.domain.MarketEntry;
+import org.tradebot.domain.OrderBook;
+import org.tradebot.journal.EventType;
+import org.tradebot.journal.JournalDecoder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Inputs of the benchmarks. Synthetic data is a seeded random walk, so every run sees the same messages.
+ * Recorded bars are read from the event journal of a real run ({@code output/journal/}).
+ */
+public final class Datasets {
+
+    public static final String SYNTHETIC = "synthetic";
+    public static final long SEED = 20_240_101L;
+    public static final long START_TIME = 1_735_689_600_000L;
+    public static final double START_PRICE = 97_000.0;
+    public static final long BAR_PERIOD = 100L;
+
+    private static final double TICK = 0.1;
+
+    private Datasets() {  }
+
+    /**
+     * Bars of the dataset: {@link #SYNTHETIC} or a path to a journal file or directory.
+     */
+    public static TreeMap<Long, MarketEntry> bars(String dataset, int syntheticCount) {
+        return SYNTHETIC.equals(dataset) ? syntheticBars(new Random(SEED), syntheticCount) : recordedBars(Path.of(dataset));
+    }
+
+    /**
+     * 100 ms bars of a random walk with occasional bursts, ~0.3 bps volatility per bar or ~3% a day.
+     */
+    public static TreeMap<Long, MarketEntry> syntheticBars(Random random, int count) {
+        TreeMap<Long, MarketEntry> bars = new TreeMap<>();
+        double price = START_PRICE;
+        for (int i = 0; i < count; i++) {
+            double drift = random.nextGaussian() * START_PRICE * 3e-5 * (random.nextInt(200) == 0 ? 5 : 1);
+            double high = round(Math.max(price, price + drift) + random.nextInt(5) * TICK);
+            double low = round(Math.min(price, price + drift) - random.nextInt(5) * TICK);
+            price += drift;
+            bars.put(START_TIME + i * BAR_PERIOD, new MarketEntry(high, low, round3(random.nextExponential() * 2)));
+        }
+        return bars;
+    }
+
+    public static TreeMap<Long, MarketEntry> recordedBars(Path journal) {
+        StringWriter writer = new StringWriter();
+        try {
+            JournalDecoder.decode(journal, EventType.BAR, true, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read journal " + journal, e);
+        }
+        TreeMap<Long, MarketEntry> bars = new TreeMap<>();
+        writer.toString().lines().map(JSONObject::new).forEach(bar -> bars.put(bar.getLong("timestamp"),
+                new MarketEntry(bar.getDouble("high"), bar.getDouble("low"), bar.getDouble("volume"))));
+        if (bars.isEmpty()) {
+            throw new IllegalStateException("No bars found in journal " + journal);
+        }
+        return bars;
+    }
+
+    /**
+     * Raw aggTrade frames as received from the market stream.
+     */
+    public static List<String> aggTradeFrames(Random random, int count) {
+        List<String> frames = new ArrayList<>(count);
+        double price = START_PRICE;
+        long time = START_TIME;
+        long tradeId = 2_400_000_000L;
+        for (int i = 0; i < count; i++) {
+            price = round(price + (random.nextInt(7) - 3) * TICK);
+            time += random.nextInt(20);
+            long firstId = tradeId + 1;
+            tradeId += 1 + random.nextInt(4);
+            frames.add(String.format(
+                    "{\"e\":\"aggTrade\",\"E\":%d,\"a\":%d,\"s\":\"BTCUSDT\",\"p\":\"%.1f\",\"q\":\"%.3f\",\"f\":%d,\"l\":%d,\"T\":%d,\"m\":%s}",
+                    time + 3, tradeId / 3, price, 0.001 + random.nextInt(500) / 1000.0, firstId, tradeId, time, random.nextBoolean()));
+        }
+        return frames;
+    }
+
+    /**
+     * Raw ORDER_TRADE_UPDATE frames of the user stream, a quarter of them filled.
+     */
+    public static List<String> orderUpdateFrames(Random random, int count) {
+        String[] statuses = {"NEW", "PARTIALLY_FILLED", "FILLED", "CANCELED"};
+        List<String> frames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double price = round(START_PRICE + random.nextGaussian() * 100);
+            frames.add(String.format(
+                    "{\"e\":\"ORDER_TRADE_UPDATE\",\"E\":%d,\"T\":%d,\"o\":{\"s\":\"BTCUSDT\",\"c\":\"order_%d\",\"S\":\"SELL\",\"o\":\"STOP_MARKET\"," +
+                            "\"f\":\"GTC\",\"q\":\"0.010\",\"p\":\"0\",\"ap\":\"%.1f\",\"sp\":\"%.1f\",\"x\":\"TRADE\",\"X\":\"%s\",\"i\":%d," +
+                            "\"l\":\"0.010\",\"z\":\"0.010\",\"L\":\"%.1f\",\"N\":\"USDT\",\"n\":\"0.38\",\"T\":%d,\"t\":%d,\"b\":\"0\",\"a\":\"0\"," +
+                            "\"m\":false,\"R\":true,\"wt\":\"CONTRACT_PRICE\",\"ot\":\"STOP_MARKET\",\"ps\":\"BOTH\",\"cp\":false,\"rp\":\"0\"}}",
+                    START_TIME + i, START_TIME + i, i, price, price, statuses[random.nextInt(statuses.length)],
+                    8_000_000_000L + i, price, START_TIME + i, 5_000_000L + i));
+        }
+        return frames;
+    }
+
+    /**
+     * Snapshot with {@code depth} levels per side around {@link #START_PRICE}.
+     */
+    public static OrderBook orderBookSnapshot(Random random, long lastUpdateId, int depth) {
+        Map<Double, Double> asks = new HashMap<>();
+        Map<Double, Double> bids = new HashMap<>();
+        for (int i = 0; i < depth; i++) {
+            asks.put(round(START_PRICE + TICK * (i + 1)), round3(0.001 + random.nextExponential()));
+            bids.put(round(START_PRICE - TICK * i), round3(0.001 + random.nextExponential()));
+        }
+        return new OrderBook(lastUpdateId, asks, bids);
+    }
+
+    /**
+     * Continuous depthUpdate diffs following the snapshot, levels near the top change more often and
+     * ~20% of the changes remove a level.
+     */
+    public static List<JSONObject> depthUpdates(Random random, long firstUpdateId, int count, int levelsPerUpdate) {
+        List<JSONObject> updates = new ArrayList<>(count);
+        long previous = firstUpdateId - 1;
+        for (int i = 0; i < count; i++) {
+            long first = previous + 1;
+            long last = first + random.nextInt(10);
+            updates.add(new JSONObject()
+                    .put("e", "depthUpdate")
+                    .put("E", START_TIME + i * 5L)
+                    .put("U", first)
+                    .put("u", last)
+                    .put("pu", previous)
+                    .put("a", levels(random, levelsPerUpdate, 1))
+                    .put("b", levels(random, levelsPerUpdate, -1)));
+            previous = last;
+        }
+        return updates;
+    }
+
+    private static JSONArray levels(Random random, int count, int direction) {
+        JSONArray levels = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            int distance = (int) Math.min(999, random.nextExponential() * 20);
+            double price = round(START_PRICE + direction * TICK * (direction > 0 ? distance + 1 : distance));
+            String quantity = random.nextInt(5) == 0 ? "0.000" : String.format("%.3f", 0.001 + random.nextExponential());
+            levels.put(new JSONArray().put(String.format("%.1f", price)).put(quantity));
+        }
+        return levels;
+    }
+
+    private static double round(double price) {
+        return Math.round(price / TICK) * TICK;
+    }
+
+    private static double round3(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,143 @@
+package org.tradebot.benchmarks;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tradebot.binance.UserDataDecoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of market and user stream frames: {@code JSONObject} as used by the WebSocket services against
+ * field scanning. The aggTrade scanner is a candidate for the market stream, the user stream already uses
+ * {@link UserDataDecoder}. Compare time and gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    private static final int FRAMES = 4096;
+
+    private String[] aggTrades;
+    private String[] orderUpdates;
+    private int index;
+
+    private final AggTradeDecoder aggTradeDecoder = new AggTradeDecoder();
+    private final UserDataDecoder userDataDecoder = new UserDataDecoder();
+
+    @Setup
+    public void setup() {
+        aggTrades = Datasets.aggTradeFrames(new Random(Datasets.SEED), FRAMES).toArray(String[]::new);
+        orderUpdates = Datasets.orderUpdateFrames(new Random(Datasets.SEED), FRAMES).toArray(String[]::new);
+    }
+
+    private int next() {
+        index = (index + 1) & (FRAMES - 1);
+        return index;
+    }
+
+    @Benchmark
+    public void aggTradeJsonObject(Blackhole blackhole) {
+        JSONObject message = new JSONObject(aggTrades[next()]);
+        blackhole.consume(message.getString("e"));
+        blackhole.consume(Double.parseDouble(message.getString("p")));
+        blackhole.consume(Double.parseDouble(message.getString("q")));
+        blackhole.consume(message.getLong("T"));
+    }
+
+    @Benchmark
+    public void aggTradeScanner(Blackhole blackhole) {
+        AggTradeDecoder decoder = aggTradeDecoder;
+        decoder.decode(aggTrades[next()]);
+        blackhole.consume(decoder.price);
+        blackhole.consume(decoder.quantity);
+        blackhole.consume(decoder.tradeTime);
+    }
+
+    @Benchmark
+    public void orderUpdateJsonObject(Blackhole blackhole) {
+        JSONObject message = new JSONObject(orderUpdates[next()]);
+        JSONObject order = message.getJSONObject("o");
+        blackhole.consume(message.getString("e"));
+        blackhole.consume(order.getString("c"));
+        blackhole.consume(order.getString("X"));
+        blackhole.consume(Double.parseDouble(order.getString("ap")));
+        blackhole.consume(Double.parseDouble(order.getString("z")));
+    }
+
+    @Benchmark
+    public void orderUpdateDecoder(Blackhole blackhole) {
+        UserDataDecoder decoder = userDataDecoder;
+        blackhole.consume(decoder.decode(orderUpdates[next()]));
+        UserDataDecoder.OrderUpdate update = decoder.orderUpdate();
+        blackhole.consume(update.clientId());
+        blackhole.consume(update.status());
+        blackhole.consume(update.averagePrice());
+        blackhole.consume(update.filledQuantity());
+    }
+
+    /**
+     * Reads price, quantity and trade time of an aggTrade frame by their keys without building a tree.
+     * Binance sends the fields in a fixed order, so every search starts after the previous field.
+     */
+    static final class AggTradeDecoder {
+
+        private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+        double price;
+        double quantity;
+        long tradeTime;
+
+        boolean decode(String msg) {
+            int start = msg.indexOf("\"p\":\"");
+            if (start < 0) {
+                return false;
+            }
+            int end = msg.indexOf('"', start + 5);
+            price = parseDecimal(msg, start + 5, end);
+            start = msg.indexOf("\"q\":\"", end);
+            end = msg.indexOf('"', start + 5);
+            quantity = parseDecimal(msg, start + 5, end);
+            start = msg.indexOf("\"T\":", end);
+            tradeTime = parseLong(msg, start + 4);
+            return true;
+        }
+
+        private static double parseDecimal(String msg, int start, int end) {
+            long mantissa = 0;
+            int scale = -1;
+            for (int i = start; i < end; i++) {
+                char c = msg.charAt(i);
+                if (c == '.' && scale < 0) {
+                    scale = 0;
+                } else if (c >= '0' && c <= '9' && end - start <= 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (scale >= 0) {
+                        scale++;
+                    }
+                } else {
+                    return Double.parseDouble(msg.substring(start, end));
+                }
+            }
+            return scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        }
+
+        private static long parseLong(String msg, int start) {
+            long value = 0;
+            for (int i = start; i < msg.length(); i++) {
+                char c = msg.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.tradebot.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.tradebot.binance.HttpClient;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query building and HMAC signing of a signed request, the work done before every order is sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpClientBenchmark {
+
+    private SigningClient client;
+    private Map<String, String> params;
+
+    @Setup
+    public void setup() {
+        client = new SigningClient();
+        params = new HashMap<>();
+        params.put("symbol", "BTCUSDT");
+        params.put("side", "SELL");
+        params.put("type", "STOP_MARKET");
+        params.put("quantity", "0.015");
+        params.put("stopPrice", "96512.3");
+        params.put("newClientOrderId", "stop_1735689600000");
+        params.put("workingType", "MARK_PRICE");
+        params.put("reduceOnly", "true");
+        params.put("recvWindow", "5000");
+        params.put("timestamp", String.valueOf(Datasets.START_TIME));
+    }
+
+    @Benchmark
+    public String query() {
+        return client.query(params);
+    }
+
+    @Benchmark
+    public String signature() throws Exception {
+        return client.signature(params);
+    }
+
+    /**
+     * Exposes the protected request building steps.
+     */
+    static final class SigningClient extends HttpClient {
+
+        SigningClient() {
+            // example key pair of the Binance API documentation
+            super("vmPUZE6mv9SD5VNHk4HlWFsOr6aKE2zvsw0MuIgwCIPy6utIco14y7Ju91duEh8A",
+                    "NhqPtmdSJYdKjVHjA7PZj4Mge3R5YNiP1e3UZjInClVN65XAbvqqM6A7H5fATj0j", 0);
+        }
+
+        String query(Map<String, String> params) {
+            return getParamsString(params);
+        }
+
+        String signature(Map<String, String> params) throws Exception {
+            return generateSignature(params);
+        }
+    }
+}
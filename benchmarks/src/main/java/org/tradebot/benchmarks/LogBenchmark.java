@@ -0,0 +1,77 @@
+package org.tradebot.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tradebot.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a disabled debug call. Run with {@code java -jar benchmarks/target/benchmarks.jar LogBenchmark -prof gc}
+ * and compare gc.alloc.rate.norm: eager formatting allocates on every call, the lazy overloads should not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark {
+
+    private static final String LOGGER_PATH = "benchmark";
+
+    private Log log;
+    private Map<String, String> headers;
+    private double price;
+    private long time;
+
+    @Setup
+    public void setup() {
+        Log.setLevel(LOGGER_PATH, Log.Level.INFO);
+        log = new Log(LOGGER_PATH + "/");
+        headers = new HashMap<>();
+        headers.put("Content-Type", "application/json;charset=UTF-8");
+        headers.put("X-MBX-USED-WEIGHT-1M", "17");
+        price = 97_345.12;
+        time = System.currentTimeMillis();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Log.setLevel(LOGGER_PATH, null);
+    }
+
+    @Benchmark
+    public void eagerFormat() {
+        log.debug(String.format("Response headers: %s", headers));
+    }
+
+    @Benchmark
+    public void eagerConcat() {
+        log.debug("entry :: " + price + " at " + time);
+    }
+
+    @Benchmark
+    public void supplier() {
+        log.debug(() -> String.format("Response headers: %s", headers));
+    }
+
+    @Benchmark
+    public void parameters() {
+        log.debugf("entry :: %s at %s", price, time);
+    }
+
+    @Benchmark
+    public void guard() {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Response headers: %s", headers));
+        }
+    }
+
+    @Benchmark
+    public void baseline(Blackhole blackhole) {
+        blackhole.consume(headers);
+    }
+}
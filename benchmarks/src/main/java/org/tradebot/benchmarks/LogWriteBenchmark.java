@@ -0,0 +1,55 @@
+package org.tradebot.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.tradebot.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of enabled log calls into output/logs/benchmark_write/. The ring applies backpressure when it is full,
+ * so after the first iterations the score is the rate the writer thread formats and writes entries to the file.
+ * Run with {@code -t 4} to see the producers contending on the ring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogWriteBenchmark {
+
+    private static final String LOGGER_PATH = "benchmark_write";
+
+    private Log log;
+    private double price;
+    private long time;
+
+    @Setup
+    public void setup() {
+        Log.setLevel(LOGGER_PATH, Log.Level.DEBUG);
+        log = new Log(LOGGER_PATH + "/");
+        price = 97_345.12;
+        time = Datasets.START_TIME;
+    }
+
+    @TearDown
+    public void tearDown() {
+        Log.flush();
+        Log.setLevel(LOGGER_PATH, null);
+    }
+
+    @Benchmark
+    public void debug() {
+        log.debug("Checking progress...");
+    }
+
+    @Benchmark
+    public void debugf() {
+        log.debugf("entry :: %s at %s", price, time);
+    }
+
+    @Benchmark
+    public void info() {
+        log.info("Imbalance is not in progress");
+    }
+}
@@ -0,0 +1,131 @@
+package org.tradebot.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.tradebot.binance.OrderBookHandler;
+import org.tradebot.domain.OrderBook;
+import org.tradebot.domain.OrderBookSide;
+import org.tradebot.util.Log;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Depth updates of {@link OrderBookHandler} on a book of 1000 levels per side and the top-N reads of the
+ * other threads, alone and while the book is updated. The snapshot is injected instead of the REST call,
+ * the update ids of the dataset are chained into a loop, so the book never resyncs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+
+    private static final String LOGGER_PATH = "order_book";
+    private static final int DEPTH = 1000;
+    private static final int UPDATES = 16 * 1024;
+    private static final long FIRST_UPDATE_ID = 5_000_000_000L;
+
+    @Param({"5"})
+    public int topLevels;
+
+    private OrderBookHandler handler;
+    private OrderBookSide side;
+    private JSONObject[] updates;
+    private double[][] bidLevels;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        Log.setLevel(LOGGER_PATH, Log.Level.INFO);
+        Random random = new Random(Datasets.SEED);
+        OrderBook snapshot = Datasets.orderBookSnapshot(random, FIRST_UPDATE_ID, DEPTH);
+        List<JSONObject> diffs = Datasets.depthUpdates(random, FIRST_UPDATE_ID, UPDATES, 10);
+        updates = diffs.toArray(JSONObject[]::new);
+        bidLevels = new double[UPDATES][];
+        for (int i = 0; i < UPDATES; i++) {
+            JSONArray bids = updates[i].getJSONArray("b");
+            bidLevels[i] = new double[bids.length() * 2];
+            for (int level = 0; level < bids.length(); level++) {
+                bidLevels[i][level * 2] = bids.getJSONArray(level).getDouble(0);
+                bidLevels[i][level * 2 + 1] = bids.getJSONArray(level).getDouble(1);
+            }
+        }
+
+        handler = OrderBookHandler.getInstance();
+        handler.setInitializationStateCallback(_ -> { });
+        Field fetchedSnapshot = OrderBookHandler.class.getDeclaredField("fetchedSnapshot");
+        fetchedSnapshot.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        AtomicReference<OrderBook> reference = (AtomicReference<OrderBook>) fetchedSnapshot.get(handler);
+        reference.set(snapshot);
+        for (JSONObject update : updates) {
+            handler.onMessage(update);
+        }
+        updates[0].put("pu", updates[UPDATES - 1].getLong("u"));
+
+        side = new OrderBookSide(OrderBookSide.Type.BID, DEFAULT_PRECISION.price(), ORDER_BOOK_FEATURE_DEPTH);
+        snapshot.bids().forEach(side::update);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Log.setLevel(LOGGER_PATH, null);
+    }
+
+    private int nextIndex() {
+        int current = index;
+        index = (index + 1) & (UPDATES - 1);
+        return current;
+    }
+
+    @Benchmark
+    public void handlerUpdate() {
+        handler.onMessage(updates[nextIndex()]);
+    }
+
+    /**
+     * Only the bid side of the book with the levels decoded in advance, without JSON access and publishing.
+     */
+    @Benchmark
+    public double sideUpdate() {
+        double[] levels = bidLevels[nextIndex()];
+        for (int i = 0; i < levels.length; i += 2) {
+            side.update(levels[i], levels[i + 1]);
+        }
+        return side.bestPrice();
+    }
+
+    @Benchmark
+    public Object snapshot() {
+        return handler.getSnapshot();
+    }
+
+    @Benchmark
+    public Map<Double, Double> topBids() {
+        return handler.getBids(topLevels);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedUpdate() {
+        handler.onMessage(updates[nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public Object contendedSnapshot() {
+        return handler.getSnapshot();
+    }
+}
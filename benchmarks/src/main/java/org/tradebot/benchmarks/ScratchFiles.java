@@ -0,0 +1,47 @@
+package org.tradebot.benchmarks;
+
+import org.tradebot.journal.EventJournal;
+import org.tradebot.service.ImbalanceService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.tradebot.util.Settings.IMBALANCE_CHECKPOINT_FILE_NAME;
+
+/**
+ * Temporary directory for the files the bot services write while they are measured: the imbalance checkpoint and
+ * the event journal segments. The files of the bot in {@code output/} are not touched.
+ */
+public final class ScratchFiles {
+
+    private ScratchFiles() {  }
+
+    /**
+     * Creates the directory and points the checkpoint and the event journal to it.
+     */
+    public static Path redirect(String prefix) {
+        try {
+            Path directory = Files.createTempDirectory(prefix);
+            ImbalanceService.getInstance().setCheckpointPath(directory.resolve(IMBALANCE_CHECKPOINT_FILE_NAME));
+            EventJournal.getInstance().setDirectory(directory.resolve("journal"));
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the directory, the checkpoint thread may still be writing, so a failure is only reported.
+     */
+    public static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.tradebot.binance;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.tradebot.benchmarks.Datasets;
+import org.tradebot.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bar of {@link TradeHandler}: the trades of 100 ms are queued from the WebSocket thread and aggregated
+ * into a bar on the task thread, including the journal write. Trades are decoded before the measurement.
+ * The benchmark is in the package of the handler to call {@code updateMarketPrice()} directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradeHandlerBenchmark {
+
+    private static final String LOGGER_PATH = "market_data";
+
+    @Param({"10", "100", "1000"})
+    public int tradesPerBar;
+
+    private TradeHandler tradeHandler;
+    private JSONObject[] trades;
+    private int index;
+
+    @Setup
+    public void setup() {
+        Log.setLevel(LOGGER_PATH, Log.Level.INFO);
+        tradeHandler = TradeHandler.getInstance();
+        trades = Datasets.aggTradeFrames(new Random(Datasets.SEED), 16 * 1024).stream()
+                .map(JSONObject::new)
+                .toArray(JSONObject[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Log.setLevel(LOGGER_PATH, null);
+    }
+
+    @Benchmark
+    public void bar() {
+        for (int i = 0; i < tradesPerBar; i++) {
+            tradeHandler.onMessage(trades[index]);
+            index = (index + 1) % trades.length;
+        }
+        tradeHandler.updateMarketPrice();
+    }
+}
@@ -0,0 +1,163 @@
+package org.tradebot.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Order book of the emulator in ticks, kept around the last trade price. Every diff gets the next update ids
+ * ({@code U} = previous {@code u} + 1, {@code pu} = previous {@code u}) and the snapshot is taken under the same
+ * lock, so a client following the Binance sync procedure always finds the diff that continues the snapshot.
+ */
+final class DepthBook {
+
+    private static final double TICK = 0.1;
+    private static final int LEVELS = 1000;
+    private static final int CHANGES_PER_SIDE = 5;
+    private static final int GAP_LEVELS = 10;
+
+    private final NavigableMap<Long, Long> bids = new TreeMap<>(Collections.reverseOrder());
+    private final NavigableMap<Long, Long> asks = new TreeMap<>();
+    private final Random random;
+    private long lastUpdateId = 1_000_000L;
+
+    DepthBook(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Moves the book to the price and changes a few levels near the top, returns the depthUpdate frame
+     * or null before the first price.
+     */
+    synchronized String diff(double price, long eventTime) {
+        long priceTick = Math.round(price / TICK);
+        if (asks.isEmpty()) {
+            fill(asks, priceTick + 1, 1);
+            fill(bids, priceTick, -1);
+        }
+        List<long[]> askChanges = new ArrayList<>();
+        List<long[]> bidChanges = new ArrayList<>();
+
+        removeCrossed(asks.headMap(priceTick, true), askChanges);
+        removeCrossed(bids.headMap(priceTick + 1, true), bidChanges);
+        closeGap(asks, priceTick + 1, 1, askChanges);
+        closeGap(bids, priceTick, -1, bidChanges);
+        extend(asks, asks.lastKey() + 1, 1, askChanges);
+        extend(bids, bids.lastKey() - 1, -1, bidChanges);
+        change(asks, asks.firstKey(), 1, askChanges);
+        change(bids, bids.firstKey(), -1, bidChanges);
+
+        long first = lastUpdateId + 1;
+        long last = first + random.nextInt(10);
+        StringBuilder frame = new StringBuilder(512)
+                .append("{\"e\":\"depthUpdate\",\"E\":").append(eventTime)
+                .append(",\"T\":").append(eventTime)
+                .append(",\"s\":\"BTCUSDT\",\"U\":").append(first)
+                .append(",\"u\":").append(last)
+                .append(",\"pu\":").append(lastUpdateId)
+                .append(",\"b\":");
+        appendLevels(frame, bidChanges);
+        frame.append(",\"a\":");
+        appendLevels(frame, askChanges);
+        frame.append('}');
+        lastUpdateId = last;
+        return frame.toString();
+    }
+
+    /**
+     * Response of {@code GET /fapi/v1/depth}.
+     */
+    synchronized String snapshot(int limit, long time) {
+        StringBuilder response = new StringBuilder(limit * 40)
+                .append("{\"lastUpdateId\":").append(lastUpdateId)
+                .append(",\"E\":").append(time)
+                .append(",\"T\":").append(time)
+                .append(",\"bids\":");
+        appendLevels(response, top(bids, limit));
+        response.append(",\"asks\":");
+        appendLevels(response, top(asks, limit));
+        return response.append('}').toString();
+    }
+
+    private void fill(NavigableMap<Long, Long> side, long from, int direction) {
+        for (int i = 0; i < LEVELS; i++) {
+            side.put(from + (long) direction * i, quantity());
+        }
+    }
+
+    private static void removeCrossed(NavigableMap<Long, Long> crossed, List<long[]> changes) {
+        crossed.keySet().forEach(tick -> changes.add(new long[]{tick, 0}));
+        crossed.clear();
+    }
+
+    /**
+     * Adds up to {@link #GAP_LEVELS} levels between the price and the best level after the price moved away,
+     * the farthest levels are removed to keep the depth.
+     */
+    private void closeGap(NavigableMap<Long, Long> side, long from, int direction, List<long[]> changes) {
+        long best = side.isEmpty() ? from + (long) direction * GAP_LEVELS : side.firstKey();
+        for (long tick = from; tick != best && Math.abs(tick - from) < GAP_LEVELS; tick += direction) {
+            long quantity = quantity();
+            side.put(tick, quantity);
+            changes.add(new long[]{tick, quantity});
+        }
+        while (side.size() > LEVELS) {
+            changes.add(new long[]{side.pollLastEntry().getKey(), 0});
+        }
+    }
+
+    private void extend(NavigableMap<Long, Long> side, long from, int direction, List<long[]> changes) {
+        for (long tick = from; side.size() < LEVELS; tick += direction) {
+            long quantity = quantity();
+            side.put(tick, quantity);
+            changes.add(new long[]{tick, quantity});
+        }
+    }
+
+    private void change(NavigableMap<Long, Long> side, long best, int direction, List<long[]> changes) {
+        for (int i = 0; i < CHANGES_PER_SIDE; i++) {
+            long tick = best + direction * (long) Math.min(LEVELS - 1, random.nextExponential() * 10);
+            long quantity = random.nextInt(5) == 0 && side.size() > LEVELS / 2 ? 0 : quantity();
+            if (quantity == 0) {
+                side.remove(tick);
+            } else {
+                side.put(tick, quantity);
+            }
+            changes.add(new long[]{tick, quantity});
+        }
+    }
+
+    private long quantity() {
+        return 1 + (long) (random.nextExponential() * 1000);
+    }
+
+    private static List<long[]> top(NavigableMap<Long, Long> side, int limit) {
+        List<long[]> levels = new ArrayList<>(limit);
+        for (Map.Entry<Long, Long> level : side.entrySet()) {
+            if (levels.size() == limit) {
+                break;
+            }
+            levels.add(new long[]{level.getKey(), level.getValue()});
+        }
+        return levels;
+    }
+
+    private static void appendLevels(StringBuilder out, List<long[]> levels) {
+        out.append('[');
+        for (int i = 0; i < levels.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("[\"");
+            Frames.appendDecimal(out, levels.get(i)[0], 1);
+            out.append("\",\"");
+            Frames.appendDecimal(out, levels.get(i)[1], 3);
+            out.append("\"]");
+        }
+        out.append(']');
+    }
+}
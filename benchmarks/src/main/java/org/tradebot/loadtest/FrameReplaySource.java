@@ -0,0 +1,80 @@
+package org.tradebot.loadtest;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Replays aggTrade frames recorded from the stream, one frame per line, plain or wrapped in the combined stream
+ * format. Other events are skipped, the depth stream is generated from the replayed prices.
+ */
+final class FrameReplaySource implements TradeSource {
+
+    private final Path path;
+    private final BufferedReader reader;
+    private final Trade first = new Trade();
+    private boolean firstPending;
+
+    FrameReplaySource(Path path) throws IOException {
+        this.path = path;
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        if (!read(first)) {
+            throw new IllegalArgumentException("No aggTrade frames in " + path);
+        }
+        firstPending = true;
+    }
+
+    @Override
+    public boolean next(Trade trade) {
+        if (firstPending) {
+            firstPending = false;
+            trade.time = first.time;
+            trade.price = first.price;
+            trade.quantity = first.quantity;
+            trade.buyerMaker = first.buyerMaker;
+            return true;
+        }
+        return read(trade);
+    }
+
+    private boolean read(Trade trade) {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject frame = new JSONObject(line);
+                if (frame.has("data")) {
+                    frame = frame.getJSONObject("data");
+                }
+                if (!"aggTrade".equals(frame.optString("e"))) {
+                    continue;
+                }
+                trade.time = frame.optLong("T", frame.getLong("E"));
+                trade.price = Double.parseDouble(frame.getString("p"));
+                trade.quantity = Double.parseDouble(frame.getString("q"));
+                trade.buyerMaker = frame.optBoolean("m");
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    @Override
+    public double startPrice() {
+        return first.price;
+    }
+
+    @Override
+    public String name() {
+        return "replay-frames";
+    }
+}
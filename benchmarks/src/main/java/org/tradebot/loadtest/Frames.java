@@ -0,0 +1,40 @@
+package org.tradebot.loadtest;
+
+/**
+ * Frames of the Binance futures market stream.
+ */
+final class Frames {
+
+    private static final long[] SCALES = {1, 10, 100, 1000};
+
+    private Frames() {  }
+
+    static String aggTrade(Trade trade, long aggregateId, long firstTradeId, long lastTradeId, long eventTime) {
+        StringBuilder frame = new StringBuilder(160)
+                .append("{\"e\":\"aggTrade\",\"E\":").append(eventTime)
+                .append(",\"a\":").append(aggregateId)
+                .append(",\"s\":\"BTCUSDT\",\"p\":\"");
+        appendDecimal(frame, Math.round(trade.price * 10), 1);
+        frame.append("\",\"q\":\"");
+        appendDecimal(frame, Math.round(trade.quantity * 1000), 3);
+        return frame.append("\",\"f\":").append(firstTradeId)
+                .append(",\"l\":").append(lastTradeId)
+                .append(",\"T\":").append(eventTime)
+                .append(",\"m\":").append(trade.buyerMaker)
+                .append('}')
+                .toString();
+    }
+
+    /**
+     * Appends {@code units / 10^scale} with exactly {@code scale} decimals.
+     */
+    static void appendDecimal(StringBuilder out, long units, int scale) {
+        long divisor = SCALES[scale];
+        out.append(units / divisor).append('.');
+        String fraction = Long.toString(units % divisor);
+        for (int i = fraction.length(); i < scale; i++) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+}
@@ -0,0 +1,71 @@
+package org.tradebot.loadtest;
+
+import org.json.JSONObject;
+import org.tradebot.journal.EventType;
+import org.tradebot.journal.JournalDecoder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays the 100 ms bars of an event journal. The journal has no single trades, so every bar becomes trades at
+ * its low and high and random prices between them, as many as the base rate gives for 100 ms, with the bar volume
+ * split between them.
+ */
+final class JournalReplaySource implements TradeSource {
+
+    private final List<JSONObject> bars;
+    private final double tradesPerBar;
+    private final Random random;
+    private int bar = -1;
+    private int tradeInBar;
+    private int tradesInBar;
+
+    JournalReplaySource(Path path, double tradesPerSecond, long seed) throws IOException {
+        StringWriter writer = new StringWriter();
+        JournalDecoder.decode(path, EventType.BAR, true, writer);
+        this.bars = writer.toString().lines().map(JSONObject::new).toList();
+        if (bars.isEmpty()) {
+            throw new IllegalArgumentException("No bars in journal " + path);
+        }
+        this.tradesPerBar = tradesPerSecond / 10;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public boolean next(Trade trade) {
+        if (bar < 0 || tradeInBar == tradesInBar) {
+            if (++bar == bars.size()) {
+                return false;
+            }
+            tradeInBar = 0;
+            tradesInBar = 2 + (int) (random.nextExponential() * tradesPerBar);
+        }
+        JSONObject current = bars.get(bar);
+        double low = current.getDouble("low");
+        double high = current.getDouble("high");
+        trade.time = current.getLong("timestamp") + 100L * tradeInBar / tradesInBar;
+        trade.price = switch (tradeInBar) {
+            case 0 -> low;
+            case 1 -> high;
+            default -> Math.round((low + random.nextDouble() * (high - low)) * 10) / 10.0;
+        };
+        trade.quantity = Math.max(0.001, Math.round(current.getDouble("volume") / tradesInBar * 1000) / 1000.0);
+        trade.buyerMaker = random.nextBoolean();
+        tradeInBar++;
+        return true;
+    }
+
+    @Override
+    public double startPrice() {
+        return bars.getFirst().getDouble("low");
+    }
+
+    @Override
+    public String name() {
+        return "replay-journal";
+    }
+}
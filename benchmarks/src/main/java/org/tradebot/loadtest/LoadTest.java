@@ -0,0 +1,237 @@
+package org.tradebot.loadtest;
+
+import org.json.JSONObject;
+import org.tradebot.benchmarks.ScratchFiles;
+import org.tradebot.binance.MarketDataWebSocketService;
+import org.tradebot.binance.OrderBookHandler;
+import org.tradebot.binance.TradeHandler;
+import org.tradebot.service.ImbalanceService;
+import org.tradebot.util.Metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Runs the market data pipeline of the bot (MarketDataWebSocketService, TradeHandler, ImbalanceService and the
+ * order book if enabled) against {@link MarketStreamServer} and reports delivery, latency and CPU.
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar org.tradebot.loadtest.LoadTest [options]}
+ * <ul>
+ *   <li>{@code --regime trend|cascade|imbalance} synthetic market, default imbalance</li>
+ *   <li>{@code --replay <file>} aggTrade frames, one per line, or an event journal file or directory</li>
+ *   <li>{@code --speed 10} multiple of real time</li>
+ *   <li>{@code --rate 50} base trades per second of the synthetic regimes</li>
+ *   <li>{@code --duration 60} wall-clock seconds</li>
+ *   <li>{@code --port 9500} WebSocket port, REST is served on the next port</li>
+ *   <li>{@code --seed 1}</li>
+ * </ul>
+ * The report is printed and written to {@code output/loadtest/}, the imbalance checkpoint and the event journal
+ * are written to a temporary directory deleted at the end. Add {@code -Dtradebot.log.level=INFO}
+ * to leave the debug logs out of the measurement.
+ */
+public class LoadTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final double SYNTHETIC_START_PRICE = 97_000.0;
+    private static final long READY_TIMEOUT = 10_000L;
+    private static final long DRAIN_TIMEOUT = 30_000L;
+    private static final long SETTLE_TIME = 500L;
+    private static final String[] EMULATOR_THREADS = {"WebSocketSelector", "WebSocketWorker", "load-generator", "HTTP-Dispatcher"};
+    private static final String[] STAGES = {Metrics.MARKET_EVENT_TO_RECEIVE, Metrics.MARKET_WS_RECEIVE_TO_DECODE,
+            Metrics.DECODE_TO_BAR, Metrics.BAR_TO_DECISION};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        double speed = Double.parseDouble(options.getOrDefault("speed", "10"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "50"));
+        long duration = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("duration", "60")));
+        int port = Integer.parseInt(options.getOrDefault("port", "9500"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        // must be set before the settings are loaded
+        System.setProperty(WEB_SOCKET_URL_PROPERTY, String.format("ws://%s:%d/ws", HOST, port));
+        System.setProperty(BASE_URL_PROPERTY, String.format("http://%s:%d", HOST, port + 1));
+
+        TradeSource source = options.containsKey("replay")
+                ? TradeSource.replay(Path.of(options.get("replay")), rate, seed)
+                : new SyntheticSource(Regime.valueOf(options.getOrDefault("regime", "imbalance").toUpperCase()),
+                        rate, SYNTHETIC_START_PRICE, seed);
+
+        DepthBook book = new DepthBook(seed);
+        MarketStreamServer server = new MarketStreamServer(HOST, port, port + 1, book);
+        server.start();
+
+        Path scratch = ScratchFiles.redirect("loadtest");
+        TradeHandler tradeHandler = TradeHandler.getInstance();
+        ImbalanceService imbalanceService = ImbalanceService.getInstance();
+        OrderBookHandler orderBookHandler = OrderBookHandler.getInstance();
+        MarketDataWebSocketService marketDataWebSocket = MarketDataWebSocketService.getInstance();
+        AtomicLong bars = new AtomicLong();
+        Map<ImbalanceService.State, AtomicLong> transitions = new EnumMap<>(ImbalanceService.State.class);
+        for (ImbalanceService.State state : ImbalanceService.State.values()) {
+            transitions.put(state, new AtomicLong());
+        }
+        tradeHandler.addCallback(imbalanceService);
+        tradeHandler.addCallback((_, _) -> bars.incrementAndGet());
+        imbalanceService.notifyVolatilityUpdate(0, source.startPrice());
+        AtomicReference<ImbalanceService.State> lastState = new AtomicReference<>();
+        imbalanceService.addCallback((_, _, state, _) -> {
+            if (lastState.getAndSet(state) != state) {
+                transitions.get(state).incrementAndGet();
+            }
+        });
+        orderBookHandler.setInitializationStateCallback(marketDataWebSocket);
+        marketDataWebSocket.connect();
+
+        long readyDeadline = System.currentTimeMillis() + READY_TIMEOUT;
+        while (!marketDataWebSocket.getReady() || !server.hasSubscribers(MarketGenerator.AGG_TRADE_STREAM)) {
+            if (System.currentTimeMillis() > readyDeadline) {
+                throw new IllegalStateException("Market data stream is not ready after " + READY_TIMEOUT + " ms");
+            }
+            Thread.sleep(50);
+        }
+
+        // the subscription responses must be received before the baseline
+        Thread.sleep(SETTLE_TIME);
+        System.out.printf("Running %s at %.1fx for %d s...%n", source.name(), speed, TimeUnit.MILLISECONDS.toSeconds(duration));
+        Metrics.getInstance().snapshotAndReset();
+        long responsesBefore = server.getResponses();
+        Map<Long, Long> cpuBefore = botThreadsCpu();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long wallStart = System.nanoTime();
+
+        MarketGenerator generator = new MarketGenerator(source, server, book, speed, duration);
+        Thread generatorThread = new Thread(generator, "load-generator");
+        generatorThread.start();
+        generatorThread.join();
+
+        long drainDeadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        while (server.hasBufferedData() && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        // the last trades are aggregated by the next bar
+        Thread.sleep(300);
+
+        long wallNanos = System.nanoTime() - wallStart;
+        long cpuNanos = cpuSince(cpuBefore);
+        JSONObject interval = Metrics.getInstance().snapshotAndReset();
+        JSONObject latencies = interval.getJSONObject("latencies");
+        JSONObject counters = interval.getJSONObject("counters");
+
+        long sent = generator.getTradesSent() + generator.getDepthUpdatesSent();
+        long received = latencies.has(Metrics.MARKET_WS_RECEIVE_TO_DECODE)
+                ? latencies.getJSONObject(Metrics.MARKET_WS_RECEIVE_TO_DECODE).getLong("count") - (server.getResponses() - responsesBefore)
+                : 0;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("source", source.name());
+        report.put("speed", speed);
+        report.put("baseTradesPerSecond", rate);
+        report.put("durationSeconds", generator.getElapsedNanos() / 1e9);
+        report.put("tradesSent", generator.getTradesSent());
+        report.put("depthUpdatesSent", generator.getDepthUpdatesSent());
+        report.put("messagesPerSecond", Math.round(sent / (generator.getElapsedNanos() / 1e9)));
+        report.put("generatorMaxLagMs", TimeUnit.NANOSECONDS.toMillis(generator.getMaxLagNanos()));
+        report.put("messagesReceived", received);
+        report.put("messagesNotDelivered", sent - received);
+        report.put("tradesDroppedByQueue", counters.optLong(Metrics.TRADES_DROPPED));
+        report.put("bars", bars.get());
+        Map<String, Object> states = new LinkedHashMap<>();
+        transitions.forEach((state, count) -> states.put(state.name(), count.get()));
+        report.put("imbalanceTransitions", states);
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (String stage : STAGES) {
+            if (latencies.has(stage)) {
+                stages.put(stage, latencies.getJSONObject(stage).toMap());
+            }
+        }
+        report.put("latencies", stages);
+        report.put("cpuPerMessageMicros", received == 0 ? 0 : Math.round(cpuNanos / (double) received) / 1000.0);
+        report.put("cpuCores", Math.round(cpuNanos * 100.0 / wallNanos) / 100.0);
+        report.put("gcCount", gcCount() - gcCountBefore);
+        report.put("gcTimeMs", gcTime() - gcTimeBefore);
+
+        String json = new JSONObject(report).toString(4);
+        System.out.println(json);
+        Path file = Path.of(System.getProperty("user.dir"), "output", "loadtest",
+                String.format("%s-%s-x%s.json", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")),
+                        source.name(), options.getOrDefault("speed", "10")));
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, json);
+        System.out.println("Report written to " + file);
+
+        marketDataWebSocket.close();
+        server.stop(1000);
+        ScratchFiles.delete(scratch);
+        System.exit(0);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * CPU time of the threads that belong to the bot, the emulator threads are left out.
+     */
+    private static Map<Long, Long> botThreadsCpu() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> cpu = new HashMap<>();
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && !isEmulatorThread(info.getThreadName())) {
+                long time = threads.getThreadCpuTime(info.getThreadId());
+                if (time >= 0) {
+                    cpu.put(info.getThreadId(), time);
+                }
+            }
+        }
+        return cpu;
+    }
+
+    private static long cpuSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> thread : botThreadsCpu().entrySet()) {
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static boolean isEmulatorThread(String name) {
+        for (String prefix : EMULATOR_THREADS) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return name.equals("main");
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,122 @@
+package org.tradebot.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes the trades of the source at {@code speed} times their original pace and a depth diff every
+ * 100 ms of source time. Frames are stamped with the wall-clock send time, so {@code E} measures the lag
+ * from the emulator to the bot. If the generator cannot keep the pace it sends without waiting and the
+ * largest delay is reported.
+ */
+final class MarketGenerator implements Runnable {
+
+    static final String AGG_TRADE_STREAM = "btcusdt@aggtrade";
+    static final String DEPTH_STREAM = "btcusdt@depth@100ms";
+    private static final long DEPTH_PERIOD = 100L;
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final TradeSource source;
+    private final MarketStreamServer server;
+    private final DepthBook book;
+    private final double speed;
+    private final long durationNanos;
+
+    private volatile boolean running = true;
+    private volatile long tradesSent;
+    private volatile long depthUpdatesSent;
+    private volatile long maxLagNanos;
+    private volatile long elapsedNanos;
+
+    MarketGenerator(TradeSource source, MarketStreamServer server, DepthBook book, double speed, long durationMillis) {
+        this.source = source;
+        this.server = server;
+        this.book = book;
+        this.speed = speed;
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    }
+
+    @Override
+    public void run() {
+        Trade trade = new Trade();
+        long wallStart = System.nanoTime();
+        long sourceStart = -1;
+        long nextDepth = 0;
+        long tradeId = 3_000_000_000L;
+        long aggregateId = 1_000_000_000L;
+        double lastPrice = source.startPrice();
+
+        while (running && source.next(trade)) {
+            if (sourceStart < 0) {
+                sourceStart = trade.time;
+                nextDepth = sourceStart + DEPTH_PERIOD;
+            }
+            while (trade.time >= nextDepth && running) {
+                if (!waitUntil(wallStart, nextDepth - sourceStart)) {
+                    break;
+                }
+                if (server.publish(DEPTH_STREAM, book.diff(lastPrice, System.currentTimeMillis())) > 0) {
+                    depthUpdatesSent++;
+                }
+                nextDepth += DEPTH_PERIOD;
+            }
+            if (!waitUntil(wallStart, trade.time - sourceStart)) {
+                break;
+            }
+            long firstTradeId = tradeId + 1;
+            tradeId += 1 + (long) (trade.quantity * 100) % 4;
+            if (server.publish(AGG_TRADE_STREAM, Frames.aggTrade(trade, ++aggregateId, firstTradeId, tradeId, System.currentTimeMillis())) > 0) {
+                tradesSent++;
+            }
+            lastPrice = trade.price;
+        }
+        elapsedNanos = System.nanoTime() - wallStart;
+        running = false;
+    }
+
+    /**
+     * Waits for the wall-clock time of the source offset, returns false when the run is over.
+     */
+    private boolean waitUntil(long wallStart, long sourceOffset) {
+        long target = wallStart + (long) (TimeUnit.MILLISECONDS.toNanos(sourceOffset) / speed);
+        if (target - wallStart > durationNanos) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now > target) {
+            maxLagNanos = Math.max(maxLagNanos, now - target);
+        }
+        while (target - now > SPIN_NANOS && running) {
+            LockSupport.parkNanos(target - now - SPIN_NANOS);
+            now = System.nanoTime();
+        }
+        while (target - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+        return running;
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    long getTradesSent() {
+        return tradesSent;
+    }
+
+    long getDepthUpdatesSent() {
+        return depthUpdatesSent;
+    }
+
+    long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,188 @@
+package org.tradebot.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local emulator of the Binance futures market stream. Clients subscribe with
+ * {@code {"method":"SUBSCRIBE","params":["btcusdt@aggTrade"],"id":1}} and get {@code {"result":null,"id":1}},
+ * UNSUBSCRIBE and LIST_SUBSCRIPTIONS are supported as well. The REST port serves {@code GET /fapi/v1/depth}
+ * and {@code GET /fapi/v1/time} for the order book sync.
+ */
+final class MarketStreamServer extends WebSocketServer {
+
+    private final Map<String, List<WebSocket>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong responses = new AtomicLong();
+    private final DepthBook book;
+    private final HttpServer restServer;
+
+    MarketStreamServer(String host, int port, int restPort, DepthBook book) throws IOException {
+        super(new InetSocketAddress(host, port));
+        this.book = book;
+        setReuseAddr(true);
+        setTcpNoDelay(true);
+        restServer = HttpServer.create(new InetSocketAddress(host, restPort), 0);
+        restServer.createContext("/fapi/v1/depth", exchange -> {
+            int limit = Integer.parseInt(queryParameter(exchange.getRequestURI(), "limit", "500"));
+            respond(exchange, 200, book.snapshot(limit, System.currentTimeMillis()));
+        });
+        restServer.createContext("/fapi/v1/time", exchange ->
+                respond(exchange, 200, new JSONObject().put("serverTime", System.currentTimeMillis()).toString()));
+        restServer.createContext("/", exchange ->
+                respond(exchange, 404, new JSONObject().put("code", -5000).put("msg", "Path not supported by the emulator").toString()));
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        restServer.start();
+    }
+
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        restServer.stop(0);
+        super.stop(timeout);
+    }
+
+    /**
+     * Sends the frame to every subscriber of the stream, returns the number of receivers.
+     */
+    int publish(String stream, String frame) {
+        List<WebSocket> receivers = subscribers.get(stream);
+        if (receivers == null) {
+            return 0;
+        }
+        int sent = 0;
+        for (WebSocket connection : receivers) {
+            if (connection.isOpen()) {
+                connection.send(frame);
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    boolean hasSubscribers(String stream) {
+        List<WebSocket> receivers = subscribers.get(stream);
+        return receivers != null && !receivers.isEmpty();
+    }
+
+    /**
+     * True while frames are still queued for any connection.
+     */
+    boolean hasBufferedData() {
+        return getConnections().stream().anyMatch(WebSocket::hasBufferedData);
+    }
+
+    /**
+     * Number of subscription responses sent, they arrive on the market stream too.
+     */
+    long getResponses() {
+        return responses.get();
+    }
+
+    @Override
+    public void onOpen(WebSocket connection, ClientHandshake handshake) {
+        connection.setAttachment(ConcurrentHashMap.<String>newKeySet());
+    }
+
+    @Override
+    public void onClose(WebSocket connection, int code, String reason, boolean remote) {
+        Set<String> streams = connection.getAttachment();
+        if (streams != null) {
+            streams.forEach(stream -> subscribers.getOrDefault(stream, List.of()).remove(connection));
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket connection, String message) {
+        Object id = null;
+        try {
+            JSONObject request = new JSONObject(message);
+            id = request.opt("id");
+            Set<String> streams = connection.getAttachment();
+            JSONObject response = new JSONObject().put("id", id == null ? JSONObject.NULL : id);
+            switch (request.getString("method")) {
+                case "SUBSCRIBE" -> {
+                    for (Object param : request.getJSONArray("params")) {
+                        String stream = param.toString().toLowerCase();
+                        if (streams.add(stream)) {
+                            subscribers.computeIfAbsent(stream, _ -> new CopyOnWriteArrayList<>()).add(connection);
+                        }
+                    }
+                    response.put("result", JSONObject.NULL);
+                }
+                case "UNSUBSCRIBE" -> {
+                    for (Object param : request.getJSONArray("params")) {
+                        String stream = param.toString().toLowerCase();
+                        streams.remove(stream);
+                        subscribers.getOrDefault(stream, List.of()).remove(connection);
+                    }
+                    response.put("result", JSONObject.NULL);
+                }
+                case "LIST_SUBSCRIPTIONS" -> response.put("result", new JSONArray(new HashSet<>(streams)));
+                default -> response.put("error", new JSONObject().put("code", 2).put("msg", "Invalid request: unknown method"));
+            }
+            responses.incrementAndGet();
+            connection.send(response.toString());
+        } catch (Exception e) {
+            responses.incrementAndGet();
+            connection.send(new JSONObject()
+                    .put("error", new JSONObject().put("code", 3).put("msg", "Invalid JSON: " + e.getMessage()))
+                    .put("id", id == null ? JSONObject.NULL : id)
+                    .toString());
+        }
+    }
+
+    @Override
+    public void onError(WebSocket connection, Exception e) {
+        System.err.println("Emulator error: " + e.getMessage());
+    }
+
+    @Override
+    public void onStart() {
+        System.out.printf("Emulator listening on ws://%s:%d, REST on port %d%n",
+                getAddress().getHostString(), getPort(), restServer.getAddress().getPort());
+    }
+
+    private static String queryParameter(URI uri, String name, String defaultValue) {
+        String query = uri.getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    return parameter.substring(name.length() + 1);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        try (exchange) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+}
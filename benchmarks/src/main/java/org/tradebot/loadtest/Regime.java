@@ -0,0 +1,63 @@
+package org.tradebot.loadtest;
+
+import static org.tradebot.util.Settings.PRICE_MODIFICATOR;
+
+/**
+ * Synthetic market regimes. Each one is a cycle of trade intensity (multiple of the base rate) and price drift
+ * in USD per second, both as functions of the time since the start in milliseconds.
+ */
+enum Regime {
+
+    /**
+     * Steady climb of ~1.8% an hour at the base rate.
+     */
+    TREND {
+        @Override
+        double intensity(long elapsed) {
+            return 1;
+        }
+
+        @Override
+        double drift(long elapsed, double startPrice) {
+            return startPrice * 0.018 / 3600;
+        }
+    },
+
+    /**
+     * Liquidation cascade every 2 minutes: 20 s of 10x the trades while the price drops 1%.
+     */
+    CASCADE {
+        @Override
+        double intensity(long elapsed) {
+            return elapsed % 120_000L >= 100_000L ? 10 : 1;
+        }
+
+        @Override
+        double drift(long elapsed, double startPrice) {
+            return elapsed % 120_000L >= 100_000L ? -startPrice * 0.01 / 20 : 0;
+        }
+    },
+
+    /**
+     * Every 5 minutes a move of 1.5 detection thresholds in 30 s at 5x the trades, then 30 s returning
+     * 30% of it at 2x, so the imbalance detector should go through all of its states.
+     */
+    IMBALANCE {
+        @Override
+        double intensity(long elapsed) {
+            long phase = elapsed % 300_000L;
+            return phase >= 270_000L ? 2 : phase >= 240_000L ? 5 : 1;
+        }
+
+        @Override
+        double drift(long elapsed, double startPrice) {
+            long phase = elapsed % 300_000L;
+            double move = startPrice * PRICE_MODIFICATOR * 1.5;
+            return phase >= 270_000L ? -move * 0.3 / 30 : phase >= 240_000L ? move / 30 : 0;
+        }
+    };
+
+    abstract double intensity(long elapsed);
+
+    abstract double drift(long elapsed, double startPrice);
+}
@@ -0,0 +1,54 @@
+package org.tradebot.loadtest;
+
+import java.util.Random;
+
+/**
+ * Poisson trades of a {@link Regime} with a random walk of ~3% a day on top of the regime drift.
+ * In down moves 80% of the trades are sells, like in a cascade.
+ */
+final class SyntheticSource implements TradeSource {
+
+    private static final double NOISE_PER_SQRT_MS = 3e-6;
+    private static final double TICK = 0.1;
+
+    private final Regime regime;
+    private final double tradesPerSecond;
+    private final double startPrice;
+    private final Random random;
+    private double time;
+    private double price;
+
+    SyntheticSource(Regime regime, double tradesPerSecond, double startPrice, long seed) {
+        this.regime = regime;
+        this.tradesPerSecond = tradesPerSecond;
+        this.startPrice = startPrice;
+        this.random = new Random(seed);
+        this.price = startPrice;
+    }
+
+    @Override
+    public boolean next(Trade trade) {
+        long elapsed = (long) time;
+        double gap = random.nextExponential() * 1000.0 / (tradesPerSecond * regime.intensity(elapsed));
+        double drift = regime.drift(elapsed, startPrice);
+        time += gap;
+        price += drift * gap / 1000.0 + random.nextGaussian() * price * NOISE_PER_SQRT_MS * Math.sqrt(gap);
+        price = Math.max(TICK, Math.round(price / TICK) * TICK);
+
+        trade.time = (long) time;
+        trade.price = price;
+        trade.quantity = 0.001 + Math.round(random.nextExponential() * 50) / 1000.0;
+        trade.buyerMaker = drift < 0 ? random.nextDouble() < 0.8 : random.nextBoolean();
+        return true;
+    }
+
+    @Override
+    public double startPrice() {
+        return startPrice;
+    }
+
+    @Override
+    public String name() {
+        return regime.name().toLowerCase();
+    }
+}
@@ -0,0 +1,11 @@
+package org.tradebot.loadtest;
+
+/**
+ * Trade of a {@link TradeSource}, reused for every trade. Time is in milliseconds of the source.
+ */
+final class Trade {
+    long time;
+    double price;
+    double quantity;
+    boolean buyerMaker;
+}
@@ -0,0 +1,33 @@
+package org.tradebot.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Trades in the time of the source, the generator maps it to wall-clock time.
+ */
+interface TradeSource {
+
+    /**
+     * Fills the next trade, returns false when the source has no more trades. Times never decrease.
+     */
+    boolean next(Trade trade);
+
+    /**
+     * Price of the first trade, used for the detection thresholds.
+     */
+    double startPrice();
+
+    String name();
+
+    /**
+     * Raw frames if the file is text, bars of the event journal if it is a journal segment or directory.
+     */
+    static TradeSource replay(Path path, double tradesPerSecond, long seed) throws IOException {
+        if (Files.isDirectory(path) || path.toString().endsWith(".bin")) {
+            return new JournalReplaySource(path, tradesPerSecond, seed);
+        }
+        return new FrameReplaySource(path);
+    }
+}
@@ -0,0 +1,104 @@
+package org.tradebot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.tradebot.benchmarks.Datasets;
+import org.tradebot.benchmarks.ScratchFiles;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.MarketEntry;
+import org.tradebot.util.Log;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * {@link ImbalanceService#notifyNewMarketEntry} with a full {@link org.tradebot.util.Settings#DATA_LIVE_TIME} window
+ * of 100 ms bars, including the periodic checkpoint copy. The state is set back to the measured one whenever a bar
+ * changes it: in WAIT the whole window is scanned for an imbalance, in PROGRESS an UP imbalance that ended at the
+ * previous bar is tracked.
+ * <p>
+ * Bars are synthetic by default, recorded bars are read from the event journal with
+ * {@code -p dataset=output/journal}. The bars after the first window are replayed in a loop shifted in time.
+ * The benchmark is in the package of the service to set its state. The checkpoint and the event journal are written
+ * to a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImbalanceServiceBenchmark {
+
+    private static final String LOGGER_PATH = "imbalance_service";
+    private static final int SYNTHETIC_BARS = (int) ((DATA_LIVE_TIME + LARGE_DATA_LIVE_TIME) / Datasets.BAR_PERIOD);
+
+    @Param({"WAIT", "PROGRESS"})
+    public ImbalanceService.State state;
+
+    @Param({Datasets.SYNTHETIC})
+    public String dataset;
+
+    private ImbalanceService service;
+    private Path scratch;
+    private long[] times;
+    private MarketEntry[] entries;
+    private long span;
+    private long offset;
+    private int position;
+
+    @Setup
+    public void setup() {
+        Log.setLevel(LOGGER_PATH, Log.Level.INFO);
+        TreeMap<Long, MarketEntry> bars = Datasets.bars(dataset, SYNTHETIC_BARS);
+        long windowEnd = bars.firstKey() + DATA_LIVE_TIME;
+        if (bars.lastKey() <= windowEnd) {
+            throw new IllegalStateException(String.format("Dataset has %d ms of bars, more than %d ms are needed",
+                    bars.lastKey() - bars.firstKey(), DATA_LIVE_TIME));
+        }
+
+        scratch = ScratchFiles.redirect("imbalance-benchmark");
+        service = ImbalanceService.getInstance();
+        service.notifyVolatilityUpdate(0, bars.values().stream().mapToDouble(MarketEntry::average).average().orElseThrow());
+        bars.headMap(windowEnd).forEach(service::notifyNewMarketEntry);
+
+        Map<Long, MarketEntry> stream = bars.tailMap(windowEnd);
+        times = stream.keySet().stream().mapToLong(Long::longValue).toArray();
+        entries = stream.values().toArray(MarketEntry[]::new);
+        span = times[times.length - 1] - times[0] + Datasets.BAR_PERIOD;
+    }
+
+    @TearDown
+    public void tearDown() {
+        Log.setLevel(LOGGER_PATH, null);
+        ScratchFiles.delete(scratch);
+    }
+
+    @Benchmark
+    public void notifyNewMarketEntry() {
+        if (position == times.length) {
+            position = 0;
+            offset += span;
+        }
+        long time = times[position] + offset;
+        MarketEntry entry = entries[position++];
+        if (service.currentState.get() != state) {
+            resetState(time, entry);
+        }
+        service.notifyNewMarketEntry(time, entry);
+    }
+
+    private void resetState(long time, MarketEntry entry) {
+        if (state == ImbalanceService.State.PROGRESS) {
+            double size = service.priceChangeThreshold * 1.5;
+            service.currentImbalance = new Imbalance(time - 60_000L, entry.high() - size,
+                    time - Datasets.BAR_PERIOD, entry.high(), Imbalance.Type.UP);
+        } else {
+            service.currentImbalance = null;
+        }
+        service.currentState.set(state);
+    }
+}
@@ -2,8 +2,11 @@ package org.tradebot.binance;
 
 import org.tradebot.domain.APIError;
 import org.tradebot.domain.HTTPResponse;
+import org.tradebot.jfr.ApiCallEvent;
+import org.tradebot.journal.EventJournal;
 import org.tradebot.service.TaskManager;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 import org.tradebot.util.OperationHelper;
 
 import javax.crypto.Mac;
@@ -26,6 +29,7 @@ public class HttpClient {
 
     private final String apiKey;
     private final String apiSecret;
+    private final int clientNumber;
     private final OperationHelper operationHelper;
     private final TaskManager taskManager;
     private final Map<Long, APIError> errors = new ConcurrentHashMap<>();
@@ -33,6 +37,7 @@ public class HttpClient {
     public HttpClient(String apiKey, String apiSecret, int clientNumber) {
         this.apiKey = apiKey;
         this.apiSecret = apiSecret;
+        this.clientNumber = clientNumber;
         this.operationHelper = new OperationHelper(clientNumber);
         this.log = new Log(clientNumber);
         this.taskManager = TaskManager.getInstance(clientNumber);
@@ -49,10 +54,13 @@ public class HttpClient {
     public HTTPResponse<String> sendRequest(String endpoint, String method, final Map<String, String> params, boolean useBody) {
         return operationHelper.performWithRetry(() -> {
             final Map<String, String> paramsCopy = new HashMap<>(params);
+            ApiCallEvent event = new ApiCallEvent();
+            event.begin();
+            long start = System.nanoTime();
+            boolean eventCommitted = false;
             try {
-                long start = System.nanoTime();
-                log.debug(String.format("[REQUEST START] HTTP %s to %s", method, endpoint));
-                log.debug(String.format("Initial params: %s", paramsCopy));
+                log.debugf("[REQUEST START] HTTP %s to %s", method, endpoint);
+                log.debugf("Initial params: %s", paramsCopy);
 
                 if (TEST_RUN && SIMULATE_API_ERRORS) {
                     requestsCount++;
@@ -75,13 +83,13 @@ public class HttpClient {
                 URL url = useBody
                         ? URI.create(BASE_URL + endpoint).toURL()
                         : URI.create(BASE_URL + endpoint + "?" + query).toURL();
-                log.debug(String.format("Generated URL: %s", url));
+                log.debugf("Generated URL: %s", url);
 
                 HttpURLConnection connection = (HttpURLConnection) url.openConnection();
                 connection.setRequestMethod(method);
                 connection.setRequestProperty("X-MBX-APIKEY", apiKey);
                 connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                log.debug(String.format("Request properties: %s", connection.getRequestProperties()));
+                log.debug(() -> String.format("Request properties: %s", connection.getRequestProperties()));
 
                 if (useBody && (method.equals("POST") || method.equals("PUT") || method.equals("DELETE"))) {
                     connection.setDoOutput(true);
@@ -89,22 +97,42 @@ public class HttpClient {
                         byte[] input = query.getBytes(StandardCharsets.UTF_8);
                         os.write(input, 0, input.length);
                     }
-                    log.debug(String.format("Request body: %s", query));
+                    log.debugf("Request body: %s", query);
                 }
 
                 int responseCode = connection.getResponseCode();
-                log.debug(String.format("Response headers: %s", connection.getHeaderFields()));
+                log.debug(() -> String.format("Response headers: %s", connection.getHeaderFields()));
                 long finish = System.nanoTime();
+                commitApiCallEvent(event, method, endpoint, responseCode);
+                eventCommitted = true;
+                EventJournal.getInstance().writeHttpTiming(clientNumber, method, endpoint, responseCode, finish - start);
+                Metrics.getInstance().recordRest(method, endpoint, finish - start, responseCode >= 400);
+                Metrics.getInstance().recordUsedWeight(connection.getHeaderField("X-MBX-USED-WEIGHT-1M"));
                 double elapsedMs = (finish - start) / 1_000_000.0;
-                log.debug(String.format("[REQUEST END] HTTP %s to %s completed in %.2f ms", method, endpoint, elapsedMs));
+                log.debugf("[REQUEST END] HTTP %s to %s completed in %.2f ms", method, endpoint, elapsedMs);
                 return readResponse(connection, responseCode);
             } catch (Exception e) {
+                if (!eventCommitted) {
+                    commitApiCallEvent(event, method, endpoint, -1);
+                }
+                Metrics.getInstance().recordRest(method, endpoint, System.nanoTime() - start, true);
                 taskManager.schedule(WRITE_HTTP_ERROR_TASK, () -> log.writeHttpError(e), 0, TimeUnit.MILLISECONDS);
                 throw new RuntimeException(e);
             }
         });
     }
 
+    private void commitApiCallEvent(ApiCallEvent event, String method, String endpoint, int status) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.clientNumber = clientNumber;
+            event.method = method;
+            event.endpoint = endpoint;
+            event.status = status;
+            event.commit();
+        }
+    }
+
     protected String generateSignature(Map<String, String> params) throws Exception {
         String queryString = getParamsString(params);
         Mac mac = Mac.getInstance("HmacSHA256");
@@ -131,7 +159,7 @@ public class HttpClient {
        if (responseCode >= 200 && responseCode < 300) {
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
                 String response = reader.lines().collect(Collectors.joining());
-                log.debug(String.format("Response code: %d, Response body: %s", responseCode, response));
+                log.debugf("Response code: %d, Response body: %s", responseCode, response);
                 return HTTPResponse.success(responseCode, response);
             }
         } else {
@@ -3,10 +3,12 @@ package org.tradebot.binance;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 import org.json.JSONObject;
+import org.tradebot.jfr.WebSocketFrameEvent;
 import org.tradebot.listener.OrderBookStateCallback;
 import org.tradebot.listener.MarketDataWebSocketCallback;
 import org.tradebot.service.TaskManager;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 
 import java.net.URI;
 import java.util.ArrayList;
@@ -67,15 +69,33 @@ public class MarketDataWebSocketService extends WebSocketClient implements Order
 
     @Override
     public void onMessage(String msg) {
+        WebSocketFrameEvent event = new WebSocketFrameEvent();
+        event.begin();
+        long received = System.nanoTime();
         JSONObject message = new JSONObject(msg);
+        Metrics.getInstance().record(Metrics.MARKET_WS_RECEIVE_TO_DECODE, System.nanoTime() - received);
+        long eventTime = message.optLong("E");
+        if (eventTime > 0) {
+            // includes the clock difference to the exchange, negative values are ignored
+            Metrics.getInstance().record(Metrics.MARKET_EVENT_TO_RECEIVE,
+                    TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - eventTime));
+        }
 
-        if (message.has("e")) {
-            String eventType = message.getString("e");
+        String eventType = message.optString("e", null);
+        if (eventType != null) {
             switch (eventType) {
                 case "aggTrade" -> tradeHandler.onMessage(message);
                 case "depthUpdate" -> orderBookHandler.onMessage(message);
             }
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.stream = WebSocketFrameEvent.MARKET_STREAM;
+            event.eventType = eventType;
+            event.size = msg.length();
+            event.commit();
+        }
     }
 
     @Override
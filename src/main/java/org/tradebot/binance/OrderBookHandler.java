@@ -3,29 +3,65 @@ package org.tradebot.binance;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.tradebot.domain.OrderBook;
+import org.tradebot.domain.OrderBookFeatures;
+import org.tradebot.domain.OrderBookSide;
+import org.tradebot.domain.OrderBookSnapshot;
+import org.tradebot.domain.Precision;
+import org.tradebot.journal.EventJournal;
 import org.tradebot.listener.OrderBookCallback;
 import org.tradebot.listener.OrderBookStateCallback;
+import org.tradebot.service.TaskManager;
+import org.tradebot.util.ConflatingPublisher;
 import org.tradebot.util.Log;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
 
-import static org.tradebot.util.Settings.SYMBOL;
+import static org.tradebot.util.Settings.*;
 
 public class OrderBookHandler {
     private final Log log = new Log("order_book/");
 
     private final PublicAPIService publicAPIService;
-    private final Map<Double, Double> bids = new ConcurrentHashMap<>();
-    private final Map<Double, Double> asks = new ConcurrentHashMap<>();
-    private final TreeMap<Long, JSONObject> initializationMessagesQueue = new TreeMap<>();
-    private final List<OrderBookCallback> callbacks = new ArrayList<>();
+    private final TaskManager taskManager;
+    private final EventJournal journal;
+    private OrderBookSide bids = new OrderBookSide(OrderBookSide.Type.BID, DEFAULT_PRECISION.price(), ORDER_BOOK_FEATURE_DEPTH);
+    private OrderBookSide asks = new OrderBookSide(OrderBookSide.Type.ASK, DEFAULT_PRECISION.price(), ORDER_BOOK_FEATURE_DEPTH);
+    private final Deque<JSONObject> bufferedUpdates = new ArrayDeque<>(ORDER_BOOK_RESYNC_BUFFER_SIZE);
+    private final AtomicReference<OrderBook> fetchedSnapshot = new AtomicReference<>();
+    private final AtomicBoolean snapshotRequested = new AtomicBoolean(false);
+    private volatile long nextSnapshotRequestTime = 0;
+    private final ConflatingPublisher<OrderBookCallback, OrderBookSnapshot> publisher =
+            new ConflatingPublisher<>("order-book-publisher", this::getSnapshot, OrderBookCallback::notifyOrderBookUpdate);
     private OrderBookStateCallback initializationStateCallback;
 
-    private long orderBookLastUpdateId = -1;
-    private OrderBook snapshot;
-    private boolean isOrderBookInitialized = false;
+    private volatile long orderBookLastUpdateId = -1;
+    private volatile boolean isOrderBookInitialized = false;
+    private double lastBestBid = 0, lastBestBidQty = 0, lastBestAsk = 0, lastBestAskQty = 0;
+    private long lastEventTime = 0;
+
+    // previous best levels and cumulative order flow imbalance, updated on the WebSocket thread
+    private double ofiBid = Double.NaN, ofiBidQty = 0, ofiAsk = Double.NaN, ofiAskQty = 0;
+    private double orderFlowImbalance = 0;
+
+    /*
+     * Top of the book for readers from other threads. The WebSocket thread is the only writer and overwrites
+     * the arrays under the write lock, readers copy them with an optimistic read and retry under the read lock
+     * if the copy was torn.
+     */
+    private final StampedLock topLock = new StampedLock();
+    private final double[] topAskPrices = new double[ORDER_BOOK_SNAPSHOT_DEPTH];
+    private final double[] topAskQuantities = new double[ORDER_BOOK_SNAPSHOT_DEPTH];
+    private final double[] topBidPrices = new double[ORDER_BOOK_SNAPSHOT_DEPTH];
+    private final double[] topBidQuantities = new double[ORDER_BOOK_SNAPSHOT_DEPTH];
+    private int topAskLevels = 0;
+    private int topBidLevels = 0;
+    private long topUpdateId = -1;
+    private long topEventTime = 0;
+    private double topMidPrice, topSpread, topMicroprice, topDepthImbalance, topBidDepthInBand, topAskDepthInBand, topOrderFlowImbalance;
 
     private static OrderBookHandler instance;
 
@@ -38,100 +74,247 @@ public class OrderBookHandler {
 
     private OrderBookHandler() {
         this.publicAPIService = PublicAPIService.getInstance();
+        this.taskManager = TaskManager.getInstance();
+        this.journal = EventJournal.getInstance();
+        this.publisher.start();
         log.info("OrderBookHandler initialized");
     }
 
-    public void onMessage(JSONObject message) {
-        long updateId = message.getLong("u");
-        if (!isOrderBookInitialized) {
-            log.info("Order book not initialized. Queuing message for initialization...");
-            initializeOrderBook(updateId, message);
-            return;
-        }
+    /**
+     * Stops the delivery of snapshots to the callbacks.
+     */
+    public void close() {
+        publisher.shutdown();
+        log.info("OrderBookHandler closed");
+    }
 
-        if (message.getLong("pu") == orderBookLastUpdateId) {
-            updateOrderBook(updateId, message);
-        } else {
-            log.warn("Order book out of sync. Reinitialization required.");
+    /**
+     * Sets price precision used to convert prices to integer ticks. Must be called before the first update.
+     */
+    public void setPrecision(Precision precision) {
+        bids = new OrderBookSide(OrderBookSide.Type.BID, precision.price(), ORDER_BOOK_FEATURE_DEPTH);
+        asks = new OrderBookSide(OrderBookSide.Type.ASK, precision.price(), ORDER_BOOK_FEATURE_DEPTH);
+        log.info(String.format("Order book price precision set: %d", precision.price()));
+    }
+
+    /**
+     * Called on the WebSocket thread. While the book is out of sync the diffs are buffered and the snapshot
+     * is fetched on a separate thread, so the thread never waits for REST calls.
+     */
+    public void onMessage(JSONObject message) {
+        if (isOrderBookInitialized) {
+            if (message.getLong("pu") == orderBookLastUpdateId) {
+                updateOrderBook(message.getLong("u"), message);
+                return;
+            }
+            log.warn("Order book out of sync. Resynchronization required.");
             isOrderBookInitialized = false;
-            initializationMessagesQueue.clear();
             initializationStateCallback.notifyOrderBookStateUpdate(false);
         }
+        resync(message);
     }
 
-    private void initializeOrderBook(long updateId, JSONObject message) {
-        initializationMessagesQueue.put(updateId, message);
-        log.debug(String.format("Message added to initialization queue: %s", message));
+    private void resync(JSONObject message) {
+        if (bufferedUpdates.size() >= ORDER_BOOK_RESYNC_BUFFER_SIZE) {
+            bufferedUpdates.pollFirst();
+        }
+        bufferedUpdates.offerLast(message);
 
-        if (initializationMessagesQueue.size() < 20) {
-            snapshot = publicAPIService.getOrderBookPublicAPI(SYMBOL).getResponse();
-        } else if (initializationMessagesQueue.size() <= 80) {
-            log.info("Applying snapshot and queued updates...");
-            orderBookLastUpdateId = snapshot.lastUpdateId();
-            asks.clear();
-            asks.putAll(snapshot.asks());
-            bids.clear();
-            bids.putAll(snapshot.bids());
+        OrderBook snapshot = fetchedSnapshot.get();
+        if (snapshot != null) {
+            applySnapshot(snapshot);
         } else {
-            initializationMessagesQueue.clear();
-            log.warn("Initialization queue exceeded maximum size. Clearing and retrying...");
+            requestSnapshot();
+        }
+    }
+
+    private void requestSnapshot() {
+        if (System.currentTimeMillis() >= nextSnapshotRequestTime && snapshotRequested.compareAndSet(false, true)) {
+            log.info("Requesting order book snapshot...");
+            taskManager.schedule(ORDER_BOOK_SNAPSHOT_TASK_KEY, this::fetchSnapshot, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void fetchSnapshot() {
+        try {
+            fetchedSnapshot.set(publicAPIService.getOrderBookPublicAPI(SYMBOL).getResponse());
+        } catch (Exception e) {
+            log.warn("Failed to fetch order book snapshot", e);
+            nextSnapshotRequestTime = System.currentTimeMillis() + ORDER_BOOK_SNAPSHOT_RETRY_DELAY;
+            snapshotRequested.set(false);
+        }
+    }
+
+    private void discardSnapshot() {
+        fetchedSnapshot.set(null);
+        snapshotRequested.set(false);
+    }
+
+    /**
+     * Applies the snapshot and buffered diffs starting from the one with {@code U <= lastUpdateId <= u},
+     * then switches to the live mode.
+     */
+    private void applySnapshot(OrderBook snapshot) {
+        long lastUpdateId = snapshot.lastUpdateId();
+        while (!bufferedUpdates.isEmpty() && bufferedUpdates.peekFirst().getLong("u") < lastUpdateId) {
+            bufferedUpdates.pollFirst();
+        }
+        if (bufferedUpdates.isEmpty()) {
+            return;
+        }
+        if (bufferedUpdates.peekFirst().getLong("U") > lastUpdateId) {
+            log.warn(String.format("Snapshot %d is older than buffered updates, requesting a new one", lastUpdateId));
+            discardSnapshot();
+            requestSnapshot();
             return;
         }
 
-        log.info("Trying to find updates starting message...");
-        AtomicReference<Long> startingPoint = new AtomicReference<>();
-        initializationMessagesQueue.entrySet().stream()
-                .filter(entry -> {
-                    long u = entry.getKey();
-                    return entry.getValue().getLong("U") <= orderBookLastUpdateId && u >= orderBookLastUpdateId;
-                })
-                .findFirst()
-                .ifPresent(u -> startingPoint.set(u.getKey()));
+        log.info(String.format("Applying snapshot %d and %d buffered updates...", lastUpdateId, bufferedUpdates.size()));
+        asks.clear();
+        snapshot.asks().forEach(asks::update);
+        bids.clear();
+        snapshot.bids().forEach(bids::update);
+        orderBookLastUpdateId = lastUpdateId;
+        orderFlowImbalance = 0;
+        ofiBid = Double.NaN;
+        ofiAsk = Double.NaN;
 
-        if (startingPoint.get() != null) {
-            log.info(String.format("Found starting point for updates: %s", startingPoint.get()));
-            initializationMessagesQueue.entrySet().stream()
-                    .filter(entry -> entry.getKey() >= orderBookLastUpdateId)
-                    .forEach(entry -> updateOrderBook(entry.getKey(), entry.getValue()));
-            isOrderBookInitialized = true;
-            initializationStateCallback.notifyOrderBookStateUpdate(true);
-            log.info("Order book successfully initialized.");
+        boolean first = true;
+        for (JSONObject update : bufferedUpdates) {
+            if (!first && update.getLong("pu") != orderBookLastUpdateId) {
+                log.warn(String.format("Gap in buffered updates after %d, requesting a new snapshot", orderBookLastUpdateId));
+                bufferedUpdates.clear();
+                discardSnapshot();
+                requestSnapshot();
+                return;
+            }
+            updateOrderBook(update.getLong("u"), update);
+            first = false;
         }
+        bufferedUpdates.clear();
+        discardSnapshot();
+
+        publishTop(orderBookLastUpdateId, lastEventTime);
+        isOrderBookInitialized = true;
+        initializationStateCallback.notifyOrderBookStateUpdate(true);
+        log.info("Order book successfully initialized.");
     }
 
     private void updateOrderBook(long updateId, JSONObject data) {
         updateOrderBook(data.getJSONArray("a"), asks);
         updateOrderBook(data.getJSONArray("b"), bids);
         orderBookLastUpdateId = updateId;
+        lastEventTime = data.optLong("E", System.currentTimeMillis());
 
         if (isOrderBookInitialized) {
-            logOrderBookUpdate();
-            callbacks.parallelStream().forEach(callback ->
-                    callback.notifyOrderBookUpdate(asks, bids));
+            publishTop(updateId, lastEventTime);
+            journalBookTop(lastEventTime, updateId);
+            publisher.signal();
         }
     }
 
-    private void updateOrderBook(JSONArray updates, Map<Double, Double> orderBook) {
-        for (int i = 0; i < updates.length(); i++) {
-            JSONArray update = updates.getJSONArray(i);
-            double price = update.getDouble(0);
-            double quantity = update.getDouble(1);
+    private void publishTop(long updateId, long eventTime) {
+        double bestBid = bids.bestPrice();
+        double bestBidQty = bids.bestQuantity();
+        double bestAsk = asks.bestPrice();
+        double bestAskQty = asks.bestQuantity();
+        double midPrice = (bestBid + bestAsk) / 2.;
+        if (!bids.isEmpty() && !asks.isEmpty()) {
+            updateOrderFlowImbalance(bestBid, bestBidQty, bestAsk, bestAskQty);
+            bids.setBandLimit(midPrice * (1 - ORDER_BOOK_FEATURE_BAND_BPS / 10_000.));
+            asks.setBandLimit(midPrice * (1 + ORDER_BOOK_FEATURE_BAND_BPS / 10_000.));
+        }
+        double bidTop = bids.topQuantity();
+        double askTop = asks.topQuantity();
+
+        long stamp = topLock.writeLock();
+        try {
+            topAskLevels = asks.copyTop(ORDER_BOOK_SNAPSHOT_DEPTH, topAskPrices, topAskQuantities);
+            topBidLevels = bids.copyTop(ORDER_BOOK_SNAPSHOT_DEPTH, topBidPrices, topBidQuantities);
+            topUpdateId = updateId;
+            topEventTime = eventTime;
+            topMidPrice = midPrice;
+            topSpread = bestAsk - bestBid;
+            topMicroprice = bestBidQty + bestAskQty > 0
+                    ? (bestBid * bestAskQty + bestAsk * bestBidQty) / (bestBidQty + bestAskQty)
+                    : midPrice;
+            topDepthImbalance = bidTop + askTop > 0 ? (bidTop - askTop) / (bidTop + askTop) : 0;
+            topBidDepthInBand = bids.bandQuantity();
+            topAskDepthInBand = asks.bandQuantity();
+            topOrderFlowImbalance = orderFlowImbalance;
+        } finally {
+            topLock.unlockWrite(stamp);
+        }
+    }
 
-            if (quantity == 0) {
-                orderBook.remove(price);
-            } else {
-                orderBook.put(price, quantity);
+    /**
+     * Order flow imbalance of the best levels (Cont, Kukanov, Stoikov): bid size added at the same or better price
+     * minus ask size added at the same or better price, accumulated since the last resync.
+     */
+    private void updateOrderFlowImbalance(double bestBid, double bestBidQty, double bestAsk, double bestAskQty) {
+        if (!Double.isNaN(ofiBid) && !Double.isNaN(ofiAsk)) {
+            double bidFlow = (bestBid >= ofiBid ? bestBidQty : 0) - (bestBid <= ofiBid ? ofiBidQty : 0);
+            double askFlow = (bestAsk <= ofiAsk ? bestAskQty : 0) - (bestAsk >= ofiAsk ? ofiAskQty : 0);
+            orderFlowImbalance += bidFlow - askFlow;
+        }
+        ofiBid = bestBid;
+        ofiBidQty = bestBidQty;
+        ofiAsk = bestAsk;
+        ofiAskQty = bestAskQty;
+    }
+
+    /**
+     * Returns consistent copy of the best {@link org.tradebot.util.Settings#ORDER_BOOK_SNAPSHOT_DEPTH} levels
+     * of the last applied update. Safe to call from any thread.
+     */
+    public OrderBookSnapshot getSnapshot() {
+        long stamp = topLock.tryOptimisticRead();
+        OrderBookSnapshot snapshot = copyTop();
+        if (!topLock.validate(stamp)) {
+            stamp = topLock.readLock();
+            try {
+                snapshot = copyTop();
+            } finally {
+                topLock.unlockRead(stamp);
             }
         }
+        return snapshot;
+    }
+
+    private OrderBookSnapshot copyTop() {
+        int askLevels = Math.min(topAskLevels, ORDER_BOOK_SNAPSHOT_DEPTH);
+        int bidLevels = Math.min(topBidLevels, ORDER_BOOK_SNAPSHOT_DEPTH);
+        OrderBookFeatures features = new OrderBookFeatures(topMidPrice, topSpread, topMicroprice, topDepthImbalance,
+                topBidDepthInBand, topAskDepthInBand, topOrderFlowImbalance);
+        return new OrderBookSnapshot(topUpdateId, topEventTime, features,
+                Arrays.copyOf(topAskPrices, askLevels),
+                Arrays.copyOf(topAskQuantities, askLevels),
+                Arrays.copyOf(topBidPrices, bidLevels),
+                Arrays.copyOf(topBidQuantities, bidLevels));
+    }
+
+    private void updateOrderBook(JSONArray updates, OrderBookSide side) {
+        for (int i = 0; i < updates.length(); i++) {
+            JSONArray update = updates.getJSONArray(i);
+            side.update(update.getDouble(0), update.getDouble(1));
+        }
     }
 
     public void addCallback(OrderBookCallback callback) {
-        this.callbacks.add(callback);
-        log.info(String.format("Callback set: %s", callback.getClass().getName()));
+        addCallback(callback, ORDER_BOOK_DEFAULT_MAX_UPDATES_PER_SECOND);
+    }
+
+    /**
+     * Callback gets at most {@code maxUpdatesPerSecond} latest snapshots on the publisher thread,
+     * updates between deliveries are merged.
+     */
+    public void addCallback(OrderBookCallback callback, double maxUpdatesPerSecond) {
+        this.publisher.subscribe(callback, maxUpdatesPerSecond);
+        log.info(String.format("Callback set: %s, max %.1f updates per second", callback.getClass().getName(), maxUpdatesPerSecond));
     }
 
     public void removeCallback(OrderBookCallback callback) {
-        this.callbacks.remove(callback);
+        this.publisher.unsubscribe(callback);
         log.info(String.format("Callback removed: %s", callback.getClass().getName()));
     }
 
@@ -140,75 +323,57 @@ public class OrderBookHandler {
     }
 
     public Map<Double, Double> getBids(int limit) {
-        Map<Double, Double> bidsTmpMap;
-        synchronized (bids) {
-            bidsTmpMap = new TreeMap<>(bids).descendingMap();
-        }
-        bidsTmpMap = bidsTmpMap.entrySet().stream().limit(limit).collect(LinkedHashMap::new,
-                (map, entry) -> map.put(entry.getKey(), entry.getValue()),
-                Map::putAll);
-        return bidsTmpMap;
+        return getSnapshot().bids(limit);
     }
 
     public Map<Double, Double> getAsks(int limit) {
-        Map<Double, Double> asksTmpMap;
-        synchronized (asks) {
-            asksTmpMap = new TreeMap<>(asks);
-        }
-        asksTmpMap = asksTmpMap.entrySet().stream().limit(limit).collect(LinkedHashMap::new,
-                (map, entry) -> map.put(entry.getKey(), entry.getValue()),
-                Map::putAll);
-        return asksTmpMap;
+        return getSnapshot().asks(limit);
     }
 
-    private void logOrderBookUpdate() {
-        Map<Double, Double> asksTmpMap = getAsks(5);
-        Map<Double, Double> bidsTmpMap = getBids(5);
+    /**
+     * Writes best bid and ask to the event journal when any of them changed.
+     */
+    private void journalBookTop(long eventTime, long updateId) {
+        if (bids.isEmpty() || asks.isEmpty()) {
+            return;
+        }
+        double bestBid = bids.bestPrice();
+        double bestBidQty = bids.bestQuantity();
+        double bestAsk = asks.bestPrice();
+        double bestAskQty = asks.bestQuantity();
 
-//        log.removeLines(2);
-        log.debug("Top 5 Asks (shorts): " + asksTmpMap);
-        log.debug("Top 5 Bids (longs): " + bidsTmpMap);
+        if (bestBid != lastBestBid || bestBidQty != lastBestBidQty || bestAsk != lastBestAsk || bestAskQty != lastBestAskQty) {
+            lastBestBid = bestBid;
+            lastBestBidQty = bestBidQty;
+            lastBestAsk = bestAsk;
+            lastBestAskQty = bestAskQty;
+            journal.writeBookTop(eventTime, updateId, bestBid, bestBidQty, bestAsk, bestAskQty);
+        }
     }
 
     public void logAll() {
         try {
-            Map<Double, Double> snapshotAsks;
-            synchronized (asks) {
-                snapshotAsks = new TreeMap<>(asks);
-            }
-            Map<Double, Double> snapshotBids;
-            synchronized (bids) {
-                snapshotBids = new TreeMap<>(bids);
-            }
-            TreeMap<Long, JSONObject> snapshotInitializationMessagesQueue;
-            synchronized (initializationMessagesQueue) {
-                snapshotInitializationMessagesQueue = new TreeMap<>(initializationMessagesQueue);
-            }
-            OrderBook snapshotOrderBook = null;
-            if (snapshot != null) {
-                synchronized (snapshot) {
-                    snapshotOrderBook = snapshot;
-                }
-            }
+            OrderBookSnapshot top = getSnapshot();
+            OrderBook snapshotOrderBook = fetchedSnapshot.get();
             log.debug(String.format("""
                             symbol: %s
                             callback: %s
                             readyCallback: %s
-                            bids: %s
-                            asks: %s
+                            top: %s
                             orderBookLastUpdateId: %s
                             isOrderBookInitialized: %s
-                            initializationMessagesQueue: %s
+                            bufferedUpdates: %d
+                            snapshotRequested: %s
                             snapshotOrderBook: %s
                             """,
                     SYMBOL,
-                    callbacks,
+                    publisher,
                     initializationStateCallback,
-                    snapshotBids,
-                    snapshotAsks,
+                    top,
                     orderBookLastUpdateId,
                     isOrderBookInitialized,
-                    snapshotInitializationMessagesQueue,
+                    bufferedUpdates.size(),
+                    snapshotRequested.get(),
                     snapshotOrderBook
             ));
         } catch (Exception e) {
@@ -42,6 +42,21 @@ public class PublicAPIService {
         }
     }
 
+    public HTTPResponse<TreeMap<Long, MarketEntry>> getMarketDataPublicAPI(String symbol, String interval, long startTime, int limit) {
+        Map<String, String> params = new HashMap<>();
+        params.put("symbol", symbol);
+        params.put("interval", interval);
+        params.put("startTime", String.valueOf(startTime));
+        params.put("limit", String.valueOf(limit));
+
+        var response = publicHttpClient.sendPublicRequest("/fapi/v1/klines", "GET", params);
+        if (response.isSuccess()) {
+            return HTTPResponse.success(response.getStatusCode(), parseResponseMarketData(response.getValue()));
+        } else {
+            return HTTPResponse.error(response.getStatusCode(), response.getError());
+        }
+    }
+
     public HTTPResponse<Precision> fetchSymbolPrecision(String symbol) {
         var response = publicHttpClient.sendPublicRequest("/fapi/v1/exchangeInfo", "GET", new HashMap<>());
         if (response.isSuccess()) {
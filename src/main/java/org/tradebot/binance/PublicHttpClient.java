@@ -4,6 +4,7 @@ import org.tradebot.domain.APIError;
 import org.tradebot.domain.HTTPResponse;
 import org.tradebot.service.TaskManager;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 import org.tradebot.util.OperationHelper;
 
 import java.io.BufferedReader;
@@ -32,8 +33,8 @@ public class PublicHttpClient {
     public HTTPResponse<String> sendPublicRequest(String endpoint, String method, Map<String, String> params) {
         return operationHelper.performWithRetry(() -> {
             final Map<String, String> paramsCopy = new HashMap<>(params);
+            long start = System.nanoTime();
             try {
-                long start = System.nanoTime();
                 log.debug(String.format("[REQUEST START] HTTP %s to %s", method, endpoint));
 
                 String query = getParamsString(paramsCopy);
@@ -49,11 +50,14 @@ public class PublicHttpClient {
                 log.debug(String.format("Response headers: %s", headers));
 
                 long finish = System.nanoTime();
+                Metrics.getInstance().recordRest(method, endpoint, finish - start, responseCode >= 400);
+                Metrics.getInstance().recordUsedWeight(connection.getHeaderField("X-MBX-USED-WEIGHT-1M"));
                 double elapsedMs = (finish - start) / 1_000_000.0;
                 log.debug(String.format("[REQUEST END] HTTP GET to %s completed in %.2f ms", endpoint, elapsedMs));
 
                 return readResponse(connection, responseCode);
             } catch (Exception e) {
+                Metrics.getInstance().recordRest(method, endpoint, System.nanoTime() - start, true);
                 taskManager.schedule(WRITE_HTTP_ERROR_TASK, () -> log.writeHttpError(e), 0, TimeUnit.MILLISECONDS);
                 throw log.throwError("Failed to send HTTP request", e);
             }
@@ -2,11 +2,15 @@ package org.tradebot.binance;
 
 import org.json.JSONObject;
 import org.tradebot.domain.MarketEntry;
+import org.tradebot.jfr.BarEvent;
+import org.tradebot.journal.EventJournal;
 import org.tradebot.listener.MarketDataCallback;
 import org.tradebot.service.TaskManager;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import static org.tradebot.util.Settings.*;
@@ -16,11 +20,14 @@ public class TradeHandler {
     private final Log log = new Log("market_data/");
 
     private final TaskManager taskManager;
-    protected MarketDataCallback callback;
+    private final EventJournal journal;
+    protected final List<MarketDataCallback> callbacks = new CopyOnWriteArrayList<>();
 
     protected Deque<JSONObject> activeQueue = new ArrayDeque<>(MAX_TRADE_QUEUE_SIZE);
     protected Deque<JSONObject> processingQueue = new ArrayDeque<>(MAX_TRADE_QUEUE_SIZE);
     protected Double lastPrice = null;
+    // time of the first trade of the active queue, the oldest trade of the next bar
+    private long activeQueueStart = 0L;
 
     private static TradeHandler instance;
 
@@ -33,6 +40,7 @@ public class TradeHandler {
 
     private TradeHandler() {
         this.taskManager = TaskManager.getInstance();
+        this.journal = EventJournal.getInstance();
         log.info("TradeHandler initialized");
     }
 
@@ -45,15 +53,23 @@ public class TradeHandler {
         synchronized (activeQueue) {
             if (activeQueue.size() >= MAX_TRADE_QUEUE_SIZE) {
                 activeQueue.pollFirst();
+                Metrics.getInstance().increment(Metrics.TRADES_DROPPED);
+            }
+            if (activeQueue.isEmpty()) {
+                activeQueueStart = System.nanoTime();
             }
             activeQueue.offerLast(message);
         }
     }
 
     protected void updateMarketPrice() {
+        BarEvent event = new BarEvent();
+        event.begin();
         long openTime = System.currentTimeMillis();
         Deque<JSONObject> tempQueue;
+        long firstTradeTime;
         synchronized (activeQueue) {
+            firstTradeTime = activeQueue.isEmpty() ? 0L : activeQueueStart;
             tempQueue = activeQueue;
             activeQueue = processingQueue;
             processingQueue = tempQueue;
@@ -62,6 +78,7 @@ public class TradeHandler {
         double minPrice = Double.MAX_VALUE;
         double maxPrice = Double.MIN_VALUE;
         double volume = 0;
+        int trades = processingQueue.size();
 
         for (JSONObject trade : processingQueue) {
             double price = Double.parseDouble(trade.getString("p"));
@@ -78,10 +95,22 @@ public class TradeHandler {
             log.debug("empty entry...");
             return;
         }
-//        log.removeLines(1);
-        log.debug("entry :: " + entry);
-        if (callback != null)
+        if (firstTradeTime != 0L) {
+            Metrics.getInstance().record(Metrics.DECODE_TO_BAR, System.nanoTime() - firstTradeTime);
+        }
+        journal.writeBar(openTime, entry);
+        for (MarketDataCallback callback : callbacks)
             callback.notifyNewMarketEntry(openTime, entry);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.openTime = openTime;
+            event.high = entry.high();
+            event.low = entry.low();
+            event.volume = entry.volume();
+            event.trades = trades;
+            event.commit();
+        }
     }
 
     protected MarketEntry processEntry(double minPrice, double maxPrice, double volume) {
@@ -101,9 +130,9 @@ public class TradeHandler {
         taskManager.cancel(MARKET_DATA_UPDATE_TASK_KEY);
     }
 
-    public void setCallback(MarketDataCallback callback) {
-        this.callback = callback;
-        log.info(String.format("Callback set: %s", callback.getClass().getName()));
+    public void addCallback(MarketDataCallback callback) {
+        this.callbacks.add(callback);
+        log.info(String.format("Callback added: %s", callback.getClass().getName()));
     }
 
     public Double getLastPrice() {
@@ -122,12 +151,12 @@ public class TradeHandler {
             }
 
             log.debug(String.format("""
-                            callback: %s
+                            callbacks: %s
                             activeQueue: %s
                             processingQueue: %s
                             lastPrice: %s
                             """,
-                    callback,
+                    callbacks,
                     snapshotActiveQueue,
                     snapshotProcessingQueue,
                     lastPrice
@@ -0,0 +1,433 @@
+package org.tradebot.binance;
+
+import org.tradebot.domain.Order;
+import org.tradebot.domain.Position;
+
+/**
+ * Single pass decoder of user data stream frames. Reads only the fields used by {@link UserDataHandler}
+ * into reusable mutable events, strings stay as regions of the frame until they are requested.
+ * One decoder per stream, the events are valid until the next {@link #decode(String)} call.
+ */
+public class UserDataDecoder {
+
+    public enum EventType {
+        ORDER_TRADE_UPDATE, ACCOUNT_UPDATE, OTHER
+    }
+
+    private static final Order.Status[] STATUSES = Order.Status.values();
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final OrderUpdate orderUpdate = new OrderUpdate();
+    private final AccountUpdate accountUpdate = new AccountUpdate();
+    private String msg;
+    private int pos;
+    private int start;
+    private int end;
+
+    /**
+     * Decodes the frame, returns its type. The event of this type is filled, fields missing in the frame
+     * are left empty.
+     */
+    public EventType decode(String msg) {
+        this.msg = msg;
+        this.pos = 0;
+        orderUpdate.reset(msg);
+        accountUpdate.reset(msg);
+        EventType eventType = EventType.OTHER;
+
+        skipWhitespace();
+        if (!consume('{')) {
+            return EventType.OTHER;
+        }
+        while (nextKey()) {
+            if (keyIs("e")) {
+                if (readString()) {
+                    if (regionIs("ORDER_TRADE_UPDATE")) eventType = EventType.ORDER_TRADE_UPDATE;
+                    else if (regionIs("ACCOUNT_UPDATE")) eventType = EventType.ACCOUNT_UPDATE;
+                }
+            } else if (keyIs("o") && peek() == '{') {
+                decodeOrder();
+            } else if (keyIs("a") && peek() == '{') {
+                decodeAccount();
+            } else {
+                skipValue();
+            }
+        }
+        return eventType;
+    }
+
+    public OrderUpdate orderUpdate() {
+        return orderUpdate;
+    }
+
+    public AccountUpdate accountUpdate() {
+        return accountUpdate;
+    }
+
+    private void decodeOrder() {
+        consume('{');
+        while (nextKey()) {
+            if (keyIs("s")) {
+                if (readString()) {
+                    orderUpdate.symbolStart = start;
+                    orderUpdate.symbolEnd = end;
+                }
+            } else if (keyIs("c")) {
+                if (readString()) {
+                    orderUpdate.clientIdStart = start;
+                    orderUpdate.clientIdEnd = end;
+                }
+            } else if (keyIs("X")) {
+                if (readString()) {
+                    orderUpdate.status = status();
+                }
+            } else if (keyIs("ap")) {
+                orderUpdate.averagePrice = readDouble();
+            } else if (keyIs("z")) {
+                orderUpdate.filledQuantity = readDouble();
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    private void decodeAccount() {
+        consume('{');
+        while (nextKey()) {
+            if (keyIs("m")) {
+                if (readString()) {
+                    accountUpdate.reasonStart = start;
+                    accountUpdate.reasonEnd = end;
+                }
+            } else if (keyIs("P") && peek() == '[') {
+                decodePositions();
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    private void decodePositions() {
+        consume('[');
+        skipWhitespace();
+        while (peek() == '{') {
+            PositionUpdate update = accountUpdate.add();
+            consume('{');
+            while (nextKey()) {
+                if (keyIs("s")) {
+                    if (readString()) {
+                        update.symbolStart = start;
+                        update.symbolEnd = end;
+                    }
+                } else if (keyIs("ps")) {
+                    if (readString()) {
+                        update.sideStart = start;
+                        update.sideEnd = end;
+                    }
+                } else if (keyIs("pa")) {
+                    update.positionAmt = readDouble();
+                } else if (keyIs("ep")) {
+                    update.entryPrice = readDouble();
+                } else if (keyIs("bep")) {
+                    update.breakEvenPrice = readDouble();
+                } else {
+                    skipValue();
+                }
+            }
+            skipWhitespace();
+            consume(',');
+            skipWhitespace();
+        }
+        consume(']');
+    }
+
+    /**
+     * Moves to the next key of the current object and keeps it in the region. Returns false at the end of the object.
+     */
+    private boolean nextKey() {
+        skipWhitespace();
+        consume(',');
+        skipWhitespace();
+        if (peek() != '"') {
+            consume('}');
+            return false;
+        }
+        readString();
+        skipWhitespace();
+        consume(':');
+        skipWhitespace();
+        return true;
+    }
+
+    private boolean keyIs(String key) {
+        return regionEquals(msg, start, end, key);
+    }
+
+    private boolean regionIs(String value) {
+        return regionEquals(msg, start, end, value);
+    }
+
+    /**
+     * Reads a string value into the region. Returns false if the value is not a string, the value is skipped then.
+     */
+    private boolean readString() {
+        if (peek() != '"') {
+            skipValue();
+            return false;
+        }
+        start = ++pos;
+        while (pos < msg.length() && msg.charAt(pos) != '"') {
+            pos += msg.charAt(pos) == '\\' ? 2 : 1;
+        }
+        end = Math.min(pos, msg.length());
+        pos++;
+        return true;
+    }
+
+    /**
+     * Reads a number which Binance sends either quoted or plain. Decimals which fit into a long are parsed
+     * without allocation, the result is exact because both the mantissa and the power of ten are exact doubles.
+     */
+    private double readDouble() {
+        boolean quoted = peek() == '"';
+        if (quoted) {
+            pos++;
+        }
+        int numberStart = pos;
+        boolean negative = peek() == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean fast = true;
+        while (pos < msg.length()) {
+            char c = msg.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    if (fraction) scale++;
+                } else {
+                    fast = false;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E' || c == '+' || (c == '-' && pos > numberStart)) {
+                fast = false;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        int numberEnd = pos;
+        if (quoted) {
+            while (pos < msg.length() && msg.charAt(pos) != '"') {
+                pos++;
+                fast = false;
+            }
+            pos++;
+        }
+        if (numberEnd == numberStart) {
+            return 0;
+        }
+        if (!fast || scale >= POWERS_OF_TEN.length || mantissa > (1L << 53)) {
+            return Double.parseDouble(msg.substring(numberStart, numberEnd));
+        }
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private Order.Status status() {
+        for (Order.Status status : STATUSES) {
+            if (regionIs(status.name())) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    private void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < msg.length()) {
+                c = msg.charAt(pos);
+                if (c == '"') {
+                    readString();
+                    continue;
+                }
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+                pos++;
+                if (depth == 0) {
+                    return;
+                }
+            }
+        } else {
+            while (pos < msg.length() && ",}] \t\r\n".indexOf(msg.charAt(pos)) < 0) {
+                pos++;
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < msg.length() && Character.isWhitespace(msg.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean consume(char c) {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private char peek() {
+        return pos < msg.length() ? msg.charAt(pos) : 0;
+    }
+
+    public static class OrderUpdate {
+        private String msg;
+        private int symbolStart, symbolEnd;
+        private int clientIdStart, clientIdEnd;
+        private Order.Status status;
+        private double averagePrice;
+        private double filledQuantity;
+
+        private void reset(String msg) {
+            this.msg = msg;
+            symbolStart = symbolEnd = clientIdStart = clientIdEnd = 0;
+            status = null;
+            averagePrice = filledQuantity = 0;
+        }
+
+        public boolean isSymbol(String symbol) {
+            return regionEquals(msg, symbolStart, symbolEnd, symbol);
+        }
+
+        public boolean hasClientId() {
+            return clientIdEnd > clientIdStart;
+        }
+
+        /**
+         * Client id is copied out of the frame only here, when the update is passed on.
+         */
+        public String clientId() {
+            return hasClientId() ? msg.substring(clientIdStart, clientIdEnd) : null;
+        }
+
+        public Order.Status status() {
+            return status;
+        }
+
+        public double averagePrice() {
+            return averagePrice;
+        }
+
+        public double filledQuantity() {
+            return filledQuantity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{ symbol :: %s, clientId :: %s, status :: %s }",
+                    msg.substring(symbolStart, symbolEnd), clientId(), status);
+        }
+    }
+
+    public static class AccountUpdate {
+        private String msg;
+        private int reasonStart, reasonEnd;
+        private PositionUpdate[] positions = new PositionUpdate[2];
+        private int size;
+
+        private void reset(String msg) {
+            this.msg = msg;
+            reasonStart = reasonEnd = 0;
+            size = 0;
+        }
+
+        private PositionUpdate add() {
+            if (size == positions.length) {
+                PositionUpdate[] grown = new PositionUpdate[positions.length * 2];
+                System.arraycopy(positions, 0, grown, 0, size);
+                positions = grown;
+            }
+            if (positions[size] == null) {
+                positions[size] = new PositionUpdate();
+            }
+            PositionUpdate update = positions[size++];
+            update.reset(msg);
+            return update;
+        }
+
+        public boolean isReason(String reason) {
+            return regionEquals(msg, reasonStart, reasonEnd, reason);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PositionUpdate position(int index) {
+            return positions[index];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{ reason :: %s, positions :: %d }", msg.substring(reasonStart, reasonEnd), size);
+        }
+    }
+
+    public static class PositionUpdate {
+        private String msg;
+        private int symbolStart, symbolEnd;
+        private int sideStart, sideEnd;
+        private double positionAmt;
+        private double entryPrice;
+        private double breakEvenPrice;
+
+        private void reset(String msg) {
+            this.msg = msg;
+            symbolStart = symbolEnd = sideStart = sideEnd = 0;
+            positionAmt = entryPrice = breakEvenPrice = 0;
+        }
+
+        public boolean isSymbol(String symbol) {
+            return regionEquals(msg, symbolStart, symbolEnd, symbol);
+        }
+
+        public boolean isSide(String side) {
+            return regionEquals(msg, sideStart, sideEnd, side);
+        }
+
+        /**
+         * Creates the position passed on to the account, null if the position is closed.
+         */
+        public Position toPosition() {
+            if (entryPrice == 0 || positionAmt == 0) {
+                return null;
+            }
+            Position position = new Position();
+            position.setSymbol(msg.substring(symbolStart, symbolEnd));
+            position.setEntryPrice(entryPrice);
+            position.setPositionAmt(positionAmt);
+            position.setBreakEvenPrice(breakEvenPrice);
+            return position;
+        }
+    }
+
+    private static boolean regionEquals(String msg, int start, int end, String value) {
+        return end - start == value.length() && msg.regionMatches(start, value, 0, value.length());
+    }
+}
@@ -1,24 +1,28 @@
 package org.tradebot.binance;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.tradebot.domain.HTTPResponse;
 import org.tradebot.domain.Position;
 import org.tradebot.listener.UserDataCallback;
 import org.tradebot.service.TaskManager;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 
 import java.util.concurrent.TimeUnit;
 
-import static org.tradebot.util.JsonParser.parsePosition;
 import static org.tradebot.util.Settings.BALANCE_UPDATE_TASK;
 import static org.tradebot.util.Settings.SYMBOL;
 
 public class UserDataHandler {
+    private static final String ORDER_TRADE_UPDATE_FIELD = "\"e\":\"ORDER_TRADE_UPDATE\"";
+    private static final String FILLED_STATUS_FIELD = "\"X\":\"FILLED\"";
+    private static final String SYMBOL_UPPER_CASE = SYMBOL.toUpperCase();
+    private static final String SYMBOL_FIELD = "\"s\":\"" + SYMBOL_UPPER_CASE + "\"";
+
     private final Log log;
     private final APIService apiService;
     private final String baseAsset;
     private final int clientNumber;
+    private final UserDataDecoder decoder = new UserDataDecoder();
     private UserDataCallback callback;
 
     public UserDataHandler(APIService apiService, int clientNumber, String baseAsset) {
@@ -28,49 +32,59 @@ public class UserDataHandler {
         this.baseAsset = baseAsset;
     }
 
-    public void onMessage(String eventType, JSONObject message) {
-        log.debug(String.format("Received event: '%s'. Message: '%s'", eventType, message));
-        if ("ORDER_TRADE_UPDATE".equals(eventType)) {
-            JSONObject orderJson = message.getJSONObject("o");
-            String status = orderJson.getString("X");
-            String clientId = orderJson.getString("c");
-            if (!validOrderUpdate(orderJson))
-                return;
-
-            if (callback != null)
-                callback.notifyOrderUpdate(clientId, status);
-
-        } else if ("ACCOUNT_UPDATE".equals(eventType)) {
-            JSONObject accountUpdate = message.getJSONObject("a");
-            if ("ORDER".equals(accountUpdate.getString("m"))) {
-                JSONArray positionUpdates = accountUpdate.getJSONArray("P");
-                for (int i = 0; i < positionUpdates.length(); i++) {
-                    JSONObject positionUpdate = positionUpdates.getJSONObject(i);
-                    if (!validPositionUpdate(positionUpdate))
-                        continue;
-
-                    if (callback != null) {
-                        Position position = parsePosition(positionUpdate);
-                        callback.notifyPositionUpdate(position);
-
-                        TaskManager.getInstance(clientNumber).schedule(BALANCE_UPDATE_TASK,
-                                () -> updateBalance(position), 20, TimeUnit.MILLISECONDS);
-                    }
-                    break;
-                }
-            }
+    public void onMessage(String msg) {
+        long received = System.nanoTime();
+        if (callback != null)
+            callback.notifyUserDataReceived();
+        if (isIgnoredOrderUpdate(msg))
+            return;
+
+        log.debugf("Received event: '%s'", msg);
+        UserDataDecoder.EventType eventType = decoder.decode(msg);
+        Metrics.getInstance().record(Metrics.USER_WS_RECEIVE_TO_DECODE, System.nanoTime() - received);
+        switch (eventType) {
+            case ORDER_TRADE_UPDATE -> onOrderUpdate(decoder.orderUpdate());
+            case ACCOUNT_UPDATE -> onAccountUpdate(decoder.accountUpdate());
+            case OTHER -> { }
         }
     }
 
-    private boolean validOrderUpdate(JSONObject orderJson) {
-        return SYMBOL.toUpperCase().equals(orderJson.getString("s"));
+    /**
+     * Checks the raw message before it is parsed: only filled orders of our symbol are handled, other
+     * order updates (NEW, PARTIALLY_FILLED, CANCELED...) are dropped without allocation.
+     */
+    static boolean isIgnoredOrderUpdate(String msg) {
+        return msg.contains(ORDER_TRADE_UPDATE_FIELD) &&
+                (!msg.contains(FILLED_STATUS_FIELD) || !msg.contains(SYMBOL_FIELD));
+    }
+
+    private void onOrderUpdate(UserDataDecoder.OrderUpdate orderUpdate) {
+        if (!orderUpdate.isSymbol(SYMBOL_UPPER_CASE) || orderUpdate.status() == null)
+            return;
+
+        if (callback != null)
+            callback.notifyOrderUpdate(orderUpdate.clientId(), orderUpdate.status().toString(),
+                    orderUpdate.averagePrice(), orderUpdate.filledQuantity());
     }
 
-    private boolean validPositionUpdate(JSONObject positionUpdate) {
-        return positionUpdate.has("ps") &&
-                "BOTH".equals(positionUpdate.getString("ps")) &&
-                positionUpdate.has("s") &&
-                SYMBOL.toUpperCase().equals(positionUpdate.getString("s"));
+    private void onAccountUpdate(UserDataDecoder.AccountUpdate accountUpdate) {
+        if (!accountUpdate.isReason("ORDER"))
+            return;
+
+        for (int i = 0; i < accountUpdate.size(); i++) {
+            UserDataDecoder.PositionUpdate positionUpdate = accountUpdate.position(i);
+            if (!positionUpdate.isSide("BOTH") || !positionUpdate.isSymbol(SYMBOL_UPPER_CASE))
+                continue;
+
+            if (callback != null) {
+                Position position = positionUpdate.toPosition();
+                callback.notifyPositionUpdate(position);
+
+                TaskManager.getInstance(clientNumber).schedule(BALANCE_UPDATE_TASK,
+                        () -> updateBalance(position), 20, TimeUnit.MILLISECONDS);
+            }
+            break;
+        }
     }
 
     private void updateBalance(Position position) {
@@ -2,8 +2,8 @@ package org.tradebot.binance;
 
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
-import org.json.JSONObject;
 import org.tradebot.domain.HTTPResponse;
+import org.tradebot.jfr.WebSocketFrameEvent;
 import org.tradebot.listener.UserWebSocketCallback;
 import org.tradebot.service.TaskManager;
 import org.tradebot.util.Log;
@@ -64,9 +64,16 @@ public class UserWebSocketService extends WebSocketClient {
 
     @Override
     public void onMessage(String msg) {
-        JSONObject message = new JSONObject(msg);
-        if (message.has("e")) {
-            userDataHandler.onMessage(message.getString("e"), message);
+        WebSocketFrameEvent event = new WebSocketFrameEvent();
+        event.begin();
+        userDataHandler.onMessage(msg);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.stream = WebSocketFrameEvent.USER_STREAM;
+            event.eventType = WebSocketFrameEvent.eventTypeOf(msg);
+            event.size = msg.length();
+            event.commit();
         }
     }
 
@@ -32,6 +32,10 @@ public class Imbalance implements Serializable {
         return startTime;
     }
 
+    public double getStartPrice() {
+        return startPrice;
+    }
+
     public double getEndPrice() {
         return endPrice;
     }
@@ -48,6 +52,10 @@ public class Imbalance implements Serializable {
         this.endTime = endTime;
     }
 
+    public double getComputedDuration() {
+        return computedDuration;
+    }
+
     public void setComputedDuration(double computedDuration) {
         this.computedDuration = computedDuration;
     }
@@ -0,0 +1,24 @@
+package org.tradebot.domain;
+
+/**
+ * Order book metrics after one update.
+ *
+ * @param depthImbalance (bid - ask) / (bid + ask) quantity of the best levels, from -1 to 1
+ * @param bidDepthInBand bid quantity not lower than mid price minus the band
+ * @param askDepthInBand ask quantity not higher than mid price plus the band
+ * @param orderFlowImbalance cumulative order flow imbalance of the best levels since the last resync
+ */
+public record OrderBookFeatures(double midPrice,
+                                double spread,
+                                double microprice,
+                                double depthImbalance,
+                                double bidDepthInBand,
+                                double askDepthInBand,
+                                double orderFlowImbalance) {
+
+    @Override
+    public String toString() {
+        return String.format("{ mid :: %.2f, spread :: %.2f, microprice :: %.2f, imbalance :: %.3f, bid band :: %.3f, ask band :: %.3f, ofi :: %.3f }",
+                midPrice, spread, microprice, depthImbalance, bidDepthInBand, askDepthInBand, orderFlowImbalance);
+    }
+}
@@ -0,0 +1,244 @@
+package org.tradebot.domain;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One side of the order book as sorted primitive arrays of price ticks and quantities.
+ * Levels are kept from the worst to the best price, so the best level is the last element: best price is O(1),
+ * updates are binary search plus a short shift near the top of the book, where most of the changes happen.
+ * Level 0 in the read methods is the best level.
+ * <p>
+ * Total quantity of the best {@code topDepth} levels and of the levels not worse than the band limit are kept
+ * up to date on every change, so reading them is O(1).
+ */
+public class OrderBookSide {
+
+    public enum Type { ASK, BID }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Type type;
+    private final double scale;
+    private final int topDepth;
+    private long[] ticks = new long[INITIAL_CAPACITY];
+    private double[] quantities = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private double topQuantity = 0;
+    private long bandLimitTick;
+    private double bandQuantity = 0;
+
+    public OrderBookSide(Type type, int pricePrecision) {
+        this(type, pricePrecision, 0);
+    }
+
+    public OrderBookSide(Type type, int pricePrecision, int topDepth) {
+        this.type = type;
+        this.scale = Math.pow(10, pricePrecision);
+        this.topDepth = topDepth;
+        this.bandLimitTick = emptyBandLimit();
+    }
+
+    public long toTick(double price) {
+        return Math.round(price * scale);
+    }
+
+    public double toPrice(long tick) {
+        return tick / scale;
+    }
+
+    /**
+     * Sets quantity of the price level, zero quantity removes the level.
+     */
+    public void update(double price, double quantity) {
+        long tick = toTick(price);
+        int index = indexOf(tick);
+        boolean inBand = isInBand(tick);
+        if (index >= 0) {
+            double previous = quantities[index];
+            boolean inTop = size - 1 - index < topDepth;
+            if (quantity == 0) {
+                if (inTop) {
+                    topQuantity -= previous;
+                    int nextTop = size - 1 - topDepth;
+                    if (nextTop >= 0) {
+                        topQuantity += quantities[nextTop];
+                    }
+                }
+                if (inBand) {
+                    bandQuantity -= previous;
+                }
+                System.arraycopy(ticks, index + 1, ticks, index, size - index - 1);
+                System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+                size--;
+            } else {
+                quantities[index] = quantity;
+                if (inTop) {
+                    topQuantity += quantity - previous;
+                }
+                if (inBand) {
+                    bandQuantity += quantity - previous;
+                }
+            }
+        } else if (quantity != 0) {
+            int insertion = -index - 1;
+            if (size - insertion < topDepth) {
+                topQuantity += quantity;
+                int pushedOut = size - topDepth;
+                if (pushedOut >= 0) {
+                    topQuantity -= quantities[pushedOut];
+                }
+            }
+            if (inBand) {
+                bandQuantity += quantity;
+            }
+            if (size == ticks.length) {
+                ticks = Arrays.copyOf(ticks, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            System.arraycopy(ticks, insertion, ticks, insertion + 1, size - insertion);
+            System.arraycopy(quantities, insertion, quantities, insertion + 1, size - insertion);
+            ticks[insertion] = tick;
+            quantities[insertion] = quantity;
+            size++;
+        }
+    }
+
+    public void clear() {
+        size = 0;
+        topQuantity = 0;
+        bandQuantity = 0;
+    }
+
+    /**
+     * Total quantity of the best {@code topDepth} levels.
+     */
+    public double topQuantity() {
+        return topQuantity;
+    }
+
+    /**
+     * Moves the band limit: bids not lower or asks not higher than the price are inside the band.
+     * Only the levels between the old and the new limit are visited.
+     */
+    public void setBandLimit(double price) {
+        long limitTick = type == Type.BID ? (long) Math.ceil(price * scale) : (long) Math.floor(price * scale);
+        if (limitTick == bandLimitTick) {
+            return;
+        }
+        int oldStart = bandStart(bandLimitTick);
+        int newStart = bandStart(limitTick);
+        for (int i = newStart; i < oldStart; i++) {
+            bandQuantity += quantities[i];
+        }
+        for (int i = oldStart; i < newStart; i++) {
+            bandQuantity -= quantities[i];
+        }
+        bandLimitTick = limitTick;
+    }
+
+    /**
+     * Total quantity of the levels inside the band set by {@link #setBandLimit(double)}.
+     */
+    public double bandQuantity() {
+        return bandQuantity;
+    }
+
+    private boolean isInBand(long tick) {
+        return type == Type.BID ? tick >= bandLimitTick : tick <= bandLimitTick;
+    }
+
+    /**
+     * Index of the worst level inside the band, levels from it to the end of the arrays are inside.
+     */
+    private int bandStart(long limitTick) {
+        int index = indexOf(limitTick);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private long emptyBandLimit() {
+        return type == Type.BID ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double bestPrice() {
+        return size == 0 ? Double.NaN : toPrice(ticks[size - 1]);
+    }
+
+    public double bestQuantity() {
+        return size == 0 ? 0 : quantities[size - 1];
+    }
+
+    public long tickAt(int level) {
+        return ticks[size - 1 - level];
+    }
+
+    public double priceAt(int level) {
+        return toPrice(ticks[size - 1 - level]);
+    }
+
+    public double quantityAt(int level) {
+        return quantities[size - 1 - level];
+    }
+
+    public double quantity(double price) {
+        int index = indexOf(toTick(price));
+        return index >= 0 ? quantities[index] : 0;
+    }
+
+    /**
+     * Copies up to {@code limit} best levels into the given arrays and returns the number of copied levels.
+     */
+    public int copyTop(int limit, double[] prices, double[] quantities) {
+        int count = Math.min(limit, size);
+        for (int level = 0; level < count; level++) {
+            prices[level] = priceAt(level);
+            quantities[level] = quantityAt(level);
+        }
+        return count;
+    }
+
+    public Map<Double, Double> toMap(int limit) {
+        int count = Math.min(limit, size);
+        Map<Double, Double> result = new LinkedHashMap<>(count * 2);
+        for (int level = 0; level < count; level++) {
+            result.put(priceAt(level), quantityAt(level));
+        }
+        return result;
+    }
+
+    /**
+     * Binary search in the worst to best order: ascending ticks for bids, descending for asks.
+     */
+    private int indexOf(long tick) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = ticks[middle];
+            int compare = type == Type.BID ? Long.compare(value, tick) : Long.compare(tick, value);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public String toString() {
+        return toMap(size).toString();
+    }
+}
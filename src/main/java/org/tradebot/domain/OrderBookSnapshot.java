@@ -0,0 +1,89 @@
+package org.tradebot.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only copy of the best levels of the order book at one update. Level 0 is the best level.
+ */
+public final class OrderBookSnapshot {
+
+    private final long updateId;
+    private final long eventTime;
+    private final OrderBookFeatures features;
+    private final double[] askPrices;
+    private final double[] askQuantities;
+    private final double[] bidPrices;
+    private final double[] bidQuantities;
+
+    public OrderBookSnapshot(long updateId, long eventTime, OrderBookFeatures features,
+                             double[] askPrices, double[] askQuantities,
+                             double[] bidPrices, double[] bidQuantities) {
+        this.updateId = updateId;
+        this.eventTime = eventTime;
+        this.features = features;
+        this.askPrices = askPrices;
+        this.askQuantities = askQuantities;
+        this.bidPrices = bidPrices;
+        this.bidQuantities = bidQuantities;
+    }
+
+    public long updateId() {
+        return updateId;
+    }
+
+    public long eventTime() {
+        return eventTime;
+    }
+
+    public OrderBookFeatures features() {
+        return features;
+    }
+
+    public int askLevels() {
+        return askPrices.length;
+    }
+
+    public int bidLevels() {
+        return bidPrices.length;
+    }
+
+    public double askPrice(int level) {
+        return askPrices[level];
+    }
+
+    public double askQuantity(int level) {
+        return askQuantities[level];
+    }
+
+    public double bidPrice(int level) {
+        return bidPrices[level];
+    }
+
+    public double bidQuantity(int level) {
+        return bidQuantities[level];
+    }
+
+    public Map<Double, Double> asks(int limit) {
+        return toMap(askPrices, askQuantities, limit);
+    }
+
+    public Map<Double, Double> bids(int limit) {
+        return toMap(bidPrices, bidQuantities, limit);
+    }
+
+    private static Map<Double, Double> toMap(double[] prices, double[] quantities, int limit) {
+        int count = Math.min(limit, prices.length);
+        Map<Double, Double> result = new LinkedHashMap<>(count * 2);
+        for (int level = 0; level < count; level++) {
+            result.put(prices[level], quantities[level]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ updateId :: %d, eventTime :: %d, features :: %s, asks :: %s, bids :: %s }",
+                updateId, eventTime, features, asks(askLevels()), bids(bidLevels()));
+    }
+}
@@ -3,9 +3,12 @@ package org.tradebot.domain;
 import org.tradebot.binance.*;
 import org.tradebot.service.ImbalanceService;
 import org.tradebot.service.OrderManager;
+import org.tradebot.service.StatePublisher;
 import org.tradebot.service.Strategy;
 import org.tradebot.strategy_state_handlers.*;
+import org.tradebot.util.FanOutSpread;
 import org.tradebot.util.Log;
+import org.tradebot.util.Mailbox;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -18,6 +21,7 @@ public class TradingAccount {
     private final UserWebSocketService userWebSocketService;
     private final Strategy strategy;
     private final OrderManager orderManager;
+    private final Mailbox mailbox;
     private final int clientNumber;
     private final AtomicBoolean ready = new AtomicBoolean(false);
 
@@ -35,9 +39,10 @@ public class TradingAccount {
         UserDataHandler userDataHandler = new UserDataHandler(apiService, clientNumber, settings.baseAsset());
         userWebSocketService = new UserWebSocketService(userDataHandler, httpClient, clientNumber);
 
+        mailbox = new Mailbox("account-" + clientNumber, log, ACCOUNT_MAILBOX_VIRTUAL_THREAD);
         StrategyStateDispatcher stateDispatcher = new StrategyStateDispatcher(clientNumber);
         orderManager = new OrderManager(httpClient, clientNumber,
-                settings.baseAsset(), settings.customLeverage(), stateDispatcher);
+                settings.baseAsset(), settings.customLeverage(), stateDispatcher, mailbox);
 
         stateDispatcher.registerHandler(OrderManager.State.POSITION_EMPTY,
                 new EmptyPositionStateHandler(orderManager, clientNumber));
@@ -52,8 +57,9 @@ public class TradingAccount {
         stateDispatcher.registerHandler(OrderManager.State.BREAK_EVEN_ORDER_CREATED,
                 new BreakEvenStopCreatedStateHandler(apiService, orderManager, clientNumber));
 
+        orderManager.recover();
         userDataHandler.setCallback(orderManager);
-        strategy = new Strategy(orderManager, clientNumber);
+        strategy = new Strategy(orderManager, mailbox, clientNumber);
         userWebSocketService.setCallback(strategy);
 
         log.info("Account successfully initialized.");
@@ -78,7 +84,6 @@ public class TradingAccount {
 
     public void start() {
         log.info("Starting account " + clientNumber);
-        ImbalanceService.getInstance().addCallback(strategy);
         OrderBookHandler.getInstance().addCallback(strategy);
         MarketDataWebSocketService.getInstance().addCallback(strategy);
         userWebSocketService.connect();
@@ -89,19 +94,45 @@ public class TradingAccount {
     public void stop() {
         log.info("Stopping account " + clientNumber);
         if (TEST_RUN)
-            orderManager.closePositionAndResetState();
-        ImbalanceService.getInstance().removeCallback(strategy);
+            mailbox.execute(orderManager::closePositionAndResetState).join();
         OrderBookHandler.getInstance().removeCallback(strategy);
         MarketDataWebSocketService.getInstance().removeCallback(strategy);
         userWebSocketService.close();
+        // after the tasks already in the mailbox, they may still send orders and write to the journal
+        mailbox.execute(orderManager::close);
+        mailbox.shutdown();
         ready.set(false);
         log.info("Stopped.");
     }
 
+    /**
+     * Only adds the signal to the account mailbox, it is handled on the account thread.
+     */
+    public void notifyImbalanceStateUpdate(long time, MarketEntry currentEntry, ImbalanceService.State state, Imbalance imbalance,
+                                           FanOutSpread spread) {
+        long received = System.nanoTime();
+        mailbox.execute(() -> {
+            orderManager.setSignal(received, spread);
+            try {
+                strategy.notifyImbalanceStateUpdate(time, currentEntry, state, imbalance);
+            } finally {
+                orderManager.completeSignal();
+            }
+        });
+    }
+
+    public int getClientNumber() {
+        return clientNumber;
+    }
+
     public boolean isReady() {
         return ready.get();
     }
 
+    public int getMailboxSize() {
+        return mailbox.size();
+    }
+
     public OrderManager getOrderManager() {
         return orderManager;
     }
@@ -121,8 +152,9 @@ public class TradingAccount {
                             TradingAccount State:
                             ready: %s
                             clientNumber: %d
+                            mailbox: %s
                             """,
-                    ready.get(), clientNumber));
+                    ready.get(), clientNumber, mailbox));
         } catch (Exception e) {
             log.warn("Failed to write", e);
         }
@@ -132,9 +164,10 @@ public class TradingAccount {
         try {
             state.setPositionState(this.getOrderManager().getState())
                     .setUserStream(this.getUserWebSocketServiceReady())
-                    .setReadyAccountState(this.isReady());
+                    .setReadyAccountState(this.isReady())
+                    .setStopLatency(this.getOrderManager().getStopLatency().toMap());
 
-            log.updateState(state);
+            StatePublisher.getInstance().publish(clientNumber, state);
         } catch (Exception e) {
             log.error("Update state failed", e);
         }
@@ -5,6 +5,7 @@ import org.tradebot.service.ImbalanceService;
 import org.tradebot.service.OrderManager;
 
 import java.util.Map;
+import java.util.Objects;
 
 public class TradingBotState {
     private ImbalanceService.State imbalanceState;
@@ -19,7 +20,25 @@ public class TradingBotState {
     private Map<Double, Double> asks;
     private Map<Double, Double> bids;
     private String currentTime;
-
+    private Map<String, Object> stopLatency;
+
+    public TradingBotState() {  }
+
+    public TradingBotState(TradingBotState other) {
+        this.imbalanceState = other.imbalanceState;
+        this.positionState = other.positionState;
+        this.marketDataWebSocketState = other.marketDataWebSocketState;
+        this.userStream = other.userStream;
+        this.shouldUseOrderBook = other.shouldUseOrderBook;
+        this.orderBookReady = other.orderBookReady;
+        this.readyAccountState = other.readyAccountState;
+        this.countOfWorkingAccounts = other.countOfWorkingAccounts;
+        this.lastPrice = other.lastPrice;
+        this.asks = other.asks;
+        this.bids = other.bids;
+        this.currentTime = other.currentTime;
+        this.stopLatency = other.stopLatency;
+    }
 
     public ImbalanceService.State getImbalanceState() {
         return imbalanceState;
@@ -129,6 +148,34 @@ public class TradingBotState {
         return this;
     }
 
+    public Map<String, Object> getStopLatency() {
+        return stopLatency;
+    }
+
+    public TradingBotState setStopLatency(Map<String, Object> stopLatency) {
+        this.stopLatency = stopLatency;
+        return this;
+    }
+
+    /**
+     * Compares all fields except current time.
+     */
+    public boolean hasSameContent(TradingBotState other) {
+        return other != null
+                && imbalanceState == other.imbalanceState
+                && positionState == other.positionState
+                && marketDataWebSocketState == other.marketDataWebSocketState
+                && userStream == other.userStream
+                && shouldUseOrderBook == other.shouldUseOrderBook
+                && orderBookReady == other.orderBookReady
+                && readyAccountState == other.readyAccountState
+                && countOfWorkingAccounts == other.countOfWorkingAccounts
+                && Objects.equals(lastPrice, other.lastPrice)
+                && Objects.equals(asks, other.asks)
+                && Objects.equals(bids, other.bids)
+                && Objects.equals(stopLatency, other.stopLatency);
+    }
+
     @Override
     public String toString() {
         return new JSONObject(this).toString(4);
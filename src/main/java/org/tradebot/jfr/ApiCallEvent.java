@@ -0,0 +1,29 @@
+package org.tradebot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One attempt of a signed REST call, status is -1 if no response was received.
+ */
+@Name("org.tradebot.ApiCall")
+@Label("API Call")
+@Category({"Tradebot", "Orders"})
+@StackTrace(false)
+public class ApiCallEvent extends Event {
+
+    @Label("Account")
+    public int clientNumber;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Endpoint")
+    public String endpoint;
+
+    @Label("Status")
+    public int status;
+}
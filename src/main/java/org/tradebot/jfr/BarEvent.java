@@ -0,0 +1,34 @@
+package org.tradebot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+/**
+ * Emission of one market data bar, the duration includes all market data callbacks.
+ */
+@Name("org.tradebot.Bar")
+@Label("Bar")
+@Category({"Tradebot", "Market Data"})
+@StackTrace(false)
+public class BarEvent extends Event {
+
+    @Label("Open Time")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    public long openTime;
+
+    @Label("High")
+    public double high;
+
+    @Label("Low")
+    public double low;
+
+    @Label("Volume")
+    public double volume;
+
+    @Label("Trades")
+    public int trades;
+}
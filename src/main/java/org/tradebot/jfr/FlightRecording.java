@@ -0,0 +1,93 @@
+package org.tradebot.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.tradebot.util.Log;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Continuous flight recording kept as a ring of the last {@link org.tradebot.util.Settings#JFR_MAX_AGE}.
+ * On every ERROR log the ring is dumped to {@code output/jfr/}, at most once per {@link org.tradebot.util.Settings#JFR_DUMP_MIN_INTERVAL}.
+ */
+public class FlightRecording {
+
+    private static final DateTimeFormatter FILE_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private final Log log = new Log();
+    private final AtomicLong lastDump = new AtomicLong();
+    private volatile Recording recording;
+
+    private static FlightRecording instance;
+
+    public static synchronized FlightRecording getInstance() {
+        if (instance == null) {
+            instance = new FlightRecording();
+        }
+        return instance;
+    }
+
+    private FlightRecording() {  }
+
+    public void start() {
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration(JFR_CONFIGURATION));
+            recording.setName("tradebot");
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMillis(JFR_MAX_AGE));
+            recording.setMaxSize(JFR_MAX_SIZE);
+            recording.start();
+            this.recording = recording;
+            log.info(String.format("Flight recording started (%s, max age %d s, max size %d MB)",
+                    JFR_CONFIGURATION, JFR_MAX_AGE / 1000, JFR_MAX_SIZE / (1024 * 1024)));
+        } catch (Exception e) {
+            log.warn("Failed to start flight recording, continuing without it", e);
+        }
+    }
+
+    /**
+     * Dumps the recording on a separate thread, so the logging thread is not blocked. Skipped if the
+     * recording is not running or the previous dump was less than {@link org.tradebot.util.Settings#JFR_DUMP_MIN_INTERVAL} ago.
+     */
+    public void dumpOnError() {
+        Recording current = recording;
+        if (current == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long previous = lastDump.get();
+        if (now - previous < JFR_DUMP_MIN_INTERVAL || !lastDump.compareAndSet(previous, now)) {
+            return;
+        }
+        Thread thread = new Thread(() -> dump(current, "error"), "jfr-dump");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        Recording current = recording;
+        if (current != null) {
+            recording = null;
+            current.close();
+            log.info("Flight recording stopped.");
+        }
+    }
+
+    private void dump(Recording recording, String reason) {
+        try {
+            Path target = Path.of(JFR_DIR_PATH, String.format("%s-%s.jfr", LocalDateTime.now().format(FILE_NAME_FORMATTER), reason));
+            Files.createDirectories(target.getParent());
+            recording.dump(target);
+            log.info(String.format("Flight recording dumped to %s", target));
+        } catch (Exception e) {
+            log.warn("Failed to dump flight recording", e);
+        }
+    }
+}
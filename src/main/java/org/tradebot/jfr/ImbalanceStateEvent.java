@@ -0,0 +1,29 @@
+package org.tradebot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * State change of the imbalance detector, the duration is the notification of all accounts.
+ */
+@Name("org.tradebot.ImbalanceState")
+@Label("Imbalance State")
+@Category({"Tradebot", "Detection"})
+@StackTrace(false)
+public class ImbalanceStateEvent extends Event {
+
+    @Label("State")
+    public String state;
+
+    @Label("Imbalance Type")
+    public String imbalanceType;
+
+    @Label("Start Price")
+    public double startPrice;
+
+    @Label("End Price")
+    public double endPrice;
+}
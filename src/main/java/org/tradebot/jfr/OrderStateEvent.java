@@ -0,0 +1,26 @@
+package org.tradebot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Position state transition of one account.
+ */
+@Name("org.tradebot.OrderState")
+@Label("Order State")
+@Category({"Tradebot", "Orders"})
+@StackTrace(false)
+public class OrderStateEvent extends Event {
+
+    @Label("Account")
+    public int clientNumber;
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+}
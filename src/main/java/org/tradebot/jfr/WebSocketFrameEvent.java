@@ -0,0 +1,48 @@
+package org.tradebot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Handling of one WebSocket frame from receive to the end of its callbacks.
+ * Only frames slower than the threshold are recorded, the threshold can be changed in the recording settings.
+ */
+@Name("org.tradebot.WebSocketFrame")
+@Label("WebSocket Frame")
+@Category({"Tradebot", "WebSocket"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class WebSocketFrameEvent extends Event {
+
+    public static final String MARKET_STREAM = "market";
+    public static final String USER_STREAM = "user";
+    private static final String EVENT_TYPE_FIELD = "\"e\":\"";
+
+    @Label("Stream")
+    public String stream;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Frame Size")
+    @DataAmount
+    public int size;
+
+    /**
+     * Value of the {@code "e"} field of a raw frame, only called for frames that are recorded.
+     */
+    public static String eventTypeOf(String msg) {
+        int start = msg.indexOf(EVENT_TYPE_FIELD);
+        if (start < 0) {
+            return null;
+        }
+        start += EVENT_TYPE_FIELD.length();
+        int end = msg.indexOf('"', start);
+        return end < 0 ? null : msg.substring(start, end);
+    }
+}
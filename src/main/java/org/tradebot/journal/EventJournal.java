@@ -0,0 +1,225 @@
+package org.tradebot.journal;
+
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.MarketEntry;
+import org.tradebot.service.ImbalanceService;
+import org.tradebot.service.OrderManager;
+import org.tradebot.util.Log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Binary journal of hot path events. Records have fixed size and are appended to a memory-mapped segment file,
+ * writers claim a slot with one atomic increment and never block each other. When the segment is full
+ * the next one is created, the full one is forced and dropped, so its mapping is released by the collector
+ * (explicit unmapping is not safe while a writer may still hold the buffer). On every roll the oldest segments
+ * beyond {@link org.tradebot.util.Settings#JOURNAL_MAX_SEGMENTS} or older than
+ * {@link org.tradebot.util.Settings#JOURNAL_MAX_AGE} are deleted.
+ * Type byte is written the last, so a reader stops on the first empty or unfinished record.
+ * Use {@link JournalDecoder} to convert the files to CSV or JSON.
+ */
+public class EventJournal {
+
+    public static final int RECORD_SIZE = 64;
+    static final int TYPE_OFFSET = 0;
+    static final int CLIENT_OFFSET = 2;
+    static final int TIMESTAMP_OFFSET = 8;
+    static final int PAYLOAD_OFFSET = 16;
+    static final int ENDPOINT_OFFSET = PAYLOAD_OFFSET + 16;
+    static final int ENDPOINT_LENGTH = RECORD_SIZE - ENDPOINT_OFFSET;
+    static final String[] HTTP_METHODS = {"GET", "POST", "PUT", "DELETE"};
+    static final String SEGMENT_PREFIX = "events-";
+
+    private final Log log = new Log();
+
+    private volatile Segment segment;
+    private volatile boolean enabled = EVENT_JOURNAL_ENABLED;
+    private Path directory = Path.of(JOURNAL_DIR_PATH);
+    private int segmentNumber = 0;
+
+    private static EventJournal instance;
+
+    public static synchronized EventJournal getInstance() {
+        if (instance == null) {
+            instance = new EventJournal();
+        }
+        return instance;
+    }
+
+    private EventJournal() {  }
+
+    /**
+     * Writes the next records to a new segment in the directory. The benchmarks use it to keep their records
+     * out of the journal of the bot.
+     */
+    public synchronized void setDirectory(Path directory) {
+        force();
+        this.directory = directory;
+        segment = null;
+    }
+
+    public void writeBar(long openTime, MarketEntry entry) {
+        append(EventType.BAR, 0, openTime,
+                bits(entry.high()), bits(entry.low()), bits(entry.volume()), 0, 0, 0);
+    }
+
+    public void writeBookTop(long eventTime, long updateId, double bidPrice, double bidQty, double askPrice, double askQty) {
+        append(EventType.BOOK_TOP, 0, eventTime,
+                updateId, bits(bidPrice), bits(bidQty), bits(askPrice), bits(askQty), 0);
+    }
+
+    public void writeImbalanceState(long time, ImbalanceService.State state, Imbalance imbalance) {
+        if (imbalance == null) {
+            append(EventType.IMBALANCE_STATE, 0, time, pack(state.ordinal(), -1), 0, 0, 0, 0, 0);
+        } else {
+            append(EventType.IMBALANCE_STATE, 0, time,
+                    pack(state.ordinal(), imbalance.getType().ordinal()),
+                    imbalance.getStartTime(), bits(imbalance.getStartPrice()),
+                    imbalance.getEndTime(), bits(imbalance.getEndPrice()), 0);
+        }
+    }
+
+    public void writeOrderState(int clientNumber, OrderManager.State previousState, OrderManager.State state) {
+        append(EventType.ORDER_STATE, clientNumber, System.currentTimeMillis(),
+                pack(previousState.ordinal(), state.ordinal()), 0, 0, 0, 0, 0);
+    }
+
+    public void writeHttpTiming(int clientNumber, String method, String endpoint, int status, long elapsedNanos) {
+        append(EventType.HTTP_TIMING, clientNumber, System.currentTimeMillis(),
+                pack(methodCode(method), status), elapsedNanos / 1_000,
+                ascii(endpoint, 0), ascii(endpoint, 8), ascii(endpoint, 16), ascii(endpoint, 24));
+    }
+
+    private void append(EventType type, int clientNumber, long timestamp,
+                        long p0, long p1, long p2, long p3, long p4, long p5) {
+        if (!enabled) {
+            return;
+        }
+        while (true) {
+            Segment current = segment;
+            if (current != null) {
+                int offset = current.position.getAndAdd(RECORD_SIZE);
+                if (offset + RECORD_SIZE <= current.size) {
+                    MappedByteBuffer buffer = current.buffer;
+                    buffer.putShort(offset + CLIENT_OFFSET, (short) clientNumber);
+                    buffer.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+                    buffer.putLong(offset + PAYLOAD_OFFSET, p0);
+                    buffer.putLong(offset + PAYLOAD_OFFSET + 8, p1);
+                    buffer.putLong(offset + PAYLOAD_OFFSET + 16, p2);
+                    buffer.putLong(offset + PAYLOAD_OFFSET + 24, p3);
+                    buffer.putLong(offset + PAYLOAD_OFFSET + 32, p4);
+                    buffer.putLong(offset + PAYLOAD_OFFSET + 40, p5);
+                    buffer.put(offset + TYPE_OFFSET, type.getCode());
+                    return;
+                }
+            }
+            if (!roll(current)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forces written records to the storage device.
+     */
+    public void force() {
+        Segment current = segment;
+        if (current != null) {
+            current.buffer.force();
+        }
+    }
+
+    public void close() {
+        force();
+        enabled = false;
+    }
+
+    private synchronized boolean roll(Segment full) {
+        if (segment != full) {
+            return true;
+        }
+        try {
+            Files.createDirectories(directory);
+            deleteExpiredSegments();
+            segment = new Segment(directory.resolve(
+                    String.format("%s%d-%d.bin", SEGMENT_PREFIX, System.currentTimeMillis(), segmentNumber++)), JOURNAL_SEGMENT_SIZE);
+            if (full != null) {
+                full.buffer.force();
+            }
+            return true;
+        } catch (IOException e) {
+            enabled = false;
+            log.warn("Event journal disabled, failed to create segment", e);
+            return false;
+        }
+    }
+
+    /**
+     * Leaves room for the new segment within {@link org.tradebot.util.Settings#JOURNAL_MAX_SEGMENTS}.
+     */
+    private void deleteExpiredSegments() {
+        try {
+            List<Path> segments = JournalDecoder.segments(directory).stream()
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .toList();
+            long minTime = System.currentTimeMillis() - JOURNAL_MAX_AGE;
+            for (int i = 0; i < segments.size(); i++) {
+                Path file = segments.get(i);
+                if (segments.size() - i >= JOURNAL_MAX_SEGMENTS || Files.getLastModifiedTime(file).toMillis() < minTime) {
+                    Files.deleteIfExists(file);
+                    log.info("Deleted journal segment " + file.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete old journal segments", e);
+        }
+    }
+
+    private static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static long ascii(String value, int from) {
+        long result = 0;
+        for (int i = from; i < from + 8; i++) {
+            result = (result << 8) | (i < value.length() ? value.charAt(i) & 0x7F : 0);
+        }
+        return result;
+    }
+
+    private static int methodCode(String method) {
+        for (int i = 0; i < HTTP_METHODS.length; i++) {
+            if (HTTP_METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Segment {
+        private final MappedByteBuffer buffer;
+        private final int size;
+        private final AtomicInteger position = new AtomicInteger(0);
+
+        private Segment(Path path, int size) throws IOException {
+            this.size = size - size % RECORD_SIZE;
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.size);
+            }
+        }
+    }
+}
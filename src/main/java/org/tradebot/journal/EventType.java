@@ -0,0 +1,39 @@
+package org.tradebot.journal;
+
+/**
+ * Event schemas of the journal. Every record is {@link EventJournal#RECORD_SIZE} bytes:
+ * type (byte), reserved (byte), client number (short), reserved (int), timestamp (long)
+ * and the payload described by {@link #fields}.
+ */
+public enum EventType {
+    BAR(1, "high", "low", "volume"),
+    BOOK_TOP(2, "updateId", "bidPrice", "bidQty", "askPrice", "askQty"),
+    IMBALANCE_STATE(3, "state", "imbalanceType", "startTime", "startPrice", "endTime", "endPrice"),
+    ORDER_STATE(4, "previousState", "state"),
+    HTTP_TIMING(5, "method", "endpoint", "status", "elapsedMicros");
+
+    private final byte code;
+    private final String[] fields;
+
+    EventType(int code, String... fields) {
+        this.code = (byte) code;
+        this.fields = fields;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public String[] getFields() {
+        return fields;
+    }
+
+    public static EventType fromCode(byte code) {
+        for (EventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
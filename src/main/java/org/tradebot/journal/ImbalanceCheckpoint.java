@@ -0,0 +1,228 @@
+package org.tradebot.journal;
+
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.MarketEntry;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Copy of the imbalance detector state. Market data is copied to primitive arrays on the market thread,
+ * encoding and writing happen later on the checkpoint thread. The file is written to a temp file and renamed,
+ * the trailing CRC rejects partially written or corrupted files.
+ */
+public class ImbalanceCheckpoint {
+
+    private static final int MAGIC = 0x494D4243;
+    private static final int VERSION = 1;
+
+    public final long lastEntryTime;
+    public final int state;
+    public final Imbalance imbalance;
+    public final double priceChangeThreshold;
+    public final double speedThreshold;
+    public final double currentMinuteHigh;
+    public final double currentMinuteLow;
+    public final double currentMinuteVolume;
+    public final long lastMinuteTimestamp;
+    private final long[] secondsTimes;
+    private final double[] secondsData;
+    private final long[] largeDataTimes;
+    private final double[] largeDataData;
+
+    public ImbalanceCheckpoint(long lastEntryTime, int state, Imbalance imbalance,
+                               double priceChangeThreshold, double speedThreshold,
+                               double currentMinuteHigh, double currentMinuteLow, double currentMinuteVolume,
+                               long lastMinuteTimestamp,
+                               TreeMap<Long, MarketEntry> seconds, TreeMap<Long, MarketEntry> largeData) {
+        this.lastEntryTime = lastEntryTime;
+        this.state = state;
+        this.imbalance = imbalance == null ? null : new Imbalance(imbalance.getStartTime(), imbalance.getStartPrice(),
+                imbalance.getEndTime(), imbalance.getEndPrice(), imbalance.getType());
+        if (this.imbalance != null) {
+            this.imbalance.setComputedDuration(imbalance.getComputedDuration());
+        }
+        this.priceChangeThreshold = priceChangeThreshold;
+        this.speedThreshold = speedThreshold;
+        this.currentMinuteHigh = currentMinuteHigh;
+        this.currentMinuteLow = currentMinuteLow;
+        this.currentMinuteVolume = currentMinuteVolume;
+        this.lastMinuteTimestamp = lastMinuteTimestamp;
+        this.secondsTimes = new long[seconds.size()];
+        this.secondsData = new double[seconds.size() * 3];
+        copy(seconds, secondsTimes, secondsData);
+        this.largeDataTimes = new long[largeData.size()];
+        this.largeDataData = new double[largeData.size() * 3];
+        copy(largeData, largeDataTimes, largeDataData);
+    }
+
+    private ImbalanceCheckpoint(long lastEntryTime, int state, Imbalance imbalance,
+                                double priceChangeThreshold, double speedThreshold,
+                                double currentMinuteHigh, double currentMinuteLow, double currentMinuteVolume,
+                                long lastMinuteTimestamp,
+                                long[] secondsTimes, double[] secondsData, long[] largeDataTimes, double[] largeDataData) {
+        this.lastEntryTime = lastEntryTime;
+        this.state = state;
+        this.imbalance = imbalance;
+        this.priceChangeThreshold = priceChangeThreshold;
+        this.speedThreshold = speedThreshold;
+        this.currentMinuteHigh = currentMinuteHigh;
+        this.currentMinuteLow = currentMinuteLow;
+        this.currentMinuteVolume = currentMinuteVolume;
+        this.lastMinuteTimestamp = lastMinuteTimestamp;
+        this.secondsTimes = secondsTimes;
+        this.secondsData = secondsData;
+        this.largeDataTimes = largeDataTimes;
+        this.largeDataData = largeDataData;
+    }
+
+    public TreeMap<Long, MarketEntry> seconds() {
+        return toMap(secondsTimes, secondsData);
+    }
+
+    public TreeMap<Long, MarketEntry> largeData() {
+        return toMap(largeDataTimes, largeDataData);
+    }
+
+    public void write(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastEntryTime);
+            out.writeInt(state);
+            out.writeDouble(priceChangeThreshold);
+            out.writeDouble(speedThreshold);
+            out.writeDouble(currentMinuteHigh);
+            out.writeDouble(currentMinuteLow);
+            out.writeDouble(currentMinuteVolume);
+            out.writeLong(lastMinuteTimestamp);
+            out.writeBoolean(imbalance != null);
+            if (imbalance != null) {
+                out.writeInt(imbalance.getType().ordinal());
+                out.writeLong(imbalance.getStartTime());
+                out.writeDouble(imbalance.getStartPrice());
+                out.writeLong(imbalance.getEndTime());
+                out.writeDouble(imbalance.getEndPrice());
+                out.writeDouble(imbalance.getComputedDuration());
+            }
+            writeData(out, secondsTimes, secondsData);
+            writeData(out, largeDataTimes, largeDataData);
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the checkpoint, returns null if the file does not exist or is not valid.
+     */
+    public static ImbalanceCheckpoint read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < Long.BYTES) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        long storedCrc = new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - Long.BYTES, Long.BYTES)).readLong();
+        if (storedCrc != crc.getValue()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long lastEntryTime = in.readLong();
+            int state = in.readInt();
+            double priceChangeThreshold = in.readDouble();
+            double speedThreshold = in.readDouble();
+            double currentMinuteHigh = in.readDouble();
+            double currentMinuteLow = in.readDouble();
+            double currentMinuteVolume = in.readDouble();
+            long lastMinuteTimestamp = in.readLong();
+            Imbalance imbalance = null;
+            if (in.readBoolean()) {
+                Imbalance.Type type = Imbalance.Type.values()[in.readInt()];
+                long startTime = in.readLong();
+                double startPrice = in.readDouble();
+                long endTime = in.readLong();
+                double endPrice = in.readDouble();
+                imbalance = new Imbalance(startTime, startPrice, endTime, endPrice, type);
+                imbalance.setComputedDuration(in.readDouble());
+            }
+            int secondsSize = in.readInt();
+            long[] secondsTimes = new long[secondsSize];
+            double[] secondsData = new double[secondsSize * 3];
+            readData(in, secondsTimes, secondsData);
+            int largeDataSize = in.readInt();
+            long[] largeDataTimes = new long[largeDataSize];
+            double[] largeDataData = new double[largeDataSize * 3];
+            readData(in, largeDataTimes, largeDataData);
+            return new ImbalanceCheckpoint(lastEntryTime, state, imbalance, priceChangeThreshold, speedThreshold,
+                    currentMinuteHigh, currentMinuteLow, currentMinuteVolume, lastMinuteTimestamp,
+                    secondsTimes, secondsData, largeDataTimes, largeDataData);
+        }
+    }
+
+    private static void copy(TreeMap<Long, MarketEntry> source, long[] times, double[] data) {
+        int i = 0;
+        for (Map.Entry<Long, MarketEntry> entry : source.entrySet()) {
+            times[i] = entry.getKey();
+            data[i * 3] = entry.getValue().high();
+            data[i * 3 + 1] = entry.getValue().low();
+            data[i * 3 + 2] = entry.getValue().volume();
+            i++;
+        }
+    }
+
+    private static TreeMap<Long, MarketEntry> toMap(long[] times, double[] data) {
+        TreeMap<Long, MarketEntry> result = new TreeMap<>();
+        for (int i = 0; i < times.length; i++) {
+            result.put(times[i], new MarketEntry(data[i * 3], data[i * 3 + 1], data[i * 3 + 2]));
+        }
+        return result;
+    }
+
+    private static void writeData(DataOutputStream out, long[] times, double[] data) throws IOException {
+        out.writeInt(times.length);
+        for (int i = 0; i < times.length; i++) {
+            out.writeLong(times[i]);
+            out.writeDouble(data[i * 3]);
+            out.writeDouble(data[i * 3 + 1]);
+            out.writeDouble(data[i * 3 + 2]);
+        }
+    }
+
+    private static void readData(DataInputStream in, long[] times, double[] data) throws IOException {
+        for (int i = 0; i < times.length; i++) {
+            times[i] = in.readLong();
+            data[i * 3] = in.readDouble();
+            data[i * 3 + 1] = in.readDouble();
+            data[i * 3 + 2] = in.readDouble();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ lastEntryTime :: %d, state :: %d, imbalance :: %s, seconds :: %d, largeData :: %d }",
+                lastEntryTime, state, imbalance == null ? null : imbalance.getType(), secondsTimes.length, largeDataTimes.length);
+    }
+}
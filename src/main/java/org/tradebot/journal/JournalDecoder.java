@@ -0,0 +1,177 @@
+package org.tradebot.journal;
+
+import org.json.JSONObject;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.service.ImbalanceService;
+import org.tradebot.service.OrderManager;
+import org.tradebot.util.TimeFormatter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.tradebot.journal.EventJournal.*;
+
+/**
+ * Offline converter of the event journal.
+ * <p>
+ * Usage: {@code java -cp trade-script.jar org.tradebot.journal.JournalDecoder <file or directory> [csv|json] [event type]}
+ * <p>
+ * Segments of a directory are decoded in the order of creation. CSV output has one section with a header per event type,
+ * JSON output is one object per line.
+ */
+public class JournalDecoder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalDecoder <file or directory> [csv|json] [" + Arrays.toString(EventType.values()) + "]");
+            System.exit(1);
+        }
+        boolean json = args.length > 1 && args[1].equalsIgnoreCase("json");
+        EventType filter = args.length > 2 ? EventType.valueOf(args[2].toUpperCase()) : null;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        decode(Path.of(args[0]), filter, json, writer);
+        writer.flush();
+    }
+
+    public static void decode(Path path, EventType filter, boolean json, Writer writer) throws IOException {
+        Map<EventType, List<Object[]>> csvRows = new EnumMap<>(EventType.class);
+        for (Path file : segments(path)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.limit(); offset += RECORD_SIZE) {
+                EventType type = EventType.fromCode(buffer.get(offset + TYPE_OFFSET));
+                if (type == null) {
+                    break;
+                }
+                if (filter != null && type != filter) {
+                    continue;
+                }
+                Object[] values = decodeRecord(buffer, offset, type);
+                if (json) {
+                    writer.write(toJson(type, values).toString());
+                    writer.write(System.lineSeparator());
+                } else {
+                    csvRows.computeIfAbsent(type, _ -> new ArrayList<>()).add(values);
+                }
+            }
+        }
+
+        for (Map.Entry<EventType, List<Object[]>> section : csvRows.entrySet()) {
+            writer.write("type,timestamp,time,client," + String.join(",", section.getKey().getFields()));
+            writer.write(System.lineSeparator());
+            for (Object[] values : section.getValue()) {
+                StringJoiner line = new StringJoiner(",");
+                line.add(section.getKey().name());
+                for (Object value : values) {
+                    line.add(String.valueOf(value));
+                }
+                writer.write(line.toString());
+                writer.write(System.lineSeparator());
+            }
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Returns timestamp, formatted time, client number and the type specific fields.
+     */
+    static Object[] decodeRecord(ByteBuffer buffer, int offset, EventType type) {
+        long timestamp = buffer.getLong(offset + TIMESTAMP_OFFSET);
+        int clientNumber = buffer.getShort(offset + CLIENT_OFFSET);
+        int payload = offset + PAYLOAD_OFFSET;
+        Object[] fields = switch (type) {
+            case BAR -> new Object[]{
+                    buffer.getDouble(payload),
+                    buffer.getDouble(payload + 8),
+                    buffer.getDouble(payload + 16)};
+            case BOOK_TOP -> new Object[]{
+                    buffer.getLong(payload),
+                    buffer.getDouble(payload + 8),
+                    buffer.getDouble(payload + 16),
+                    buffer.getDouble(payload + 24),
+                    buffer.getDouble(payload + 32)};
+            case IMBALANCE_STATE -> {
+                int imbalanceType = buffer.getInt(payload + 4);
+                yield new Object[]{
+                        ImbalanceService.State.values()[buffer.getInt(payload)],
+                        imbalanceType < 0 ? "" : Imbalance.Type.values()[imbalanceType],
+                        buffer.getLong(payload + 8),
+                        buffer.getDouble(payload + 16),
+                        buffer.getLong(payload + 24),
+                        buffer.getDouble(payload + 32)};
+            }
+            case ORDER_STATE -> new Object[]{
+                    OrderManager.State.values()[buffer.getInt(payload)],
+                    OrderManager.State.values()[buffer.getInt(payload + 4)]};
+            case HTTP_TIMING -> {
+                int method = buffer.getInt(payload);
+                yield new Object[]{
+                        method < 0 ? "" : HTTP_METHODS[method],
+                        readAscii(buffer, offset + ENDPOINT_OFFSET),
+                        buffer.getInt(payload + 4),
+                        buffer.getLong(payload + 8)};
+            }
+        };
+
+        Object[] values = new Object[fields.length + 3];
+        values[0] = timestamp;
+        values[1] = TimeFormatter.format(timestamp);
+        values[2] = clientNumber;
+        System.arraycopy(fields, 0, values, 3, fields.length);
+        return values;
+    }
+
+    private static JSONObject toJson(EventType type, Object[] values) {
+        JSONObject object = new JSONObject();
+        object.put("type", type.name());
+        object.put("timestamp", values[0]);
+        object.put("time", values[1]);
+        object.put("client", values[2]);
+        String[] fields = type.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            object.put(fields[i], values[i + 3].toString().isEmpty() ? JSONObject.NULL : values[i + 3]);
+        }
+        return object;
+    }
+
+    private static String readAscii(ByteBuffer buffer, int from) {
+        StringBuilder result = new StringBuilder(ENDPOINT_LENGTH);
+        for (int i = 0; i < ENDPOINT_LENGTH; i++) {
+            byte value = buffer.get(from + i);
+            if (value == 0) {
+                break;
+            }
+            result.append((char) value);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Segment files of the journal directory in write order, or the file itself.
+     */
+    static List<Path> segments(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".bin"))
+                    .sorted(Comparator.comparing(JournalDecoder::segmentOrder))
+                    .toList();
+        }
+    }
+
+    private static String segmentOrder(Path file) {
+        String[] parts = file.getFileName().toString().replace(".bin", "").split("-");
+        return parts.length == 3
+                ? String.format("%020d-%010d", Long.parseLong(parts[1]), Long.parseLong(parts[2]))
+                : file.getFileName().toString();
+    }
+}
@@ -0,0 +1,154 @@
+package org.tradebot.journal;
+
+import org.tradebot.binance.PublicAPIService;
+import org.tradebot.domain.MarketEntry;
+import org.tradebot.util.Log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Local history of closed klines of one interval, kept in a memory-mapped file between restarts.
+ * Records are appended in open time order, {@link #sync()} downloads only the missing tail.
+ * When the file is full the older half is dropped.
+ */
+public class KlineStore {
+
+    static final int RECORD_SIZE = 32;
+
+    private final Log log = new Log();
+
+    private final PublicAPIService publicAPIService;
+    private final String interval;
+    private final long intervalMillis;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private int count = 0;
+
+    private static final Map<String, KlineStore> instances = new HashMap<>();
+
+    public static synchronized KlineStore getInstance(String interval, long intervalMillis, int capacity) {
+        return instances.computeIfAbsent(interval, key -> new KlineStore(interval, intervalMillis, capacity));
+    }
+
+    private KlineStore(String interval, long intervalMillis, int capacity) {
+        this(PublicAPIService.getInstance(), Path.of(KLINE_STORE_DIR_PATH), interval, intervalMillis, capacity);
+    }
+
+    KlineStore(PublicAPIService publicAPIService, Path directory, String interval, long intervalMillis, int capacity) {
+        this.publicAPIService = publicAPIService;
+        this.interval = interval;
+        this.intervalMillis = intervalMillis;
+        this.capacity = capacity;
+
+        directory.toFile().mkdirs();
+        Path path = directory.resolve(String.format("%s-%s.bin", SYMBOL, interval));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        } catch (IOException e) {
+            throw log.throwError(String.format("Failed to open kline store %s", path), e);
+        }
+
+        long previousOpenTime = 0;
+        while (count < capacity) {
+            long openTime = buffer.getLong(count * RECORD_SIZE);
+            if (openTime <= previousOpenTime) {
+                break;
+            }
+            previousOpenTime = openTime;
+            count++;
+        }
+        log.info(String.format("Kline store %s opened with %d klines", interval, count));
+    }
+
+    /**
+     * Fetches closed klines after the last stored one, paginating by start time.
+     * If the store is empty or too old, only the last {@code capacity} klines are fetched.
+     */
+    public synchronized KlineStore sync() {
+        long now = System.currentTimeMillis();
+        long currentOpenTime = now - now % intervalMillis;
+        long startTime = Math.max(count == 0 ? 0 : lastOpenTime() + intervalMillis,
+                currentOpenTime - capacity * intervalMillis);
+        int fetched = 0;
+
+        while (startTime < currentOpenTime) {
+            TreeMap<Long, MarketEntry> klines = publicAPIService
+                    .getMarketDataPublicAPI(SYMBOL, interval, startTime, KLINE_STORE_PAGE_SIZE).getResponse();
+            if (klines.isEmpty()) {
+                break;
+            }
+            for (Map.Entry<Long, MarketEntry> kline : klines.entrySet()) {
+                if (kline.getKey() >= currentOpenTime) {
+                    break;
+                }
+                if (count == 0 || kline.getKey() > lastOpenTime()) {
+                    append(kline.getKey(), kline.getValue());
+                    fetched++;
+                }
+            }
+            startTime = klines.lastKey() + intervalMillis;
+        }
+        buffer.force();
+        log.info(String.format("Kline store %s synced, fetched %d klines, stored %d", interval, fetched, count));
+        return this;
+    }
+
+    /**
+     * Stored klines with open time not earlier than the given one.
+     */
+    public synchronized TreeMap<Long, MarketEntry> load(long fromTime) {
+        TreeMap<Long, MarketEntry> result = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            int offset = i * RECORD_SIZE;
+            long openTime = buffer.getLong(offset);
+            if (openTime >= fromTime) {
+                result.put(openTime, new MarketEntry(
+                        buffer.getDouble(offset + 8), buffer.getDouble(offset + 16), buffer.getDouble(offset + 24)));
+            }
+        }
+        return result;
+    }
+
+    private void append(long openTime, MarketEntry entry) {
+        if (count == capacity) {
+            int keep = capacity / 2;
+            int drop = count - keep;
+            for (int i = 0; i < keep * RECORD_SIZE; i += 8) {
+                buffer.putLong(i, buffer.getLong(drop * RECORD_SIZE + i));
+            }
+            for (int i = keep * RECORD_SIZE; i < capacity * RECORD_SIZE; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            count = keep;
+        }
+        int offset = count * RECORD_SIZE;
+        buffer.putDouble(offset + 8, entry.high());
+        buffer.putDouble(offset + 16, entry.low());
+        buffer.putDouble(offset + 24, entry.volume());
+        buffer.putLong(offset, openTime);
+        count++;
+    }
+
+    private long lastOpenTime() {
+        return buffer.getLong((count - 1) * RECORD_SIZE);
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KlineStore { interval :: %s, count :: %d, capacity :: %d }", interval, count, capacity);
+    }
+}
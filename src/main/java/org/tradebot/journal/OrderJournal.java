@@ -0,0 +1,229 @@
+package org.tradebot.journal;
+
+import org.json.JSONObject;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.Order;
+import org.tradebot.service.OrderManager;
+import org.tradebot.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.tradebot.util.JsonParser.orderToJson;
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Write-ahead journal of one account: order intents, acknowledgements, fills, removals and state changes
+ * as JSON lines. Every record is written to the file before the caller continues, so it survives a JVM crash,
+ * fsync is batched and runs every {@link org.tradebot.util.Settings#ORDER_JOURNAL_FSYNC_PERIOD}.
+ * The journal is truncated when the account returns to the empty position, so recovery replays only
+ * the current position.
+ */
+public class OrderJournal {
+
+    public enum Event { STATE, IMBALANCE, INTENT, ACK, FILL, CANCEL, REMOVE, CLEAR }
+
+    private final Log log;
+    private final int clientNumber;
+    private final Path path;
+    private ScheduledExecutorService syncExecutor;
+    private FileChannel channel;
+    private boolean dirty = false;
+
+    public OrderJournal(int clientNumber) {
+        this(clientNumber, Path.of(JOURNAL_DIR_PATH));
+    }
+
+    public OrderJournal(int clientNumber, Path directory) {
+        this.log = new Log(clientNumber);
+        this.clientNumber = clientNumber;
+        this.path = directory.resolve(String.format("orders-%d.jsonl", clientNumber));
+        directory.toFile().mkdirs();
+        try {
+            dropTornRecord();
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Order journal disabled, failed to open " + path, e);
+        }
+    }
+
+    /**
+     * Starts the periodic fsync, records written before are synced by the first run.
+     */
+    public synchronized void start() {
+        if (syncExecutor != null) {
+            return;
+        }
+        syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-journal-" + clientNumber);
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncExecutor.scheduleWithFixedDelay(this::force, ORDER_JOURNAL_FSYNC_PERIOD, ORDER_JOURNAL_FSYNC_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    public void writeState(OrderManager.State state) {
+        JSONObject record = record(Event.STATE).put("state", state.name());
+        if (state == OrderManager.State.POSITION_EMPTY) {
+            truncate(record);
+        } else {
+            append(record);
+        }
+    }
+
+    public void writeImbalance(Imbalance imbalance) {
+        append(record(Event.IMBALANCE)
+                .put("type", imbalance.getType().name())
+                .put("startTime", imbalance.getStartTime())
+                .put("startPrice", imbalance.getStartPrice())
+                .put("endTime", imbalance.getEndTime())
+                .put("endPrice", imbalance.getEndPrice()));
+    }
+
+    public void writeIntent(OrderManager.OrderType orderType, Order order) {
+        append(record(Event.INTENT).put("orderType", orderType.name()).put("order", orderToJson(order)));
+    }
+
+    public void writeAck(OrderManager.OrderType orderType, String clientId) {
+        append(record(Event.ACK).put("orderType", orderType.name()).put("clientId", clientId));
+    }
+
+    public void writeFill(String clientId) {
+        append(record(Event.FILL).put("clientId", clientId));
+    }
+
+    public void writeCancel(OrderManager.OrderType orderType) {
+        append(record(Event.CANCEL).put("orderType", orderType.name()));
+    }
+
+    public void writeRemove(OrderManager.OrderType orderType) {
+        append(record(Event.REMOVE).put("orderType", orderType.name()));
+    }
+
+    public void writeClear() {
+        append(record(Event.CLEAR));
+    }
+
+    /**
+     * Reads all complete records, a corrupted line is skipped.
+     */
+    public synchronized List<JSONObject> read() {
+        List<JSONObject> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    records.add(new JSONObject(line));
+                } catch (Exception e) {
+                    log.warn("Skipping corrupted order journal record: " + line);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read order journal", e);
+        }
+        return records;
+    }
+
+    public synchronized void force() {
+        if (!dirty || channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("Failed to sync order journal", e);
+        }
+    }
+
+    /**
+     * Stops the periodic fsync, syncs and closes the file. Records written after are dropped.
+     */
+    public synchronized void close() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+        }
+        force();
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close order journal", e);
+        }
+        channel = null;
+    }
+
+    /**
+     * Cuts a partially written last line, otherwise the next record would be appended to it and lost on recovery.
+     */
+    private void dropTornRecord() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = file.size();
+            long end = size;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            while (end > 0) {
+                last.clear();
+                file.read(last, end - 1);
+                if (last.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                log.warn(String.format("Dropping %d bytes of a partially written order journal record", size - end));
+                file.truncate(end);
+            }
+        }
+    }
+
+    private JSONObject record(Event event) {
+        return new JSONObject().put("time", System.currentTimeMillis()).put("event", event.name());
+    }
+
+    private synchronized void append(JSONObject record) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            dirty = true;
+        } catch (IOException e) {
+            log.warn("Failed to write order journal record: " + record, e);
+        }
+    }
+
+    private synchronized void truncate(JSONObject record) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            log.warn("Failed to truncate order journal", e);
+        }
+        append(record);
+    }
+}
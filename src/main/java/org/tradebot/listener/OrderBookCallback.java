@@ -1,9 +1,9 @@
 package org.tradebot.listener;
 
-import java.util.Map;
+import org.tradebot.domain.OrderBookSnapshot;
 
 public interface OrderBookCallback {
 
-    void notifyOrderBookUpdate(Map<Double, Double> asks, Map<Double, Double> bids);
+    void notifyOrderBookUpdate(OrderBookSnapshot snapshot);
 
 }
@@ -5,6 +5,7 @@ import org.tradebot.domain.Position;
 
 public interface UserDataCallback {
 
-    void notifyOrderUpdate(String clientId, String status);
+    void notifyUserDataReceived();
+    void notifyOrderUpdate(String clientId, String status, double averagePrice, double filledQuantity);
     void notifyPositionUpdate(@Nullable Position position);
 }
@@ -2,13 +2,22 @@ package org.tradebot.service;
 
 import org.tradebot.domain.Imbalance;
 import org.tradebot.domain.MarketEntry;
+import org.tradebot.jfr.ImbalanceStateEvent;
+import org.tradebot.journal.EventJournal;
+import org.tradebot.journal.ImbalanceCheckpoint;
 import org.tradebot.listener.ImbalanceStateCallback;
 import org.tradebot.listener.MarketDataCallback;
 import org.tradebot.listener.VolatilityCallback;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 import org.tradebot.util.TimeFormatter;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 
@@ -33,13 +42,22 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
     private final TreeMap<Long, MarketEntry> largeData = new TreeMap<>();
     private final LinkedList<Imbalance> imbalances = new LinkedList<>();
 
-    private final List<ImbalanceStateCallback> callbacks = new ArrayList<>();
+    private final List<ImbalanceStateCallback> callbacks = new CopyOnWriteArrayList<>();
 
     private double currentMinuteHigh = 0.;
     private double currentMinuteLow = Double.MAX_VALUE;
     private double currentMinuteVolume = 0;
     private long lastMinuteTimestamp = -1L;
 
+    private long lastCheckpointTime = 0L;
+    private volatile Path checkpointPath = Path.of(IMBALANCE_CHECKPOINT_DIR_PATH, IMBALANCE_CHECKPOINT_FILE_NAME);
+    private final AtomicReference<ImbalanceCheckpoint> pendingCheckpoint = new AtomicReference<>();
+    private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "imbalance-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static ImbalanceService instance;
 
     public static ImbalanceService getInstance() {
@@ -53,6 +71,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
 
     @Override
     public void notifyNewMarketEntry(long currentTime, MarketEntry currentEntry) {
+        long started = System.nanoTime();
         updateData(currentTime, currentEntry);
 
         try {
@@ -65,6 +84,92 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
         } catch (Exception e) {
             log.error("Failed to handle market price update", e);
         }
+        Metrics.getInstance().record(Metrics.BAR_TO_DECISION, System.nanoTime() - started);
+
+        if (IMBALANCE_CHECKPOINT_ENABLED && currentTime - lastCheckpointTime >= IMBALANCE_CHECKPOINT_PERIOD) {
+            lastCheckpointTime = currentTime;
+            checkpoint(currentTime);
+        }
+    }
+
+    /**
+     * Copies the state on the market thread and writes it on the checkpoint thread.
+     * If the previous checkpoint is still not written, it is replaced by the new one.
+     */
+    private void checkpoint(long currentTime) {
+        ImbalanceCheckpoint checkpoint = new ImbalanceCheckpoint(currentTime, currentState.get().ordinal(), currentImbalance,
+                priceChangeThreshold, speedThreshold, currentMinuteHigh, currentMinuteLow, currentMinuteVolume,
+                lastMinuteTimestamp, seconds, largeData);
+        if (pendingCheckpoint.getAndSet(checkpoint) == null) {
+            checkpointExecutor.execute(this::writeCheckpoint);
+        }
+    }
+
+    private void writeCheckpoint() {
+        ImbalanceCheckpoint checkpoint = pendingCheckpoint.getAndSet(null);
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            Path path = checkpointPath;
+            Files.createDirectories(path.getParent());
+            checkpoint.write(path);
+        } catch (Exception e) {
+            log.warn("Failed to write imbalance checkpoint", e);
+        }
+    }
+
+    /**
+     * File of the checkpoint. The benchmarks use it to keep their state out of the checkpoint of the bot.
+     */
+    public void setCheckpointPath(Path checkpointPath) {
+        this.checkpointPath = checkpointPath;
+    }
+
+    /**
+     * Restores the state from the last checkpoint. Must be called before the first market entry.
+     * Data windows are restored if not older than their live time, the tracked imbalance only if the checkpoint
+     * is not older than {@link org.tradebot.util.Settings#IMBALANCE_CHECKPOINT_MAX_AGE}.
+     */
+    public void restore() {
+        ImbalanceCheckpoint checkpoint;
+        try {
+            checkpoint = ImbalanceCheckpoint.read(checkpointPath);
+        } catch (Exception e) {
+            log.warn("Failed to read imbalance checkpoint", e);
+            return;
+        }
+        if (checkpoint == null) {
+            log.info("No valid imbalance checkpoint found.");
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long age = now - checkpoint.lastEntryTime;
+        synchronized (seconds) {
+            seconds.putAll(checkpoint.seconds().tailMap(now - DATA_LIVE_TIME, true));
+        }
+        synchronized (largeData) {
+            largeData.putAll(checkpoint.largeData().tailMap(now - LARGE_DATA_LIVE_TIME, true));
+        }
+        if (priceChangeThreshold == 0) {
+            priceChangeThreshold = checkpoint.priceChangeThreshold;
+            speedThreshold = checkpoint.speedThreshold;
+        }
+
+        if (age <= IMBALANCE_CHECKPOINT_MAX_AGE) {
+            currentMinuteHigh = checkpoint.currentMinuteHigh;
+            currentMinuteLow = checkpoint.currentMinuteLow;
+            currentMinuteVolume = checkpoint.currentMinuteVolume;
+            lastMinuteTimestamp = checkpoint.lastMinuteTimestamp;
+            currentImbalance = checkpoint.imbalance;
+            currentState.set(currentImbalance == null ? State.WAIT : State.values()[checkpoint.state]);
+            log.info(String.format("Imbalance checkpoint restored, age %d ms, state %s, imbalance %s",
+                    age, currentState.get(), currentImbalance));
+        } else {
+            log.info(String.format("Imbalance checkpoint is %d ms old, only market data restored: seconds %d, large data %d",
+                    age, seconds.size(), largeData.size()));
+        }
     }
 
     /**
@@ -98,7 +203,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
                 double priceChangeSpeed = priceChange / (double) (currentTime - previousTime);
                 if (priceChangeSpeed > speedThreshold * priceChangeThreshold / priceChange) {
                     Imbalance imbalance = new Imbalance(previousTime, previousEntry.low(), currentTime, currentEntry.high(), Imbalance.Type.UP);
-                    log.info(String.format("UP detected: %s", imbalance));
+                    log.infof("UP detected: %s", imbalance);
                     return imbalance;
                 }
             } else if (previousEntry.high() - currentEntry.low() > priceChangeThreshold) {
@@ -107,7 +212,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
 
                 if (priceChangeSpeed > speedThreshold * priceChangeThreshold / priceChange) {
                     Imbalance imbalance = new Imbalance(previousTime, previousEntry.high(), currentTime, currentEntry.low(), Imbalance.Type.DOWN);
-                    log.info(String.format("DOWN detected: %s", imbalance));
+                    log.infof("DOWN detected: %s", imbalance);
                     return imbalance;
                 }
             }
@@ -162,7 +267,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
         imbalances.add(imbalance);
         double maxImbalanceSize = imbalances.stream().max(Comparator.comparing(Imbalance::size)).get().size();
 
-        log.debug(String.format("Looking for the best imbalance from %d found imbalances", imbalances.size()));
+        log.debugf("Looking for the best imbalance from %d found imbalances", imbalances.size());
         currentImbalance = imbalances.stream()
                 .filter(imbalance_ -> imbalance_.size() >= maxImbalanceSize * 0.75)
                 .filter(this::isValid)
@@ -170,11 +275,10 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
                 .orElse(null);
 
         if (currentImbalance != null) {
-            log.debug(String.format("Found the best one: %s", currentImbalance));
+            log.debugf("Found the best one: %s", currentImbalance);
             log.info("Changing state to PROGRESS");
             currentState.set(State.PROGRESS);
-            callbacks.parallelStream().forEach(callback ->
-                    callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+            notifyCallbacks(currentTime, currentEntry);
         } else {
             log.debug("Valid imbalance not found");
         }
@@ -195,8 +299,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
                     case UP -> entry.getValue().high() > imbalance.getEndPrice();
                     case DOWN -> entry.getValue().low() < imbalance.getEndPrice();
                 });
-        log.debug("Local price extrema between start and end exists: " +
-                localExtremaBetweenStartEndPricesExists);
+        log.debugf("Local price extrema between start and end exists: %s", localExtremaBetweenStartEndPricesExists);
 
         boolean contrImbalanceExists = largeData.entrySet().stream()
                 .filter(entry -> entry.getKey() <= imbalance.getStartTime() &&
@@ -205,17 +308,17 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
                     case UP -> entry.getValue().high() > imbalance.getEndPrice() - imbalance.size() * 0.25;
                     case DOWN -> entry.getValue().low() < imbalance.getEndPrice() + imbalance.size() * 0.25;
                 });
-        log.debug("Contr imbalance present: " + contrImbalanceExists);
+        log.debugf("Contr imbalance present: %s", contrImbalanceExists);
 
         boolean minDurationFit = imbalance.duration() > MIN_IMBALANCE_TIME_DURATION;
-        log.debug("Minimum duration greater than allowed: " + minDurationFit);
+        log.debugf("Minimum duration greater than allowed: %s", minDurationFit);
 
         boolean highSizePointsExists = seconds.get(imbalance.getStartTime()).size() * 2 < imbalance.size() &&
                 seconds.get(imbalance.getEndTime()).size() * 2 < imbalance.size();
-        log.debug("Start or finish point has size greater than half imbalance: " + !highSizePointsExists);
+        log.debugf("Start or finish point has size greater than half imbalance: %s", !highSizePointsExists);
 
         boolean result = minDurationFit && highSizePointsExists && !localExtremaBetweenStartEndPricesExists && !contrImbalanceExists;
-        log.debug("Imbalance validation result: " + result);
+        log.debugf("Imbalance validation result: %s", result);
         return result;
     }
 
@@ -229,8 +332,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
 
         if (checkPotentialEndPointCondition(currentTime, currentEntry)) {
             currentState.set(State.POTENTIAL_END_POINT);
-            callbacks.parallelStream().forEach(callback ->
-                    callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+            notifyCallbacks(currentTime, currentEntry);
         }
     }
 
@@ -245,8 +347,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
                     currentImbalance.setEndPrice(currentEntry.high());
                     currentImbalance.setEndTime(currentTime);
                     currentState.set(State.PROGRESS);
-                    callbacks.parallelStream().forEach(callback ->
-                            callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+                    notifyCallbacks(currentTime, currentEntry);
                     log.debug("Imbalance is in progress");
                     return true;
                 }
@@ -256,8 +357,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
                     currentImbalance.setEndPrice(currentEntry.low());
                     currentImbalance.setEndTime(currentTime);
                     currentState.set(State.PROGRESS);
-                    callbacks.parallelStream().forEach(callback ->
-                            callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+                    notifyCallbacks(currentTime, currentEntry);
                     log.debug("Imbalance is in progress");
                     return true;
                 }
@@ -276,8 +376,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
         if (currentTime - currentImbalance.getEndTime() > Math.max(completeTime, MIN_COMPLETE_TIME)) {
             log.info("Imbalance completed", currentTime);
             currentState.set(State.COMPLETED);
-            callbacks.parallelStream().forEach(callback ->
-                    callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+            notifyCallbacks(currentTime, currentEntry);
             return true;
         }
         log.debug("Imbalance is not completed");
@@ -330,8 +429,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
             if (currentTime - currentImbalance.getEndTime() > 20000L) {
                 currentState.set(State.COMPLETED);
                 log.info("Simulating completed imbalance...");
-                callbacks.parallelStream().forEach(callback ->
-                        callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+                notifyCallbacks(currentTime, currentEntry);
             }
             return;
         }
@@ -364,7 +462,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
         if (currentTime - lastMinuteTimestamp > LARGE_DATA_ENTRY_SIZE) {
             MarketEntry largeEntry = new MarketEntry(currentMinuteHigh, currentMinuteLow, currentMinuteVolume);
             largeData.put(currentTime, largeEntry);
-            log.debug(String.format("New large market entry: time: %s, entry: %s", TimeFormatter.format(currentTime), largeEntry));
+            log.debug(() -> String.format("New large market entry: time: %s, entry: %s", TimeFormatter.format(currentTime), largeEntry));
             currentMinuteHigh = 0;
             currentMinuteLow = Double.MAX_VALUE;
             currentMinuteVolume = 0;
@@ -375,6 +473,25 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
         }
     }
 
+    /**
+     * Fills large data with the stored minute klines, so contr-imbalance check works right after restart.
+     * Klines are added only before the data restored from the checkpoint.
+     * Must be called before the first market entry.
+     */
+    public void warmUp(TreeMap<Long, MarketEntry> minuteKlines) {
+        long now = System.currentTimeMillis();
+        synchronized (largeData) {
+            long firstRestored = largeData.isEmpty() ? Long.MAX_VALUE : largeData.firstKey();
+            minuteKlines.forEach((openTime, entry) -> {
+                long closeTime = openTime + LARGE_DATA_KLINE_SIZE;
+                if (now - closeTime <= LARGE_DATA_LIVE_TIME && closeTime < firstRestored) {
+                    largeData.put(closeTime, entry);
+                }
+            });
+        }
+        log.info(String.format("Large data warmed up with %d entries", largeData.size()));
+    }
+
     @Override
     public void notifyVolatilityUpdate(double volatility, double average) {
         this.priceChangeThreshold = average * PRICE_MODIFICATOR;
@@ -390,8 +507,27 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
         log.info("Resetting state to initial.");
         currentImbalance = null;
         currentState.set(State.WAIT);
-        callbacks.parallelStream().forEach(callback ->
-                callback.notifyImbalanceStateUpdate(0, currentEntry, currentState.get(), null));
+        notifyCallbacks(0, currentEntry);
+    }
+
+    private void notifyCallbacks(long currentTime, MarketEntry currentEntry) {
+        ImbalanceStateEvent event = new ImbalanceStateEvent();
+        event.begin();
+        State state = currentState.get();
+        Imbalance imbalance = currentImbalance;
+        EventJournal.getInstance().writeImbalanceState(currentTime == 0 ? System.currentTimeMillis() : currentTime, state, imbalance);
+        callbacks.forEach(callback -> callback.notifyImbalanceStateUpdate(currentTime, currentEntry, state, imbalance));
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.state = state.name();
+            if (imbalance != null) {
+                event.imbalanceType = imbalance.getType().name();
+                event.startPrice = imbalance.getStartPrice();
+                event.endPrice = imbalance.getEndPrice();
+            }
+            event.commit();
+        }
     }
 
     public void addCallback(ImbalanceStateCallback callback) {
@@ -405,6 +541,9 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
     }
 
     public void logAll() {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
         try {
             Map<Long, MarketEntry> snapshotSeconds;
             synchronized (seconds) {
@@ -477,9 +616,7 @@ public class ImbalanceService implements VolatilityCallback, MarketDataCallback
             currentState.set(State.PROGRESS);
 
             log.info("Simulating imbalance in progress..." + currentImbalance);
-            //TODO run foreach at the same time
-            callbacks.parallelStream().forEach(callback ->
-                    callback.notifyImbalanceStateUpdate(currentTime, currentEntry, currentState.get(), currentImbalance));
+            notifyCallbacks(currentTime, currentEntry);
         }
     }
 }
@@ -0,0 +1,220 @@
+package org.tradebot.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.tradebot.domain.TradingAccount;
+import org.tradebot.domain.TradingBotState;
+import org.tradebot.util.Log;
+import org.tradebot.util.LogWriter;
+import org.tradebot.util.Metrics;
+import org.tradebot.util.TimeFormatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Local HTTP server with {@code /metrics} in Prometheus text format and {@code /health} with the state of every account.
+ * Both responses are built every {@link org.tradebot.util.Settings#MONITORING_SNAPSHOT_PERIOD} on the task thread,
+ * a request only returns the last built bytes, so scraping never reaches the trading threads.
+ * Latencies are the quantiles of the last {@link Metrics} interval.
+ */
+public class MonitoringServer {
+
+    private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String HEALTH_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final Log log = new Log();
+    private HttpServer server;
+    private volatile byte[] metricsResponse = new byte[0];
+    private volatile byte[] healthResponse = new JSONObject().put("status", "STARTING").toString().getBytes(StandardCharsets.UTF_8);
+    private volatile boolean healthy = false;
+
+    private long lastRefresh = 0L;
+    private long lastAllocatedBytes = -1L;
+
+    private static MonitoringServer instance;
+
+    public static synchronized MonitoringServer getInstance() {
+        if (instance == null) {
+            instance = new MonitoringServer();
+        }
+        return instance;
+    }
+
+    private MonitoringServer() {  }
+
+    public void start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(MONITORING_SERVER_HOST, MONITORING_SERVER_PORT), 0);
+            server.createContext("/metrics", exchange -> respond(exchange, 200, METRICS_CONTENT_TYPE, metricsResponse));
+            server.createContext("/health", exchange -> respond(exchange, healthy ? 200 : 503, HEALTH_CONTENT_TYPE, healthResponse));
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "monitoring-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            TaskManager.getInstance().scheduleAtFixedRate(MONITORING_SNAPSHOT_TASK_KEY, this::refresh,
+                    0, MONITORING_SNAPSHOT_PERIOD, TimeUnit.MILLISECONDS);
+            log.info(String.format("Monitoring server started on %s:%d", MONITORING_SERVER_HOST, MONITORING_SERVER_PORT));
+        } catch (IOException e) {
+            log.warn("Failed to start monitoring server, continuing without it", e);
+        }
+    }
+
+    public void stop() {
+        if (server != null) {
+            TaskManager.getInstance().cancel(MONITORING_SNAPSHOT_TASK_KEY);
+            server.stop(0);
+            log.info("Monitoring server stopped.");
+        }
+    }
+
+    private void respond(HttpExchange exchange, int code, String contentType, byte[] body) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    private void refresh() {
+        try {
+            metricsResponse = buildMetrics().getBytes(StandardCharsets.UTF_8);
+            healthResponse = buildHealth().getBytes(StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log.warn("Failed to build monitoring snapshot", e);
+        }
+    }
+
+    private String buildMetrics() {
+        StringBuilder out = new StringBuilder(4096);
+        JSONObject interval = Metrics.getInstance().getLastPublished();
+
+        if (interval.has("latencies")) {
+            JSONObject latencies = interval.getJSONObject("latencies");
+            double intervalSeconds = Math.max(1, interval.getLong("intervalMs")) / 1000.0;
+            type(out, "tradebot_latency_seconds", "summary");
+            for (String name : latencies.keySet()) {
+                JSONObject latency = latencies.getJSONObject(name);
+                sample(out, "tradebot_latency_seconds", "name", name, "quantile", "0.5", latency.getDouble("p50Ms") / 1000);
+                sample(out, "tradebot_latency_seconds", "name", name, "quantile", "0.99", latency.getDouble("p99Ms") / 1000);
+                sample(out, "tradebot_latency_seconds", "name", name, "quantile", "1", latency.getDouble("maxMs") / 1000);
+                sample(out, "tradebot_latency_seconds_count", "name", name, null, null, latency.getLong("count"));
+            }
+            type(out, "tradebot_ws_messages_per_second", "gauge");
+            for (String stream : new String[] {"market", "user"}) {
+                String name = stream + "_ws_receive_to_decode";
+                long messages = latencies.has(name) ? latencies.getJSONObject(name).getLong("count") : 0;
+                sample(out, "tradebot_ws_messages_per_second", "stream", stream, null, null, messages / intervalSeconds);
+            }
+        }
+        if (interval.has("counters")) {
+            JSONObject counters = interval.getJSONObject("counters");
+            type(out, "tradebot_interval_events", "gauge");
+            for (String name : counters.keySet()) {
+                sample(out, "tradebot_interval_events", "name", name, null, null, counters.getLong(name));
+            }
+        }
+        if (interval.has("gauges")) {
+            JSONObject gauges = interval.getJSONObject("gauges");
+            type(out, "tradebot_gauge", "gauge");
+            for (String name : gauges.keySet()) {
+                sample(out, "tradebot_gauge", "name", name, null, null, gauges.getLong(name));
+            }
+        }
+
+        type(out, "tradebot_queue_depth", "gauge");
+        for (TradingAccount account : TradingManager.getInstance().getAccounts().values()) {
+            sample(out, "tradebot_queue_depth", "queue", "account-" + account.getClientNumber(), null, null, account.getMailboxSize());
+        }
+        sample(out, "tradebot_queue_depth", "queue", "log-writer", null, null, LogWriter.getInstance().backlog());
+        type(out, "tradebot_log_dropped_total", "counter");
+        sample(out, "tradebot_log_dropped_total", null, null, null, null, LogWriter.getInstance().dropped());
+
+        type(out, "jvm_gc_collections_total", "counter");
+        type(out, "jvm_gc_collection_seconds_total", "counter");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "jvm_gc_collections_total", "gc", gc.getName(), null, null, gc.getCollectionCount());
+            sample(out, "jvm_gc_collection_seconds_total", "gc", gc.getName(), null, null, gc.getCollectionTime() / 1000.0);
+        }
+        type(out, "jvm_heap_used_bytes", "gauge");
+        sample(out, "jvm_heap_used_bytes", null, null, null, null, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean sunThreads && sunThreads.isThreadAllocatedMemoryEnabled()) {
+            long now = System.nanoTime();
+            long allocated = sunThreads.getTotalThreadAllocatedBytes();
+            type(out, "jvm_allocated_bytes_total", "counter");
+            sample(out, "jvm_allocated_bytes_total", null, null, null, null, allocated);
+            if (lastAllocatedBytes >= 0 && allocated >= lastAllocatedBytes) {
+                type(out, "jvm_allocation_rate_bytes_per_second", "gauge");
+                sample(out, "jvm_allocation_rate_bytes_per_second", null, null, null, null,
+                        (allocated - lastAllocatedBytes) / ((now - lastRefresh) / 1e9));
+            }
+            lastAllocatedBytes = allocated;
+            lastRefresh = now;
+        }
+        return out.toString();
+    }
+
+    private String buildHealth() {
+        JSONObject accounts = new JSONObject();
+        boolean allReady = !TradingManager.getInstance().getAccounts().isEmpty();
+        for (TradingAccount account : TradingManager.getInstance().getAccounts().values()) {
+            TradingBotState state = StatePublisher.getInstance().getLatest().get(account.getClientNumber());
+            boolean ready = state != null && state.isReadyAccountState() && state.isMarketDataWebSocketState() && state.isUserStream();
+            allReady &= ready;
+            accounts.put(String.valueOf(account.getClientNumber()), state == null ? new JSONObject() : new JSONObject(state));
+        }
+        healthy = allReady;
+        return new JSONObject()
+                .put("status", allReady ? "UP" : "DEGRADED")
+                .put("time", TimeFormatter.now())
+                .put("accounts", accounts)
+                .toString();
+    }
+
+    private static void type(StringBuilder out, String metric, String type) {
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String label, String value,
+                               String secondLabel, String secondValue, double sample) {
+        out.append(metric);
+        if (label != null) {
+            out.append('{').append(label).append("=\"").append(escape(value)).append('"');
+            if (secondLabel != null) {
+                out.append(',').append(secondLabel).append("=\"").append(escape(secondValue)).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (sample == Math.rint(sample) && Math.abs(sample) < 1e15) {
+            out.append((long) sample);
+        } else {
+            out.append(sample);
+        }
+        out.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
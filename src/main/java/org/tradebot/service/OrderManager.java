@@ -1,20 +1,33 @@
 package org.tradebot.service;
 
+import org.json.JSONObject;
 import org.tradebot.binance.APIService;
 import org.tradebot.binance.HttpClient;
 import org.tradebot.domain.*;
+import org.tradebot.jfr.OrderStateEvent;
+import org.tradebot.journal.EventJournal;
+import org.tradebot.journal.OrderJournal;
 import org.tradebot.listener.UserDataCallback;
 import org.tradebot.strategy_state_handlers.StrategyStateDispatcher;
+import org.tradebot.util.FanOutSpread;
+import org.tradebot.util.LatencyHistogram;
 import org.tradebot.util.Log;
+import org.tradebot.util.Mailbox;
+import org.tradebot.util.Metrics;
 import org.tradebot.util.OrderUtils;
 
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+import static org.tradebot.util.JsonParser.parseOrder;
 import static org.tradebot.util.Settings.*;
 
 public class OrderManager implements UserDataCallback {
@@ -32,7 +45,13 @@ public class OrderManager implements UserDataCallback {
         BREAK_EVEN_ORDER_CREATED
     }
 
+    /**
+     * Stop placed on the open order fill before the mailbox handles it, with the position derived from the fill.
+     */
+    private record FastPathStop(Position position, CompletableFuture<Boolean> placed) {  }
+
     private final Log log;
+    private final int clientNumber;
     private final OrderUtils orderUtils;
     private final TaskManager taskManager;
     private final String baseAsset;
@@ -40,32 +59,81 @@ public class OrderManager implements UserDataCallback {
 
     private final APIService apiService;
     private final StrategyStateDispatcher stateDispatcher;
-
-    private final AtomicReference<State> state = new AtomicReference<>(State.POSITION_EMPTY);
+    private final OrderJournal orderJournal;
+
+    private final OrderStateMachine stateMachine;
+    private final Mailbox mailbox;
+    private final ThreadPoolExecutor protectionExecutor;
+    private final AtomicReference<FastPathStop> fastPathStop = new AtomicReference<>();
+    private final LatencyHistogram stopLatency = new LatencyHistogram();
+    private volatile long openFillReceivedAt = 0L;
+    // shared by all accounts, limits the open orders sent for one signal at the same time
+    private static final Semaphore openOrderPermits = new Semaphore(OPEN_ORDER_MAX_IN_FLIGHT);
+    // mailbox only
+    private long signalReceivedAt = 0L;
+    private FanOutSpread signalSpread;
     private final AtomicReference<Imbalance> currentImbalance = new AtomicReference<>();
 
-    private final Map<OrderType, Order> orders = new ConcurrentHashMap<>();
+    private final OrderRegistry orders = new OrderRegistry();
+    private static final Map<OrderType, Consumer<OrderManager>> fillHandlers = createFillHandlers();
     private final AtomicReference<Position> position = new AtomicReference<>();
+    private volatile long lastUserDataTime = 0L;
+    private volatile long lastReconciliationTime = 0L;
 
     public OrderManager(HttpClient httpClient,
                         int clientNumber,
                         String baseAsset,
                         boolean customLeverage,
-                        StrategyStateDispatcher dispatcher) {
-        this.apiService = new APIService(httpClient, clientNumber);
+                        StrategyStateDispatcher dispatcher,
+                        Mailbox mailbox) {
+        this(new APIService(httpClient, clientNumber), new OrderJournal(clientNumber),
+                clientNumber, baseAsset, customLeverage, dispatcher, mailbox);
+    }
+
+    OrderManager(APIService apiService,
+                 OrderJournal orderJournal,
+                 int clientNumber,
+                 String baseAsset,
+                 boolean customLeverage,
+                 StrategyStateDispatcher dispatcher,
+                 Mailbox mailbox) {
+        this.apiService = apiService;
         this.taskManager = TaskManager.getInstance(clientNumber);
         this.baseAsset = baseAsset;
         this.customLeverage = customLeverage;
         this.stateDispatcher = dispatcher;
+        this.clientNumber = clientNumber;
         this.log = new Log(clientNumber);
         this.orderUtils = new OrderUtils(clientNumber);
+        this.orderJournal = orderJournal;
+        this.orderJournal.start();
+        this.stateMachine = new OrderStateMachine(log);
+        this.mailbox = mailbox;
+        this.protectionExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "protection-" + clientNumber);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        });
+        this.protectionExecutor.prestartAllCoreThreads();
 
         log.info("OrderManager initialized");
     }
 
+    /**
+     * Called by the strategy while it handles the signal on the mailbox, the order is placed as part of that task.
+     */
     public void placeOpenOrder(final Imbalance imbalance, double price) {
-        if (state.get() != State.POSITION_EMPTY) {
-            log.info(String.format("Attempted to place open order in invalid state: %s. Action aborted.", state.get()));
+        if (mailbox.isMailboxThread()) {
+            openPosition(imbalance, price);
+        } else {
+            mailbox.execute(() -> openPosition(imbalance, price));
+        }
+    }
+
+    private void openPosition(final Imbalance imbalance, double price) {
+        if (stateMachine.get() != State.POSITION_EMPTY) {
+            log.info(String.format("Attempted to place open order in invalid state: %s. Action aborted.", stateMachine.get()));
             return;
         }
 
@@ -75,6 +143,7 @@ public class OrderManager implements UserDataCallback {
         }
 
         currentImbalance.set(imbalance);
+        orderJournal.writeImbalance(imbalance);
         int leverage = LEVERAGE;
         if (customLeverage) {
             leverage = apiService.getLeverage(SYMBOL).getResponse();
@@ -89,21 +158,53 @@ public class OrderManager implements UserDataCallback {
 
         log.info("Opening position...");
         Order open = orderUtils.createOpen(SYMBOL, imbalance, quantity);
-        orders.put(OrderType.OPEN, open);
-        HTTPResponse<Order> response = apiService.placeOrder(open);
+        putOrder(OrderType.OPEN, open);
+        HTTPResponse<Order> response;
+        long sent;
+        openOrderPermits.acquireUninterruptibly();
+        try {
+            sent = System.nanoTime();
+            recordSignalToOrderSent(sent);
+            response = apiService.placeOrder(open);
+        } finally {
+            openOrderPermits.release();
+        }
 
         if (response.isSuccess()) {
-            state.set(State.OPEN_ORDER_PLACED);
+            Metrics.getInstance().record(Metrics.ORDER_SENT_TO_ACK, System.nanoTime() - sent);
+            orderJournal.writeAck(OrderType.OPEN, open.getNewClientOrderId());
+            setState(State.OPEN_ORDER_PLACED);
             log.info("Open order placed: " + response.getValue());
         } else {
-            orders.remove(OrderType.OPEN);
+            removeOrder(OrderType.OPEN);
             throw log.throwError("Failed to open position: " + response.getError());
         }
     }
 
     private int userMessagesCount = 0;
     @Override
-    public void notifyOrderUpdate(String clientId, String status) {
+    public void notifyUserDataReceived() {
+        lastUserDataTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Runs on the user stream thread. A fill of the open order starts the stop order placement right away
+     * on the protection thread, the rest of the update is handled on the mailbox.
+     */
+    @Override
+    public void notifyOrderUpdate(String clientId, String status, double averagePrice, double filledQuantity) {
+        if (Order.Status.FILLED.toString().equals(status) && orders.typeOf(clientId) == OrderType.OPEN) {
+            openFillReceivedAt = System.nanoTime();
+            if (PROTECTIVE_STOP_FAST_PATH) {
+                Position filled = fillPosition(averagePrice, filledQuantity);
+                CompletableFuture<Boolean> placed = CompletableFuture.supplyAsync(() -> placeStopOrder(filled), protectionExecutor);
+                fastPathStop.set(new FastPathStop(filled, placed));
+            }
+        }
+        mailbox.execute(() -> handleOrderUpdate(clientId, status));
+    }
+
+    private void handleOrderUpdate(String clientId, String status) {
         log.info(String.format("Received order update: %s - %s", clientId, status));
 
         if (clientId == null) {
@@ -119,63 +220,142 @@ public class OrderManager implements UserDataCallback {
             userMessagesCount++;
             if (userMessagesCount % 11 == 0) {
                 log.info("Simulating missing order update for order: " + clientId);
+                if (orders.typeOf(clientId) == OrderType.OPEN) {
+                    releaseFastPathStop();
+                }
                 return;
             }
         }
 
-        orders.values().stream()
-                .filter(order -> clientId.equals(order.getNewClientOrderId()))
-                .findFirst()
-                .ifPresent(order -> order.setStatus(Order.Status.FILLED));
-
-        Order openOrder = orders.get(OrderType.OPEN);
-        Order take0Order = orders.get(OrderType.TAKE_0);
-
-        if (openOrder != null && clientId.equals(openOrder.getNewClientOrderId())) {
-            log.info("Open order filled. Transitioning to POSITION_OPENED state.");
-            state.set(State.OPEN_ORDER_FILLED);
-            taskManager.schedule(HANDLE_OPEN_ORDER_FILLED_TASK_KEY, this::handleOpenOrderFilled, 0, TimeUnit.MILLISECONDS);
-        } else if (take0Order != null && clientId.equals(take0Order.getNewClientOrderId())) {
-            log.info("First take order filled. Handling...");
-            state.set(State.FIRST_TAKE_FILLED);
-            taskManager.schedule(HANDLE_TAKE_0_ORDER_FILLED_TASK_KEY, this::handleFirstTakeOrderFilled, 0, TimeUnit.MILLISECONDS);
-        } else if (isClosingOrder(clientId)) {
-            log.info(clientId + " order filled. Resetting...");
-            taskManager.schedule(HANDLE_CLOSE_ORDER_FILLED_TASK_KEY, this::closePositionAndResetState, 0, TimeUnit.MILLISECONDS);
-        } else {
+        OrderType orderType = orders.typeOf(clientId);
+        if (orderType == null) {
             log.info("Unknown order filled - " + clientId + ". Handling...");
-            taskManager.schedule(HANDLE_UNKNOWN_ORDER_FILLED_TASK_KEY, this::handleUnknownFilledOrder, 0, TimeUnit.MILLISECONDS);
+            handleUnknownFilledOrder();
+            return;
+        }
+
+        Order order = orders.get(orderType);
+        if (order != null) {
+            order.setStatus(Order.Status.FILLED);
+        }
+        orderJournal.writeFill(clientId);
+        log.info(String.format("%s order %s filled. Handling...", orderType, clientId));
+        fillHandlers.get(orderType).accept(this);
+    }
+
+    // unbound method references, so the table is shared and built without an instance
+    private static Map<OrderType, Consumer<OrderManager>> createFillHandlers() {
+        Map<OrderType, Consumer<OrderManager>> handlers = new EnumMap<>(OrderType.class);
+        handlers.put(OrderType.OPEN, OrderManager::onOpenOrderFilled);
+        handlers.put(OrderType.TAKE_0, OrderManager::handleFirstTakeOrderFilled);
+        for (OrderType closing : List.of(OrderType.STOP, OrderType.TAKE_1, OrderType.BREAK_EVEN, OrderType.CLOSE, OrderType.TIMEOUT)) {
+            handlers.put(closing, OrderManager::closePositionAndResetState);
+        }
+        return handlers;
+    }
+
+    private void onOpenOrderFilled() {
+        log.info("Open order filled. Transitioning to POSITION_OPENED state.");
+        if (setState(State.OPEN_ORDER_FILLED)) {
+            handleOpenOrderFilled();
+        } else {
+            releaseFastPathStop();
+        }
+    }
+
+    /**
+     * The open fill is not handled, so nothing waits for the stop started by the fast path. When it is placed,
+     * it is cancelled if the position is already reset, otherwise the reconciliation checks it with the position.
+     */
+    private void releaseFastPathStop() {
+        FastPathStop fastPath = fastPathStop.getAndSet(null);
+        if (fastPath == null) {
+            return;
         }
+        log.info("Open order fill is not handled, releasing the fast path stop order...");
+        fastPath.placed().whenComplete((placed, _) -> mailbox.execute(() -> {
+            if (!Boolean.TRUE.equals(placed)) {
+                return;
+            }
+            Order stop = orders.get(OrderType.STOP);
+            if (stateMachine.get() == State.POSITION_EMPTY && stop != null) {
+                log.info("Cancelling fast path stop order without position: " + stop.getNewClientOrderId());
+                apiService.cancelOrder(SYMBOL, stop.getNewClientOrderId());
+                removeOrder(OrderType.STOP);
+            } else {
+                log.info("Fast path stop order is placed, checking it with the position...");
+                scheduleUnexpectedErrorHandlerTask();
+            }
+        }));
     }
 
+    /**
+     * Runs on the user stream thread, the position is applied on the mailbox.
+     */
     @Override
     public void notifyPositionUpdate(Position position) {
+        mailbox.execute(() -> updatePosition(position));
+    }
+
+    /**
+     * Applies the position right away. Called on the mailbox by the reconciliation handlers, which act on
+     * the position from the exchange in the same task.
+     */
+    public void updatePosition(Position position) {
         log.info("Received position update: " + position);
         this.position.set(position);
     }
 
     public void handleOpenOrderFilled() {
+        if (stateMachine.get() != State.OPEN_ORDER_FILLED) {
+            log.info(String.format("Closing orders are not placed in %s state.", stateMachine.get()));
+            return;
+        }
         log.info("Placing closing orders...");
 
-        CompletableFuture<Boolean> stopOrderPlacedFuture = CompletableFuture.supplyAsync(this::placeStopOrder);
-        CompletableFuture<Boolean> firstTakeOrderPlacedFuture = CompletableFuture.supplyAsync(this::placeFirstTakeOrder);
-        CompletableFuture<Boolean> secondTakeOrderPlacedFuture = CompletableFuture.supplyAsync(this::placeSecondTakeOrder);
-
+        FastPathStop fastPath = fastPathStop.getAndSet(null);
+        // the fill can arrive before the position update, then the position from the fill is used as by the stop
+        Position filled = position.get() == null && fastPath != null ? fastPath.position() : position.get();
+        CompletableFuture<Boolean> stopOrderPlacedFuture;
+        if (fastPath == null) {
+            stopOrderPlacedFuture = CompletableFuture.supplyAsync(() -> placeStopOrder(filled), protectionExecutor);
+        } else {
+            stopOrderPlacedFuture = fastPath.placed();
+            log.info("Stop order is already being placed by the fast path.");
+        }
+        if (filled == null) {
+            log.warn("Position is empty when placing take orders.");
+            return;
+        }
         try {
-            if (!stopOrderPlacedFuture.get()) return;
-            if (!firstTakeOrderPlacedFuture.get()) return;
-            if (!secondTakeOrderPlacedFuture.get()) return;
+            // only the requests run on the protection thread, after the stop, the results are applied here
+            Order firstTake = orderUtils.createFirstTake(SYMBOL, filled, currentImbalance.get().size());
+            Order secondTake = orderUtils.createSecondTake(SYMBOL, filled, currentImbalance.get().size());
+            putOrderIfAbsent(OrderType.TAKE_0, firstTake);
+            putOrderIfAbsent(OrderType.TAKE_1, secondTake);
+            CompletableFuture<HTTPResponse<Order>> firstTakeResponse =
+                    CompletableFuture.supplyAsync(() -> apiService.placeOrder(firstTake), protectionExecutor);
+            CompletableFuture<HTTPResponse<Order>> secondTakeResponse =
+                    CompletableFuture.supplyAsync(() -> apiService.placeOrder(secondTake), protectionExecutor);
+
+            boolean stopPlaced = stopOrderPlacedFuture.get();
+            boolean firstTakePlaced = handleTakeOrderResponse(OrderType.TAKE_0, firstTake, firstTakeResponse.get());
+            boolean secondTakePlaced = handleTakeOrderResponse(OrderType.TAKE_1, secondTake, secondTakeResponse.get());
+            if (!stopPlaced || !firstTakePlaced || !secondTakePlaced) return;
         } catch (Exception e) {
             log.error("Failed to place stop orders", e);
             return;
         }
         scheduleAutoCloseTask();
 
-        state.set(State.STOP_ORDERS_PLACED);
+        setState(State.STOP_ORDERS_PLACED);
         log.info("Stop orders placed successfully. Transitioning to STOP_ORDERS_PLACED state.");
     }
 
     public void handleFirstTakeOrderFilled() {
+        if (!setState(State.FIRST_TAKE_FILLED)) {
+            return;
+        }
         if (position.get() == null) {
             log.warn("Position is empty when first take order is filled.");
             scheduleUnexpectedErrorHandlerTask();
@@ -188,7 +368,7 @@ public class OrderManager implements UserDataCallback {
 
     public void handleUnknownFilledOrder() {
         log.info("Handling unknown order update...");
-        if (state.get() == State.POSITION_EMPTY) {
+        if (stateMachine.get() == State.POSITION_EMPTY) {
             log.info("Unknown update in empty state. No action required");
             return;
         }
@@ -199,30 +379,111 @@ public class OrderManager implements UserDataCallback {
         }
 
         log.info("Manual position close detected. Resetting state...");
-        taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, this::closePositionAndResetState, 0, TimeUnit.MILLISECONDS);
+        closePositionAndResetState();
     }
 
     public void closePositionAndResetState() {
         log.info("Resetting state to POSITION_EMPTY...");
 
-        taskManager.cancelForce(HANDLE_OPEN_ORDER_FILLED_TASK_KEY);
-        taskManager.cancelForce(HANDLE_TAKE_0_ORDER_FILLED_TASK_KEY);
-        taskManager.cancelForce(HANDLE_UNKNOWN_ORDER_FILLED_TASK_KEY);
         taskManager.cancel(AUTOCLOSE_POSITION_TASK_KEY);
+        fastPathStop.set(null);
+        openFillReceivedAt = 0L;
 
         apiService.cancelAllOpenOrders(SYMBOL);
         orders.clear();
+        orderJournal.writeClear();
 
         if (position.get() != null) {
             log.info("Position is not empty, closing...");
             closePosition(OrderType.CLOSE, CLOSE_CLIENT_ID_PREFIX + System.currentTimeMillis());
         } else {
             log.info("Position is closed.");
-            state.set(State.POSITION_EMPTY);
+            setState(State.POSITION_EMPTY);
         }
     }
 
+    /**
+     * Restores state, imbalance and orders of the current position from the order journal, invalid records are skipped.
+     * An open order intent without a later state means the bot stopped between sending the order and its acknowledgement,
+     * so the order may be on the exchange and the state is restored as OPEN_ORDER_PLACED.
+     * The exchange state is reconciled with them by {@link #checkOrdersAPI()} when the user data stream is ready.
+     */
+    public void recover() {
+        List<JSONObject> records = orderJournal.read();
+        if (records.isEmpty()) {
+            log.info("Order journal is empty, nothing to recover.");
+            return;
+        }
+
+        State recoveredState = State.POSITION_EMPTY;
+        long stopOrdersPlacedTime = -1L;
+        for (JSONObject record : records) {
+            try {
+                switch (OrderJournal.Event.valueOf(record.getString("event"))) {
+                    case STATE -> {
+                        recoveredState = State.valueOf(record.getString("state"));
+                        if (recoveredState == State.STOP_ORDERS_PLACED) {
+                            stopOrdersPlacedTime = record.getLong("time");
+                        }
+                    }
+                    case IMBALANCE -> currentImbalance.set(new Imbalance(
+                            record.getLong("startTime"), record.getDouble("startPrice"),
+                            record.getLong("endTime"), record.getDouble("endPrice"),
+                            Imbalance.Type.valueOf(record.getString("type"))));
+                    case INTENT -> orders.put(OrderType.valueOf(record.getString("orderType")),
+                            parseOrder(record.getJSONObject("order")));
+                    case ACK -> {
+                        // order is restored from its intent, its presence on the exchange is checked by reconciliation
+                    }
+                    case FILL -> {
+                        OrderType orderType = orders.typeOf(record.getString("clientId"));
+                        if (orderType != null) {
+                            orders.get(orderType).setStatus(Order.Status.FILLED);
+                        }
+                    }
+                    case CANCEL -> {
+                        Order order = orders.get(OrderType.valueOf(record.getString("orderType")));
+                        if (order != null) {
+                            order.setStatus(Order.Status.CANCELED);
+                        }
+                    }
+                    case REMOVE -> orders.remove(OrderType.valueOf(record.getString("orderType")));
+                    case CLEAR -> orders.clear();
+                }
+            } catch (Exception e) {
+                log.warn("Skipping invalid order journal record: " + record, e);
+            }
+        }
+        if (recoveredState == State.POSITION_EMPTY && orders.get(OrderType.OPEN) != null) {
+            log.info("Open order intent is not acknowledged in the journal, checking it in OPEN_ORDER_PLACED state.");
+            recoveredState = State.OPEN_ORDER_PLACED;
+        }
+        stateMachine.reset(recoveredState);
+        log.info(String.format("Recovered from %d journal records: state %s, orders %s", records.size(), recoveredState, orders.asMap().keySet()));
+
+        if (recoveredState != State.POSITION_EMPTY && stopOrdersPlacedTime != -1L) {
+            long liveTime = TimeUnit.MINUTES.toMillis(TEST_RUN ? 5 : POSITION_LIVE_TIME);
+            scheduleAutoCloseTask(Math.max(0, liveTime - (System.currentTimeMillis() - stopOrdersPlacedTime)));
+        }
+    }
+
+    /**
+     * Waits for the stop and take requests already sent on the protection thread, then closes the journal.
+     */
+    public void close() {
+        protectionExecutor.shutdown();
+        try {
+            if (!protectionExecutor.awaitTermination(PROTECTION_EXECUTOR_STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("Protection requests are still running, closing the journal anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        orderJournal.close();
+    }
+
     public void checkOrdersAPI() {
+        lastReconciliationTime = System.currentTimeMillis();
         log.debug("Sending API requests for position and orders...");
         try {
             CompletableFuture<Position> positionFuture = CompletableFuture.supplyAsync(() ->
@@ -232,39 +493,54 @@ public class OrderManager implements UserDataCallback {
             Position position = positionFuture.get();
             List<Order> openedOrders = openedOrdersFuture.get();
             log.debug("Received API responses. Dispatching state update...");
-            stateDispatcher.dispatch(position, openedOrders, state.get());
+            if (mailbox.isMailboxThread()) {
+                stateDispatcher.dispatch(position, openedOrders, stateMachine.get());
+            } else {
+                mailbox.execute(() -> stateDispatcher.dispatch(position, openedOrders, stateMachine.get())).join();
+            }
         } catch (Exception e) {
             log.error("Failed to retrieve data via API", e);
         }
     }
 
-    private boolean isClosingOrder(String clientId) {
-        Order close = orders.get(OrderType.CLOSE);
-        Order stop = orders.get(OrderType.STOP);
-        Order take1 = orders.get(OrderType.TAKE_1);
-        Order breakEven = orders.get(OrderType.BREAK_EVEN);
-        Order timeout = orders.get(OrderType.TIMEOUT);
-        return (close != null && clientId.equals(close.getNewClientOrderId())) ||
-                (stop != null && clientId.equals(stop.getNewClientOrderId())) ||
-                (take1 != null && clientId.equals(take1.getNewClientOrderId())) ||
-                (breakEven != null && clientId.equals(breakEven.getNewClientOrderId())) ||
-                (timeout != null && clientId.equals(timeout.getNewClientOrderId()));
-    }
-
-    private boolean placeStopOrder() {
-        Order stop = orderUtils.createStop(SYMBOL, currentImbalance.get(), position.get());
-        orders.putIfAbsent(OrderType.STOP, stop);
+    /**
+     * Position from the open order fill, used when the position update has not arrived yet.
+     */
+    private Position fillPosition(double averagePrice, double filledQuantity) {
+        Position current = position.get();
+        Order open = orders.get(OrderType.OPEN);
+        if (current != null || open == null || averagePrice == 0 || filledQuantity == 0) {
+            return current;
+        }
+        Position filled = new Position();
+        filled.setSymbol(SYMBOL);
+        filled.setEntryPrice(averagePrice);
+        filled.setPositionAmt(open.getSide() == Order.Side.BUY ? filledQuantity : -filledQuantity);
+        filled.setBreakEvenPrice(averagePrice);
+        return filled;
+    }
+
+    private boolean placeStopOrder(Position position) {
+        if (position == null) {
+            log.warn("Position is empty when placing stop order.");
+            scheduleUnexpectedErrorHandlerTask();
+            return false;
+        }
+        Order stop = orderUtils.createStop(SYMBOL, currentImbalance.get(), position);
+        putOrderIfAbsent(OrderType.STOP, stop);
         HTTPResponse<Order> response = apiService.placeOrder(stop);
 
         if (response.isSuccess()) {
             Order order = response.getValue();
+            orderJournal.writeAck(OrderType.STOP, stop.getNewClientOrderId());
+            recordStopLatency();
             log.info("Stop order placed: " + order);
             return true;
         }
 
         APIError error = response.getError();
         if (orderWouldImmediatelyTrigger(error)) {
-            orders.remove(OrderType.STOP);
+            removeOrder(OrderType.STOP);
             return false;
         }
 
@@ -272,7 +548,7 @@ public class OrderManager implements UserDataCallback {
             if (shouldReplaceOrder(OrderType.STOP)) {
                 log.info("Stop order is not correct, replacing...");
                 apiService.cancelOrder(SYMBOL, orders.get(OrderType.STOP).getNewClientOrderId());
-                return placeStopOrder();
+                return placeStopOrder(position);
             }
             log.info("Stop order is correct.");
             return true;
@@ -280,86 +556,66 @@ public class OrderManager implements UserDataCallback {
 
         log.warn("Failed to place stop: " + error);
         scheduleUnexpectedErrorHandlerTask();
-        orders.remove(OrderType.STOP);
+        removeOrder(OrderType.STOP);
         return false;
     }
 
-    private boolean placeFirstTakeOrder() {
-        Order take = orderUtils.createFirstTake(SYMBOL, position.get(), currentImbalance.get().size());
-        orders.putIfAbsent(OrderType.TAKE_0, take);
-        HTTPResponse<Order> response = apiService.placeOrder(take);
-
-        if (response.isSuccess()) {
-            Order order = response.getValue();
-            log.info("First take order placed: " + order);
-            return true;
-        }
-
-        APIError error = response.getError();
-        if (isOrderRejected(error)) {
-            orders.remove(OrderType.TAKE_0);
-            return false;
-        }
-
-        if (orderAlreadyPlaced(error, OrderType.TAKE_0)) {
-            if (shouldReplaceOrder(OrderType.TAKE_0)) {
-                log.info("First take order is not correct, replacing...");
-                apiService.cancelOrder(SYMBOL, orders.get(OrderType.TAKE_0).getNewClientOrderId());
-                return placeFirstTakeOrder();
-            }
-            log.info("First take order is correct.");
-            return true;
+    private void recordStopLatency() {
+        long filledAt = openFillReceivedAt;
+        if (filledAt != 0L) {
+            openFillReceivedAt = 0L;
+            long latency = System.nanoTime() - filledAt;
+            stopLatency.record(latency);
+            Metrics.getInstance().record(Metrics.FILL_TO_STOP_ACK, latency);
+            log.info(String.format("Stop order acknowledged %.3f ms after the open order fill", latency / 1_000_000.0));
         }
-
-        log.warn("Failed to place first take: " + error);
-        scheduleUnexpectedErrorHandlerTask();
-        orders.remove(OrderType.TAKE_0);
-        return false;
     }
 
-    private boolean placeSecondTakeOrder() {
-        Order take = orderUtils.createSecondTake(SYMBOL, position.get(), currentImbalance.get().size());
-        orders.putIfAbsent(OrderType.TAKE_1, take);
-        HTTPResponse<Order> response = apiService.placeOrder(take);
-
+    private boolean handleTakeOrderResponse(OrderType orderType, Order take, HTTPResponse<Order> response) {
+        String name = orderType == OrderType.TAKE_0 ? "First" : "Second";
         if (response.isSuccess()) {
             Order order = response.getValue();
-            log.info("Second take order placed: " + order);
+            orderJournal.writeAck(orderType, take.getNewClientOrderId());
+            log.info(String.format("%s take order placed: %s", name, order));
             return true;
         }
 
         APIError error = response.getError();
         if (isOrderRejected(error)) {
-            orders.remove(OrderType.TAKE_1);
+            removeOrder(orderType);
             return false;
         }
 
-        if (orderAlreadyPlaced(error, OrderType.TAKE_1)) {
-            if (shouldReplaceOrder(OrderType.TAKE_1)) {
-                log.info("Second take order is not correct, replacing...");
-                apiService.cancelOrder(SYMBOL, orders.get(OrderType.TAKE_1).getNewClientOrderId());
-                return placeSecondTakeOrder();
+        if (orderAlreadyPlaced(error, orderType)) {
+            if (shouldReplaceOrder(orderType)) {
+                log.info(String.format("%s take order is not correct, replacing...", name));
+                apiService.cancelOrder(SYMBOL, orders.get(orderType).getNewClientOrderId());
+                return handleTakeOrderResponse(orderType, take, apiService.placeOrder(take));
             }
-            log.info("Second take order is correct.");
+            log.info(String.format("%s take order is correct.", name));
             return true;
         }
 
-        log.warn("Failed to place second take: " + error);
+        log.warn(String.format("Failed to place %s take: %s", name.toLowerCase(), error));
         scheduleUnexpectedErrorHandlerTask();
-        orders.remove(OrderType.TAKE_1);
+        removeOrder(orderType);
         return false;
     }
 
     private void scheduleAutoCloseTask() {
+        scheduleAutoCloseTask(TimeUnit.MINUTES.toMillis(TEST_RUN ? 5 : POSITION_LIVE_TIME));
+    }
+
+    private void scheduleAutoCloseTask(long delay) {
         log.info("Scheduling auto-close position timer...");
         taskManager.schedule(
                 AUTOCLOSE_POSITION_TASK_KEY,
-                () -> {
+                () -> mailbox.execute(() -> {
                     log.info("Closing position due to timeout...");
                     closePosition(OrderType.TIMEOUT, TIMEOUT_CLOSE_CLIENT_ID_KEY);
-                },
-                TEST_RUN ? 5 : POSITION_LIVE_TIME,
-                TimeUnit.MINUTES
+                }),
+                delay,
+                TimeUnit.MILLISECONDS
         );
         log.info("Auto-close task scheduled.");
     }
@@ -373,6 +629,7 @@ public class OrderManager implements UserDataCallback {
 
             if (response.isSuccess()) {
                 stop.setStatus(Order.Status.CANCELED);
+                orderJournal.writeCancel(OrderType.STOP);
                 log.info("Existing stop order canceled.");
                 return;
             }
@@ -384,16 +641,17 @@ public class OrderManager implements UserDataCallback {
 
     private void placeBreakEvenOrder() {
         Order breakEven = orderUtils.createBreakEvenStop(SYMBOL, position.get());
-        orders.putIfAbsent(OrderType.BREAK_EVEN, breakEven);
+        putOrderIfAbsent(OrderType.BREAK_EVEN, breakEven);
         HTTPResponse<Order> response = apiService.placeOrder(breakEven);
 
         if (response.isSuccess()) {
-            state.set(State.BREAK_EVEN_ORDER_CREATED);
+            orderJournal.writeAck(OrderType.BREAK_EVEN, breakEven.getNewClientOrderId());
+            setState(State.BREAK_EVEN_ORDER_CREATED);
             log.info("Break-even stop order placed successfully: " + response.getValue());
             return;
         }
 
-        orders.remove(OrderType.BREAK_EVEN);
+        removeOrder(OrderType.BREAK_EVEN);
         if (orderWouldImmediatelyTrigger(response.getError())) {
             return;
         }
@@ -411,26 +669,27 @@ public class OrderManager implements UserDataCallback {
 
         log.info("Closing position with order type: " + orderType);
         Order order = orderUtils.createClosePosition(SYMBOL, clientId, position.get());
-        orders.put(orderType, order);
+        putOrder(orderType, order);
         HTTPResponse<Order> response = apiService.placeOrder(order);
 
         if (response.isSuccess()) {
+            orderJournal.writeAck(orderType, clientId);
             log.info("Position close order is placed. Order details: " + response.getValue());
             return;
         } else if (TEST_RUN) {
             //TODO store time to auto close position
-            taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, this::closePositionAndResetState, 5, TimeUnit.MILLISECONDS);
+            taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, () -> mailbox.execute(this::closePositionAndResetState), 5, TimeUnit.MILLISECONDS);
         }
 
         log.warn("Failed to place close position order: " + response.getError());
-        orders.remove(orderType);
+        removeOrder(orderType);
         scheduleUnexpectedErrorHandlerTask();
     }
 
     private boolean orderWouldImmediatelyTrigger(APIError error) {
         if (error.code() == -2021) {
             log.info("Got error 'Order would immediately trigger' - closing position due to fast price moving under limits");
-            taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, this::closePositionAndResetState, 5, TimeUnit.MILLISECONDS);
+            taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, () -> mailbox.execute(this::closePositionAndResetState), 5, TimeUnit.MILLISECONDS);
             return true;
         }
         return false;
@@ -439,7 +698,7 @@ public class OrderManager implements UserDataCallback {
     private boolean isOrderRejected(APIError error) {
         if (error.code() == -2022) {
             log.info("Got error 'ReduceOnly Order is rejected' which mean that position is empty");
-            taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, this::closePositionAndResetState, 5, TimeUnit.MILLISECONDS);
+            taskManager.schedule(HANDLE_CLOSE_POSITION_TASK_KEY, () -> mailbox.execute(this::closePositionAndResetState), 5, TimeUnit.MILLISECONDS);
             return true;
         }
         return false;
@@ -469,19 +728,101 @@ public class OrderManager implements UserDataCallback {
     }
 
     private void scheduleUnexpectedErrorHandlerTask() {
-        taskManager.schedule(CHECK_ORDERS_API_MODE_TASK_KEY, this::checkOrdersAPI, 1, TimeUnit.SECONDS);
+        ReconciliationScheduler.getInstance().requestOnce(this, RECONCILIATION_ERROR_DELAY);
+    }
+
+    public State getState() {
+        return stateMachine.get();
     }
 
-    public synchronized State getState() {
-        return state.get();
+    /**
+     * Applies the transition if the table allows it. Returns true if the state is the target one after the call.
+     */
+    public boolean setState(State state) {
+        State previousState = stateMachine.transition(state);
+        if (previousState == null) {
+            return false;
+        }
+        if (previousState != state) {
+            EventJournal.getInstance().writeOrderState(clientNumber, previousState, state);
+            orderJournal.writeState(state);
+
+            OrderStateEvent event = new OrderStateEvent();
+            if (event.shouldCommit()) {
+                event.clientNumber = clientNumber;
+                event.from = previousState.name();
+                event.to = state.name();
+                event.commit();
+            }
+        }
+        return true;
+    }
+
+    private void putOrder(OrderType orderType, Order order) {
+        orders.put(orderType, order);
+        orderJournal.writeIntent(orderType, order);
+    }
+
+    private void putOrderIfAbsent(OrderType orderType, Order order) {
+        if (orders.putIfAbsent(orderType, order)) {
+            orderJournal.writeIntent(orderType, order);
+        }
+    }
+
+    private void removeOrder(OrderType orderType) {
+        if (orders.remove(orderType)) {
+            orderJournal.writeRemove(orderType);
+        }
+    }
+
+    public int getClientNumber() {
+        return clientNumber;
+    }
+
+    public long getLastUserDataTime() {
+        return lastUserDataTime;
+    }
+
+    public long getLastReconciliationTime() {
+        return lastReconciliationTime;
+    }
+
+    /**
+     * Time when the imbalance signal reached the account, the open order placed for it is measured from here.
+     */
+    public void setSignal(long nanos, FanOutSpread spread) {
+        this.signalReceivedAt = nanos;
+        this.signalSpread = spread;
+    }
+
+    /**
+     * Called after the signal is handled, reports the account to the spread if no open order was sent for it.
+     */
+    public void completeSignal() {
+        signalReceivedAt = 0L;
+        if (signalSpread != null) {
+            signalSpread.skipped();
+            signalSpread = null;
+        }
+    }
+
+    private void recordSignalToOrderSent(long sent) {
+        if (signalReceivedAt != 0L) {
+            Metrics.getInstance().record(Metrics.SIGNAL_TO_ORDER_SENT, sent - signalReceivedAt);
+            signalReceivedAt = 0L;
+        }
+        if (signalSpread != null) {
+            signalSpread.sent(sent);
+            signalSpread = null;
+        }
     }
 
-    public synchronized void setState(State state) {
-        this.state.set(state);
+    public LatencyHistogram getStopLatency() {
+        return stopLatency;
     }
 
     public Map<OrderType, Order> getOrders() {
-        return this.orders;
+        return this.orders.asMap();
     }
 
     public void logAll() {
@@ -489,11 +830,13 @@ public class OrderManager implements UserDataCallback {
             log.debug(String.format("""
                             OrderManager state:
                             state: %s
+                            mailbox: %s
                             currentImbalance: %s
                             orders: %s
                             position: %s
+                            stopLatency: %s
                             """,
-                    state.get(), currentImbalance.get(), orders, position.get()));
+                    stateMachine, mailbox, currentImbalance.get(), orders, position.get(), stopLatency));
         } catch (Exception e) {
             log.warn("Failed to write", e);
         }
@@ -0,0 +1,82 @@
+package org.tradebot.service;
+
+import org.tradebot.domain.Order;
+import org.tradebot.service.OrderManager.OrderType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local orders of one account indexed both by type and by client order id, so an order update is matched
+ * to its order type with one lookup. Both indexes are changed together under the registry lock,
+ * reads take no lock.
+ */
+class OrderRegistry {
+
+    private final Map<OrderType, Order> byType = new ConcurrentHashMap<>();
+    private final Map<String, OrderType> byClientId = new ConcurrentHashMap<>();
+    private final Map<OrderType, Order> view = Collections.unmodifiableMap(byType);
+
+    public synchronized void put(OrderType orderType, Order order) {
+        unindex(orderType, byType.put(orderType, order));
+        index(orderType, order);
+    }
+
+    /**
+     * Returns true if the order is added, false if an order of this type is already present.
+     */
+    public synchronized boolean putIfAbsent(OrderType orderType, Order order) {
+        if (byType.containsKey(orderType)) {
+            return false;
+        }
+        put(orderType, order);
+        return true;
+    }
+
+    /**
+     * Returns true if an order of this type was present.
+     */
+    public synchronized boolean remove(OrderType orderType) {
+        Order removed = byType.remove(orderType);
+        unindex(orderType, removed);
+        return removed != null;
+    }
+
+    public synchronized void clear() {
+        byType.clear();
+        byClientId.clear();
+    }
+
+    public Order get(OrderType orderType) {
+        return byType.get(orderType);
+    }
+
+    /**
+     * Returns the type of the local order with this client id or null if the order is not ours.
+     */
+    public OrderType typeOf(String clientId) {
+        return clientId == null ? null : byClientId.get(clientId);
+    }
+
+    public Map<OrderType, Order> asMap() {
+        return view;
+    }
+
+    private void index(OrderType orderType, Order order) {
+        if (order.getNewClientOrderId() != null) {
+            byClientId.put(order.getNewClientOrderId(), orderType);
+        }
+    }
+
+    private void unindex(OrderType orderType, Order order) {
+        if (order != null && order.getNewClientOrderId() != null) {
+            byClientId.remove(order.getNewClientOrderId(), orderType);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return byType.toString();
+    }
+}
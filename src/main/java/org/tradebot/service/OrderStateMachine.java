@@ -0,0 +1,110 @@
+package org.tradebot.service;
+
+import org.tradebot.service.OrderManager.State;
+import org.tradebot.util.Log;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.tradebot.service.OrderManager.State.*;
+
+/**
+ * Position state of one account. Allowed transitions are listed in the table, a transition is applied with
+ * compare-and-set, so of two concurrent transitions from the same state only one wins, and illegal ones
+ * are rejected. Time spent in the previous state is logged on every transition.
+ */
+public class OrderStateMachine {
+
+    private static final Map<State, EnumSet<State>> TRANSITIONS = new EnumMap<>(State.class);
+
+    static {
+        TRANSITIONS.put(POSITION_EMPTY, EnumSet.of(OPEN_ORDER_PLACED));
+        TRANSITIONS.put(OPEN_ORDER_PLACED, EnumSet.of(OPEN_ORDER_FILLED, POSITION_EMPTY));
+        TRANSITIONS.put(OPEN_ORDER_FILLED, EnumSet.of(STOP_ORDERS_PLACED, FIRST_TAKE_FILLED, POSITION_EMPTY));
+        TRANSITIONS.put(STOP_ORDERS_PLACED, EnumSet.of(FIRST_TAKE_FILLED, POSITION_EMPTY));
+        TRANSITIONS.put(FIRST_TAKE_FILLED, EnumSet.of(BREAK_EVEN_ORDER_CREATED, POSITION_EMPTY));
+        TRANSITIONS.put(BREAK_EVEN_ORDER_CREATED, EnumSet.of(POSITION_EMPTY));
+    }
+
+    private final Log log;
+    private final AtomicReference<State> state = new AtomicReference<>(POSITION_EMPTY);
+    private volatile long enteredAt = System.nanoTime();
+    private final Map<State, Map<State, TransitionStats>> stats = new EnumMap<>(State.class);
+
+    public OrderStateMachine(Log log) {
+        this.log = log;
+        for (State from : State.values()) {
+            Map<State, TransitionStats> targets = new EnumMap<>(State.class);
+            TRANSITIONS.get(from).forEach(to -> targets.put(to, new TransitionStats()));
+            stats.put(from, targets);
+        }
+    }
+
+    public State get() {
+        return state.get();
+    }
+
+    public static boolean isAllowed(State from, State to) {
+        return TRANSITIONS.get(from).contains(to);
+    }
+
+    /**
+     * Moves to the target state if it is allowed from the current one.
+     * Returns the previous state, the target state if it is already current, or null if the transition is rejected.
+     */
+    public State transition(State target) {
+        while (true) {
+            State current = state.get();
+            if (current == target) {
+                return current;
+            }
+            if (!isAllowed(current, target)) {
+                log.warn(String.format("Illegal state transition %s -> %s rejected", current, target));
+                return null;
+            }
+            long now = System.nanoTime();
+            long entered = enteredAt;
+            if (state.compareAndSet(current, target)) {
+                enteredAt = now;
+                long elapsed = now - entered;
+                stats.get(current).get(target).record(elapsed);
+                log.info(String.format("State %s -> %s after %d ms", current, target, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Sets the state without checking the table, used only when the state is restored.
+     */
+    public void reset(State restored) {
+        state.set(restored);
+        enteredAt = System.nanoTime();
+    }
+
+    private static class TransitionStats {
+        private long count = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+
+        private synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("{ count :: %d, avg :: %d ms, max :: %d ms }", count,
+                    count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count), TimeUnit.NANOSECONDS.toMillis(maxNanos));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ state :: %s, transitions :: %s }", state.get(), stats);
+    }
+}
@@ -0,0 +1,157 @@
+package org.tradebot.service;
+
+import org.tradebot.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Runs REST reconciliation ({@link OrderManager#checkOrdersAPI()}) of all accounts from one scheduler.
+ * While WebSockets are down an account is checked with an interval depending on its state: often while orders
+ * are in flight, rarely when the position is empty. Requests for an account which is already queued or running
+ * are merged into one check, and not more than {@link org.tradebot.util.Settings#RECONCILIATION_MAX_PARALLEL}
+ * checks run at the same time.
+ */
+public class ReconciliationScheduler {
+
+    private final Log log = new Log();
+    private final Map<OrderManager, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger workerNumber = new AtomicInteger(0);
+    private final ExecutorService workers = Executors.newFixedThreadPool(RECONCILIATION_MAX_PARALLEL, runnable -> {
+        Thread thread = new Thread(runnable, "reconciliation-worker-" + workerNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static ReconciliationScheduler instance;
+
+    public static synchronized ReconciliationScheduler getInstance() {
+        if (instance == null) {
+            instance = new ReconciliationScheduler();
+        }
+        return instance;
+    }
+
+    private ReconciliationScheduler() {
+        scheduler.scheduleWithFixedDelay(this::tick, RECONCILIATION_TICK_PERIOD, RECONCILIATION_TICK_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts periodic checks of the account, the first one is done immediately.
+     */
+    public void start(OrderManager orderManager) {
+        Entry entry = entries.computeIfAbsent(orderManager, Entry::new);
+        synchronized (entry) {
+            entry.periodic = true;
+            entry.nextDue = System.currentTimeMillis();
+        }
+        log.info(String.format("Periodic reconciliation started for account %d", orderManager.getClientNumber()));
+    }
+
+    /**
+     * Stops periodic checks. Returns true if the user data stream delivered an update after the last check,
+     * so the stream has caught up and no final check is needed.
+     */
+    public boolean stop(OrderManager orderManager) {
+        Entry entry = entries.get(orderManager);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.periodic = false;
+                entry.nextDue = Long.MAX_VALUE;
+            }
+        }
+        boolean caughtUp = orderManager.getLastUserDataTime() > orderManager.getLastReconciliationTime();
+        log.info(String.format("Periodic reconciliation stopped for account %d, user data stream caught up: %s",
+                orderManager.getClientNumber(), caughtUp));
+        return caughtUp;
+    }
+
+    /**
+     * Requests one check after the delay. Merged with the check which is already planned earlier or running.
+     */
+    public void requestOnce(OrderManager orderManager, long delay) {
+        Entry entry = entries.computeIfAbsent(orderManager, Entry::new);
+        synchronized (entry) {
+            entry.nextDue = Math.min(entry.nextDue, System.currentTimeMillis() + delay);
+        }
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.inFlight || entry.nextDue > now) {
+                    if (!entry.inFlight && !entry.periodic && entry.nextDue == Long.MAX_VALUE) {
+                        entries.remove(entry.orderManager, entry);
+                    }
+                    continue;
+                }
+                entry.inFlight = true;
+                entry.nextDue = entry.periodic ? now + interval(entry.orderManager.getState()) : Long.MAX_VALUE;
+            }
+            workers.execute(() -> run(entry));
+        }
+    }
+
+    private void run(Entry entry) {
+        try {
+            entry.orderManager.checkOrdersAPI();
+            entry.checks++;
+        } catch (Exception e) {
+            log.warn("Reconciliation failed", e);
+        } finally {
+            synchronized (entry) {
+                entry.inFlight = false;
+            }
+        }
+    }
+
+    private static long interval(OrderManager.State state) {
+        return switch (state) {
+            case POSITION_EMPTY -> RECONCILIATION_IDLE_INTERVAL;
+            case OPEN_ORDER_PLACED, OPEN_ORDER_FILLED, FIRST_TAKE_FILLED -> RECONCILIATION_IN_FLIGHT_INTERVAL;
+            case STOP_ORDERS_PLACED, BREAK_EVEN_ORDER_CREATED -> RECONCILIATION_POSITION_INTERVAL;
+        };
+    }
+
+    private static class Entry {
+        private final OrderManager orderManager;
+        private boolean periodic = false;
+        private boolean inFlight = false;
+        private long nextDue = Long.MAX_VALUE;
+        private volatile long checks = 0;
+
+        private Entry(OrderManager orderManager) {
+            this.orderManager = orderManager;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{ account :: %d, periodic :: %s, inFlight :: %s, nextDue :: %d, checks :: %d }",
+                    orderManager.getClientNumber(), periodic, inFlight, nextDue, checks);
+        }
+    }
+
+    public void logAll() {
+        try {
+            log.debug(String.format("""
+                    ReconciliationScheduler:
+                        entries: %s
+                    """, entries.values()));
+        } catch (Exception e) {
+            log.warn("Failed to write", e);
+        }
+    }
+}
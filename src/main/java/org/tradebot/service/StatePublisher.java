@@ -0,0 +1,100 @@
+package org.tradebot.service;
+
+import org.tradebot.domain.TradingBotState;
+import org.tradebot.util.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Writes account state files on a background thread. Callers only keep the latest state per account,
+ * the file is replaced atomically and only when the content changed or the previous write is older than
+ * {@link org.tradebot.util.Settings#STATE_PUBLISH_HEARTBEAT_PERIOD}.
+ */
+public class StatePublisher {
+
+    private final Log log = new Log();
+    private final Map<Integer, TradingBotState> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, Published> published = new HashMap<>();
+    private final Map<Integer, TradingBotState> latest = new ConcurrentHashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "state-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static StatePublisher instance;
+
+    public static synchronized StatePublisher getInstance() {
+        if (instance == null) {
+            instance = new StatePublisher();
+        }
+        return instance;
+    }
+
+    private StatePublisher() {  }
+
+    public void publish(int clientNumber, TradingBotState state) {
+        latest.put(clientNumber, state);
+        pending.put(clientNumber, state);
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Last state of every account, also the one which is not written yet.
+     */
+    public Map<Integer, TradingBotState> getLatest() {
+        return Collections.unmodifiableMap(latest);
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        for (Integer clientNumber : pending.keySet()) {
+            TradingBotState state = pending.remove(clientNumber);
+            if (state != null) {
+                write(clientNumber, state);
+            }
+        }
+    }
+
+    private void write(int clientNumber, TradingBotState state) {
+        long now = System.currentTimeMillis();
+        Published previous = published.get(clientNumber);
+        if (previous != null && previous.state.hasSameContent(state)
+                && now - previous.time < STATE_PUBLISH_HEARTBEAT_PERIOD) {
+            return;
+        }
+
+        Path target = Path.of(STATE_FILE_PATH + clientNumber, "state.json");
+        Path temp = Path.of(STATE_FILE_PATH + clientNumber, "state.json.tmp");
+        try {
+            Files.writeString(temp, state.toString(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            published.put(clientNumber, new Published(state, now));
+        } catch (IOException e) {
+            log.warn(String.format("Failed to write state of account %d", clientNumber), e);
+        }
+    }
+
+    private record Published(TradingBotState state, long time) {  }
+}
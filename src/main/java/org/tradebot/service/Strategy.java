@@ -6,10 +6,9 @@ import org.tradebot.listener.OrderBookCallback;
 import org.tradebot.listener.UserWebSocketCallback;
 import org.tradebot.listener.MarketDataWebSocketCallback;
 import org.tradebot.util.Log;
+import org.tradebot.util.Mailbox;
 
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.tradebot.util.Settings.*;
@@ -17,18 +16,20 @@ import static org.tradebot.util.Settings.*;
 public class Strategy implements OrderBookCallback, ImbalanceStateCallback, MarketDataWebSocketCallback, UserWebSocketCallback {
 
     private final Log log;
-    private final TaskManager taskManager;
 
     private final OrderManager orderManager;
+    private final Mailbox mailbox;
 
     private final AtomicBoolean marketDataWS = new AtomicBoolean(false);
     private final AtomicBoolean userDataWS = new AtomicBoolean(false);
     private final AtomicBoolean webSocketReady = new AtomicBoolean(false);
+    private volatile OrderBookFeatures orderBookFeatures;
 
     public Strategy(OrderManager orderManager,
+                    Mailbox mailbox,
                     int clientNumber) {
-        this.taskManager = TaskManager.getInstance(clientNumber);
         this.orderManager = orderManager;
+        this.mailbox = mailbox;
         this.log = new Log(clientNumber);
     }
 
@@ -56,16 +57,20 @@ public class Strategy implements OrderBookCallback, ImbalanceStateCallback, Mark
 
     @Override
     public void notifyMarketDataWSStateChanged(boolean ready) {
-        if (marketDataWS.compareAndSet(!ready, ready)) {
-            updateWebSocketState(ready, userDataWS.get());
-        }
+        mailbox.execute(() -> {
+            if (marketDataWS.compareAndSet(!ready, ready)) {
+                updateWebSocketState(ready, userDataWS.get());
+            }
+        });
     }
 
     @Override
     public void notifyUserDataWSChanged(boolean ready) {
-        if (userDataWS.compareAndSet(!ready, ready)) {
-            updateWebSocketState(marketDataWS.get(), ready);
-        }
+        mailbox.execute(() -> {
+            if (userDataWS.compareAndSet(!ready, ready)) {
+                updateWebSocketState(marketDataWS.get(), ready);
+            }
+        });
     }
 
     private void updateWebSocketState(boolean wsReady, boolean userWsReady) {
@@ -74,19 +79,26 @@ public class Strategy implements OrderBookCallback, ImbalanceStateCallback, Mark
         if (webSocketReady.get() != ready) {
             if (ready) {
                 log.info("Switching to WebSocket mode...");
-                taskManager.cancel(CHECK_ORDERS_API_MODE_TASK_KEY);
-                orderManager.checkOrdersAPI();
+                if (!ReconciliationScheduler.getInstance().stop(orderManager)) {
+                    orderManager.checkOrdersAPI();
+                }
                 webSocketReady.set(true);
             } else {
-                log.info("Switching to API-based order checks period to 1 second...");
+                log.info("Switching to API-based order checks...");
                 webSocketReady.set(false);
-                taskManager.scheduleAtFixedRate(CHECK_ORDERS_API_MODE_TASK_KEY, orderManager::checkOrdersAPI, 2, 2, TimeUnit.SECONDS);
+                ReconciliationScheduler.getInstance().start(orderManager);
             }
         }
     }
 
     @Override
-    public void notifyOrderBookUpdate(Map<Double, Double> asks, Map<Double, Double> bids) {  }
+    public void notifyOrderBookUpdate(OrderBookSnapshot snapshot) {
+        orderBookFeatures = snapshot.features();
+    }
+
+    public OrderBookFeatures getOrderBookFeatures() {
+        return orderBookFeatures;
+    }
 
     public void logAll() {
         try {
@@ -97,8 +109,9 @@ public class Strategy implements OrderBookCallback, ImbalanceStateCallback, Mark
                                 Web Socket summary: %s
                                 Market Data WS state: %s
                                 User Data WS state: %s
+                                Order book features: %s
                             """,
-                    SYMBOL, LEVERAGE, webSocketReady.get(), marketDataWS.get(), userDataWS.get()));
+                    SYMBOL, LEVERAGE, webSocketReady.get(), marketDataWS.get(), userDataWS.get(), orderBookFeatures));
         } catch (Exception e) {
             log.warn("Failed to write", e);
         }
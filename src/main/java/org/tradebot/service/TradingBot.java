@@ -8,7 +8,11 @@ import org.tradebot.domain.TradingAccountSettings;
 import org.tradebot.domain.Precision;
 import org.tradebot.domain.TradingAccount;
 import org.tradebot.domain.TradingBotState;
+import org.tradebot.jfr.FlightRecording;
+import org.tradebot.journal.EventJournal;
+import org.tradebot.journal.KlineStore;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 import org.tradebot.util.TimeFormatter;
 
 import java.util.Arrays;
@@ -60,6 +64,13 @@ public class TradingBot {
         return instance;
     }
 
+    /**
+     * Replaces the bot in tests, which must not connect to the exchange.
+     */
+    static void setInstance(TradingBot bot) {
+        instance = bot;
+    }
+
     private TradingBot() {
         log.info(String.format("Creating '%s' bot with %d leverage", SYMBOL, LEVERAGE));
 
@@ -70,6 +81,7 @@ public class TradingBot {
         imbalanceService = ImbalanceService.getInstance();
         tradeHandler = TradeHandler.getInstance();
         orderBookHandler = OrderBookHandler.getInstance();
+        orderBookHandler.setPrecision(precision);
         marketDataWebSocket = MarketDataWebSocketService.getInstance();
         volatilityService = VolatilityService.getInstance();
         tradingManager = TradingManager.getInstance();
@@ -96,7 +108,9 @@ public class TradingBot {
                         already returned price imbalance partition on potential endpoint check %.3f
                      
                      VolatilityService parameters:
-                        Update time period: %d hours
+                        Bucket size: %d minutes
+                        Notify period: %d seconds
+                        Use EWMA: %s
                         Volatility calculation period: %d days
                         Average price calculation period: %d days
                      
@@ -117,14 +131,21 @@ public class TradingBot {
                 TimeUnit.MILLISECONDS.toSeconds(LARGE_DATA_ENTRY_SIZE),
                 TimeUnit.MILLISECONDS.toMinutes(TIME_CHECK_CONTR_IMBALANCE),
                 RETURNED_PRICE_IMBALANCE_PARTITION,
-                UPDATE_TIME_PERIOD_HOURS,
+                TimeUnit.MILLISECONDS.toMinutes(VOLATILITY_BUCKET_SIZE),
+                TimeUnit.MILLISECONDS.toSeconds(VOLATILITY_NOTIFY_PERIOD),
+                VOLATILITY_USE_EWMA,
                 VOLATILITY_CALCULATE_PAST_TIME_DAYS,
                 AVERAGE_PRICE_CALCULATE_PAST_TIME_DAYS,
                 precision));
     }
 
     public void start() {
-        tradeHandler.setCallback(imbalanceService);
+        if (JFR_RECORDING_ENABLED) {
+            FlightRecording.getInstance().start();
+        }
+        tradeHandler.addCallback(imbalanceService);
+        tradeHandler.addCallback(volatilityService);
+        imbalanceService.addCallback(tradingManager);
         volatilityService.setCallback(imbalanceService);
         orderBookHandler.setInitializationStateCallback(marketDataWebSocket);
 
@@ -134,26 +155,47 @@ public class TradingBot {
             accounts.forEach(tradingManager::addAccount);
         }
 
+        warmUp();
         marketDataWebSocket.connect();
 
         log.info(String.format("'%s' bot started", SYMBOL));
         taskManager.scheduleAtFixedRate(STATE_UPDATE_TASK_KEY, this::updateBotState, 5, 1, TimeUnit.SECONDS);
+        taskManager.scheduleAtFixedRate(LOG_LEVELS_RELOAD_TASK_KEY, Log::reloadLevels, 0, 10, TimeUnit.SECONDS);
+        Metrics.getInstance().start();
+        if (MONITORING_SERVER_ENABLED) {
+            MonitoringServer.getInstance().start();
+        }
         setShutdownHook();
         log.info("Shutdown hook added.");
     }
 
+    private void warmUp() {
+        imbalanceService.restore();
+        try {
+            KlineStore store = KlineStore.getInstance(LARGE_DATA_KLINE_INTERVAL, LARGE_DATA_KLINE_SIZE, LARGE_DATA_KLINE_STORE_CAPACITY);
+            imbalanceService.warmUp(store.sync().load(System.currentTimeMillis() - LARGE_DATA_LIVE_TIME - LARGE_DATA_KLINE_SIZE));
+        } catch (Exception e) {
+            log.warn("Failed to warm up imbalance service, starting with empty data", e);
+        }
+    }
+
     private void setShutdownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             log.info("Shutdown hook triggered.");
             try {
                 TradingBot.getInstance().logAll();
+                MonitoringServer.getInstance().stop();
                 TradingBot.getInstance().tradingManager.stopAll();
                 TradingBot.getInstance().marketDataWebSocket.close();
+                TradingBot.getInstance().orderBookHandler.close();
                 TradingBot.getInstance().taskManager.cancelAll();
             } catch (Exception e) {
                 log.error("Failed to stop bot normally", e);
             }
             log.info("Shutdown Java...");
+            EventJournal.getInstance().close();
+            FlightRecording.getInstance().stop();
+            Log.shutdown();
         }));
     }
 
@@ -162,21 +204,19 @@ public class TradingBot {
     }
 
     private void updateBotState() {
-        tradingManager.getAccounts().forEach((_, account) -> {
-            TradingBotState state = new TradingBotState()
-                    .setImbalanceState(instance.imbalanceService.currentState.get())
-                    .setMarketDataWebSocketState(instance.marketDataWebSocket.getReady())
-                    .setLastPrice(tradeHandler.getLastPrice())
-                    .setCurrentTime(TimeFormatter.now())
-                    .setCountOfWorkingAccounts(tradingManager.getAccounts().values().stream().filter(TradingAccount::isReady).count())
-                    .setShouldUseOrderBook(USE_ORDER_BOOK);
-            if (USE_ORDER_BOOK) {
-                state = state.setOrderBookReady(instance.marketDataWebSocket.getOrderBookReady())
-                        .setAsks(instance.orderBookHandler.getAsks(3))
-                        .setBids(instance.orderBookHandler.getBids(3));
-            }
-            account.updateState(state);
-        });
+        TradingBotState marketState = new TradingBotState()
+                .setImbalanceState(instance.imbalanceService.currentState.get())
+                .setMarketDataWebSocketState(instance.marketDataWebSocket.getReady())
+                .setLastPrice(tradeHandler.getLastPrice())
+                .setCurrentTime(TimeFormatter.now())
+                .setCountOfWorkingAccounts(tradingManager.getAccounts().values().stream().filter(TradingAccount::isReady).count())
+                .setShouldUseOrderBook(USE_ORDER_BOOK);
+        if (USE_ORDER_BOOK) {
+            marketState.setOrderBookReady(instance.marketDataWebSocket.getOrderBookReady())
+                    .setAsks(instance.orderBookHandler.getAsks(3))
+                    .setBids(instance.orderBookHandler.getBids(3));
+        }
+        tradingManager.getAccounts().forEach((_, account) -> account.updateState(new TradingBotState(marketState)));
     }
 
     public void logAll() {
@@ -192,6 +232,8 @@ public class TradingBot {
             if (instance.marketDataWebSocket != null)
                 instance.marketDataWebSocket.logAll();
             instance.taskManager.logAll();
+            ReconciliationScheduler.getInstance().logAll();
+            Metrics.getInstance().logAll();
             if (instance.tradingManager != null)
                 instance.tradingManager.logAll();
             if (instance.publicAPIService != null) {
@@ -1,13 +1,19 @@
 package org.tradebot.service;
 
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.MarketEntry;
 import org.tradebot.domain.TradingAccountSettings;
 import org.tradebot.domain.TradingAccount;
+import org.tradebot.listener.ImbalanceStateCallback;
+import org.tradebot.util.FanOutSpread;
 import org.tradebot.util.Log;
+import org.tradebot.util.Metrics;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class TradingManager {
+public class TradingManager implements ImbalanceStateCallback {
 
     private final Log log = new Log();
     private final Map<Integer, TradingAccount> accounts = new ConcurrentHashMap<>();
@@ -44,6 +50,17 @@ public class TradingManager {
         }
     }
 
+    @Override
+    public void notifyImbalanceStateUpdate(long time, MarketEntry currentEntry, ImbalanceService.State state, Imbalance imbalance) {
+        List<TradingAccount> readyAccounts = accounts.values().stream()
+                .filter(TradingAccount::isReady)
+                .toList();
+        FanOutSpread spread = new FanOutSpread(Metrics.ORDER_SENT_SPREAD, readyAccounts.size());
+        for (TradingAccount account : readyAccounts) {
+            account.notifyImbalanceStateUpdate(time, currentEntry, state, imbalance, spread);
+        }
+    }
+
     public TradingAccount get(int clientNumber) {
         return accounts.get(clientNumber);
     }
@@ -1,24 +1,40 @@
 package org.tradebot.service;
 
-import org.tradebot.binance.PublicAPIService;
 import org.tradebot.domain.MarketEntry;
+import org.tradebot.journal.KlineStore;
+import org.tradebot.listener.MarketDataCallback;
 import org.tradebot.listener.VolatilityCallback;
 import org.tradebot.util.Log;
+import org.tradebot.util.RollingWindow;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import static org.tradebot.util.Settings.*;
 
-public class VolatilityService {
+/**
+ * Volatility is the mean of (high - low) / average of the 15 minutes buckets, average price is the mean of bucket averages.
+ * Both are updated from the live bars: the current bucket is tracked by its high and low, a closed bucket is added
+ * to the rolling windows. Windows are seeded once at startup from the local {@link KlineStore}. Callback is notified not more often
+ * than {@link org.tradebot.util.Settings#VOLATILITY_NOTIFY_PERIOD} with values including the current bucket.
+ */
+public class VolatilityService implements MarketDataCallback {
+
+    private static final int BUCKETS_PER_DAY = (int) (TimeUnit.DAYS.toMillis(1) / VOLATILITY_BUCKET_SIZE);
 
     private final Log log = new Log();
 
-    private final PublicAPIService publicAPIService;
     private VolatilityCallback callback;
 
+    private final RollingWindow volatilityWindow = new RollingWindow(VOLATILITY_CALCULATE_PAST_TIME_DAYS * BUCKETS_PER_DAY);
+    private final RollingWindow averageWindow = new RollingWindow(AVERAGE_PRICE_CALCULATE_PAST_TIME_DAYS * BUCKETS_PER_DAY);
+    private long bucketStart = -1;
+    private double bucketHigh, bucketLow;
+    private int liveBuckets = 0;
+    private long lastNotifyTime = 0;
+    private double volatility = Double.NaN, average = Double.NaN;
+
     private static VolatilityService instance;
 
     public static VolatilityService getInstance() {
@@ -29,65 +45,92 @@ public class VolatilityService {
     }
 
     private VolatilityService() {
-        this.publicAPIService = PublicAPIService.getInstance();
-        TaskManager.getInstance().scheduleAtFixedRate(VOLATILITY_UPDATE_TASK_KEY,
-                this::updateVolatility, 0, UPDATE_TIME_PERIOD_HOURS, TimeUnit.HOURS);
+        TaskManager.getInstance().schedule(VOLATILITY_UPDATE_TASK_KEY, this::seed, 0, TimeUnit.MILLISECONDS);
 
         log.info("VolatilityService started successfully.");
     }
 
-    private void updateVolatility() {
-        log.info("Updating volatility and average price...");
-        double volatility = calculateVolatility();
-        double average = calculateAverage();
-        log.info(String.format("Volatility: %.2f, Average price: %.2f", volatility, average));
+    /**
+     * Fills the windows with the stored closed klines which are older than the live data.
+     */
+    private void seed() {
+        long now = System.currentTimeMillis();
+        long fromTime = now - TimeUnit.DAYS.toMillis(Math.max(VOLATILITY_CALCULATE_PAST_TIME_DAYS, AVERAGE_PRICE_CALCULATE_PAST_TIME_DAYS));
+        TreeMap<Long, MarketEntry> marketData;
+        try {
+            marketData = KlineStore.getInstance(VOLATILITY_KLINE_INTERVAL, VOLATILITY_BUCKET_SIZE, VOLATILITY_KLINE_STORE_CAPACITY)
+                    .sync()
+                    .load(fromTime);
+        } catch (Exception e) {
+            log.warn("Failed to seed volatility, values will be calculated from live data only", e);
+            return;
+        }
 
-        if (callback != null) {
-            log.info("Notifying callback with updated values.");
-            callback.notifyVolatilityUpdate(volatility, average);
+        synchronized (this) {
+            if (liveBuckets > 0) {
+                log.warn("Live buckets already closed, seeding skipped.");
+                return;
+            }
+            for (Map.Entry<Long, MarketEntry> kline : marketData.entrySet()) {
+                if (bucketStart == -1 || kline.getKey() < bucketStart) {
+                    addBucket(kline.getValue().high(), kline.getValue().low());
+                }
+            }
+            log.info(String.format("Volatility seeded from %d klines: %s, average: %s", marketData.size(), volatilityWindow, averageWindow));
+            if (volatilityWindow.size() > 0) {
+                updateVolatility();
+            }
         }
     }
 
-    private double calculateVolatility() {
-        log.debug("Calculating volatility...");
-        TreeMap<Long, MarketEntry> marketData = fetchMarketData("15m", VOLATILITY_CALCULATE_PAST_TIME_DAYS);
-
-        if (marketData.size() < 2) {
-            throw log.throwError("Insufficient market data for volatility calculation.");
+    @Override
+    public synchronized void notifyNewMarketEntry(long timestamp, MarketEntry marketEntry) {
+        long start = timestamp - timestamp % VOLATILITY_BUCKET_SIZE;
+        if (bucketStart == -1) {
+            bucketStart = start;
+            bucketHigh = marketEntry.high();
+            bucketLow = marketEntry.low();
+        } else if (start > bucketStart) {
+            addBucket(bucketHigh, bucketLow);
+            liveBuckets++;
+            bucketStart = start;
+            bucketHigh = marketEntry.high();
+            bucketLow = marketEntry.low();
+        } else {
+            bucketHigh = Math.max(bucketHigh, marketEntry.high());
+            bucketLow = Math.min(bucketLow, marketEntry.low());
         }
 
-        List<Double> changes = new ArrayList<>();
-        for (MarketEntry marketDatum : marketData.values()) {
-            double priceDiff = marketDatum.high() - marketDatum.low();
-            double priceAverage = marketDatum.average();
-            changes.add(priceDiff / priceAverage);
+        if (timestamp - lastNotifyTime >= VOLATILITY_NOTIFY_PERIOD && volatilityWindow.size() > 0) {
+            lastNotifyTime = timestamp;
+            updateVolatility();
         }
-
-        double volatility = changes.stream().reduce(0., Double::sum) / changes.size();
-        log.debug(String.format("Calculated volatility: %.2f", volatility));
-        return volatility;
     }
 
-    private double calculateAverage() {
-        log.debug("Calculating average price...");
-        TreeMap<Long, MarketEntry> marketData = fetchMarketData("15m", AVERAGE_PRICE_CALCULATE_PAST_TIME_DAYS);
+    private void addBucket(double high, double low) {
+        MarketEntry bucket = new MarketEntry(high, low, 0);
+        volatilityWindow.add(bucket.size() / bucket.average());
+        averageWindow.add(bucket.average());
+    }
 
-        if (marketData.size() < 2) {
-            throw log.throwError("Insufficient market data for average price calculation.");
+    private void updateVolatility() {
+        double bucketAverage = (bucketHigh + bucketLow) / 2.;
+        double bucketVolatility = (bucketHigh - bucketLow) / bucketAverage;
+        if (bucketStart == -1) {
+            volatility = VOLATILITY_USE_EWMA ? volatilityWindow.ewma() : volatilityWindow.mean();
+            average = VOLATILITY_USE_EWMA ? averageWindow.ewma() : averageWindow.mean();
+        } else if (VOLATILITY_USE_EWMA) {
+            volatility = volatilityWindow.ewmaWith(bucketVolatility);
+            average = averageWindow.ewmaWith(bucketAverage);
+        } else {
+            volatility = volatilityWindow.meanWith(bucketVolatility);
+            average = averageWindow.meanWith(bucketAverage);
         }
+        log.debugf("Volatility: %.5f, Average price: %.2f", volatility, average);
 
-        double sum = marketData.values().stream().mapToDouble(MarketEntry::average).sum();
-        double average = sum / marketData.size();
-        log.debug(String.format("Calculated average price: %.2f", average));
-        return average;
-    }
-
-    private TreeMap<Long, MarketEntry> fetchMarketData(String interval, int days) {
-        int requiredEntries = days * 24 * 60 / 15;
-        log.debug(String.format("Fetching market data for symbol: %s, interval: %s, required entries: %d", SYMBOL, interval, requiredEntries));
-        TreeMap<Long, MarketEntry> marketData = publicAPIService.getMarketDataPublicAPI(SYMBOL, interval, requiredEntries).getResponse();
-        log.debug(String.format("Fetched %d market entries.", marketData.size()));
-        return marketData;
+        if (callback != null) {
+            callback.notifyVolatilityUpdate(volatility, average);
+        }
     }
 
     public void setCallback(VolatilityCallback callback) {
@@ -101,7 +144,12 @@ public class VolatilityService {
                     VolatilityService state:
                         Symbol: %s
                         Callback: %s
-                    """, SYMBOL, callback));
+                        Volatility: %.5f
+                        Average: %.2f
+                        Volatility window: %s
+                        Average window: %s
+                        Live buckets: %d
+                    """, SYMBOL, callback, volatility, average, volatilityWindow, averageWindow, liveBuckets));
         } catch (Exception e) {
             log.warn("Failed to write", e);
         }
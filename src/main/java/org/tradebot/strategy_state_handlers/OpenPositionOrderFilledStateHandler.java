@@ -21,7 +21,7 @@ public class OpenPositionOrderFilledStateHandler implements StateHandler {
 
     @Override
     public void handle(@Nullable Position position, List<Order> openedOrders) {
-        orderManager.notifyPositionUpdate(position);
+        orderManager.updatePosition(position);
         if (position == null) {
             log.warn("Position is empty, but local state is POSITION_OPENED.");
             log.debug(String.format("Local orders: %s", orderManager.getOrders()));
@@ -28,7 +28,7 @@ public class OpenPositionOrderPlacedStateHandler implements StateHandler {
 
     @Override
     public void handle(@Nullable Position position, List<Order> openedOrders) {
-        orderManager.notifyPositionUpdate(position);
+        orderManager.updatePosition(position);
         if (position == null) {
             handleEmptyPosition();
         } else {
@@ -28,7 +28,7 @@ public class StopOrdersCreatedStateHandler implements StateHandler {
 
     @Override
     public void handle(@Nullable Position position, List<Order> openedOrders) {
-        orderManager.notifyPositionUpdate(position);
+        orderManager.updatePosition(position);
         if (position == null) {
             log.info("Position is closed. Resetting state to initial.");
             orderManager.closePositionAndResetState();
@@ -0,0 +1,138 @@
+package org.tradebot.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Delivers the latest value of a source to subscribers on its own thread. The producer only calls {@link #signal()},
+ * each subscriber gets at most the declared number of updates per second and always the latest value,
+ * intermediate updates are skipped. Slow subscribers never block the producer.
+ * Nothing is delivered before {@link #start()} and after {@link #shutdown()}.
+ */
+public class ConflatingPublisher<L, T> {
+
+    private final Log log = new Log();
+    private final String name;
+    private final Supplier<T> source;
+    private final BiConsumer<L, T> delivery;
+    private final List<Subscriber<L>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile Thread thread;
+
+    private volatile long version = 0;
+    private volatile boolean running = true;
+
+    public ConflatingPublisher(String name, Supplier<T> source, BiConsumer<L, T> delivery) {
+        this.name = name;
+        this.source = source;
+        this.delivery = delivery;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        Thread publisherThread = new Thread(this::run, name);
+        publisherThread.setDaemon(true);
+        thread = publisherThread;
+        publisherThread.start();
+    }
+
+    /**
+     * Subscribes listener, zero or negative rate means every update is delivered as soon as possible.
+     */
+    public void subscribe(L listener, double maxUpdatesPerSecond) {
+        long minInterval = maxUpdatesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxUpdatesPerSecond) : 0;
+        subscribers.add(new Subscriber<>(listener, minInterval));
+        wakeUp();
+    }
+
+    public void unsubscribe(L listener) {
+        subscribers.removeIf(subscriber -> subscriber.listener == listener);
+    }
+
+    /**
+     * Called by the single producer thread when the source has a new value.
+     */
+    public void signal() {
+        version++;
+        wakeUp();
+    }
+
+    public void shutdown() {
+        running = false;
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        Thread publisherThread = thread;
+        if (publisherThread != null) {
+            LockSupport.unpark(publisherThread);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long currentVersion = version;
+            long now = System.nanoTime();
+            long nextDue = Long.MAX_VALUE;
+            T value = null;
+
+            for (Subscriber<L> subscriber : subscribers) {
+                if (subscriber.seenVersion == currentVersion) {
+                    continue;
+                }
+                long due = subscriber.lastDelivery + subscriber.minInterval;
+                if (now - due >= 0) {
+                    if (value == null) {
+                        value = source.get();
+                    }
+                    subscriber.seenVersion = currentVersion;
+                    subscriber.lastDelivery = now;
+                    subscriber.delivered++;
+                    try {
+                        delivery.accept(subscriber.listener, value);
+                    } catch (Exception e) {
+                        log.warn(String.format("%s failed to deliver update to %s", name, subscriber.listener), e);
+                    }
+                } else {
+                    nextDue = Math.min(nextDue, due);
+                }
+            }
+
+            if (nextDue == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, nextDue - now);
+            }
+        }
+    }
+
+    private static class Subscriber<L> {
+        private final L listener;
+        private final long minInterval;
+        private long seenVersion = 0;
+        private long lastDelivery;
+        private long delivered = 0;
+
+        private Subscriber(L listener, long minInterval) {
+            this.listener = listener;
+            this.minInterval = minInterval;
+            this.lastDelivery = System.nanoTime() - minInterval;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{ %s, min interval :: %d ms, delivered :: %d }",
+                    listener.getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(minInterval), delivered);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s { version :: %d, subscribers :: %s }", name, version, subscribers);
+    }
+}
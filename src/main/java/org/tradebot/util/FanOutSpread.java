@@ -0,0 +1,40 @@
+package org.tradebot.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spread between the first and the last open order sent for one signal across the accounts. Every account reports
+ * once when it has handled the signal, the spread is recorded to {@link Metrics} after the last report
+ * if at least two accounts sent an order.
+ */
+public class FanOutSpread {
+
+    private final String metric;
+    private final AtomicInteger pending;
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong last = new AtomicLong(Long.MIN_VALUE);
+
+    public FanOutSpread(String metric, int accounts) {
+        this.metric = metric;
+        this.pending = new AtomicInteger(accounts);
+    }
+
+    public void sent(long nanos) {
+        first.accumulateAndGet(nanos, Math::min);
+        last.accumulateAndGet(nanos, Math::max);
+        sent.incrementAndGet();
+        complete();
+    }
+
+    public void skipped() {
+        complete();
+    }
+
+    private void complete() {
+        if (pending.decrementAndGet() == 0 && sent.get() > 1) {
+            Metrics.getInstance().record(metric, last.get() - first.get());
+        }
+    }
+}
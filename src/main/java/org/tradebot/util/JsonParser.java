@@ -1,6 +1,5 @@
 package org.tradebot.util;
 
-import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.tradebot.domain.*;
@@ -45,7 +44,9 @@ public class JsonParser {
         order.setType(Order.Type.valueOf(orderJson.getString("type")));
         order.setNewClientOrderId(orderJson.getString("clientOrderId"));
         order.setStatus(Order.Status.valueOf(orderJson.getString("status")));
-        order.setId(orderJson.getLong("orderId"));
+        if (orderJson.has("orderId")) {
+            order.setId(orderJson.getLong("orderId"));
+        }
         if (orderJson.has("time")) {
             order.setCreateTime(orderJson.getLong("time"));
         } else if (orderJson.has("updateTime")) {
@@ -73,6 +74,37 @@ public class JsonParser {
         return order;
     }
 
+    /**
+     * Order in the same format as the API response, so it can be read back with {@link #parseOrder(JSONObject)}.
+     */
+    public static JSONObject orderToJson(Order order) {
+        JSONObject orderJson = new JSONObject()
+                .put("symbol", order.getSymbol())
+                .put("side", order.getSide().toString())
+                .put("type", order.getType().toString())
+                .put("clientOrderId", order.getNewClientOrderId())
+                .put("status", order.getStatus() == null ? Order.Status.NEW.toString() : order.getStatus().toString());
+        if (order.getQuantity() != null) {
+            orderJson.put("origQty", order.getQuantity().toPlainString());
+        }
+        if (order.getPrice() != null) {
+            orderJson.put("price", order.getPrice().toPlainString());
+        }
+        if (order.getStopPrice() != null) {
+            orderJson.put("stopPrice", order.getStopPrice().toPlainString());
+        }
+        if (order.isReduceOnly() != null) {
+            orderJson.put("reduceOnly", order.isReduceOnly());
+        }
+        if (order.isClosePosition() != null) {
+            orderJson.put("closePosition", order.isClosePosition());
+        }
+        if (order.getTimeInForce() != null) {
+            orderJson.put("timeInForce", order.getTimeInForce().toString());
+        }
+        return orderJson;
+    }
+
     public static Position parsePosition(String value) {
         JSONArray jsonArray = new JSONArray(value);
         if (jsonArray.isEmpty()) {
@@ -131,22 +163,6 @@ public class JsonParser {
         return result;
     }
 
-    public static @Nullable Position parsePosition(JSONObject positionUpdate) {
-        Position position = new Position();
-        double entryPrice = Double.parseDouble(positionUpdate.getString("ep"));
-        if (entryPrice == 0)
-            return null;
-        double positionAmount = Double.parseDouble(positionUpdate.getString("pa"));
-        if (positionAmount == 0)
-            return null;
-
-        position.setSymbol(positionUpdate.getString("s"));
-        position.setEntryPrice(entryPrice);
-        position.setPositionAmt(positionAmount);
-        position.setBreakEvenPrice(Double.parseDouble(positionUpdate.getString("bep")));
-        return position;
-    }
-
     public static Integer parseLeverage(String value) {
         JSONArray jsonArray = new JSONArray(value);
         if (jsonArray.isEmpty()) {
@@ -0,0 +1,128 @@
+package org.tradebot.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Buckets are powers of two split into
+ * {@code SUB_BUCKETS} linear parts, so the relative error of a percentile is below 1 / SUB_BUCKETS.
+ * Values above ~9 minutes fall into the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT + 1) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts.incrementAndGet(index(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Moves the recorded values into a new histogram and leaves this one empty. Values recorded
+     * concurrently go either to the snapshot or to the next interval.
+     */
+    public LatencyHistogram snapshotAndReset() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i = 0; i < counts.length(); i++) {
+            long bucket = counts.getAndSet(i, 0);
+            if (bucket != 0) {
+                snapshot.counts.set(i, bucket);
+            }
+        }
+        snapshot.count.set(count.getAndSet(0));
+        snapshot.total.set(total.getAndSet(0));
+        snapshot.max.set(max.getAndSet(0));
+        return snapshot;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile (0..100), 0 if nothing is recorded.
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Summary in milliseconds for the state output.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", getCount());
+        result.put("meanMs", toMillis(getMean()));
+        result.put("p50Ms", toMillis(getPercentile(50)));
+        result.put("p99Ms", toMillis(getPercentile(99)));
+        result.put("maxMs", toMillis(getMax()));
+        return result;
+    }
+
+    private static int index(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS + 1;
+        if (exponent > MAX_EXPONENT) {
+            return (MAX_EXPONENT + 1) * SUB_BUCKETS - 1;
+        }
+        int subBucket = (int) (nanos >>> (exponent - 1)) - SUB_BUCKETS;
+        return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        int exponent = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (exponent == 0) {
+            return subBucket;
+        }
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 1)) - 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 1000) / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ count :: %d, mean :: %.3f ms, p50 :: %.3f ms, p99 :: %.3f ms, max :: %.3f ms }",
+                getCount(), toMillis(getMean()), toMillis(getPercentile(50)), toMillis(getPercentile(99)), toMillis(getMax()));
+    }
+}
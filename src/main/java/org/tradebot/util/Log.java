@@ -4,17 +4,25 @@ import org.jetbrains.annotations.NotNull;
 import org.json.JSONObject;
 import org.tradebot.domain.APIError;
 import org.tradebot.domain.Position;
-import org.tradebot.domain.TradingBotState;
+import org.tradebot.jfr.FlightRecording;
 import org.tradebot.service.TradingBot;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.File;
+import java.io.FileReader;
 import java.io.RandomAccessFile;
+import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.Objects;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.tradebot.util.JsonParser.parseAPIError;
 import static org.tradebot.util.JsonParser.parseException;
@@ -36,14 +44,53 @@ public class Log {
         ensureLogDirectoryExists(LOGS_DIR_PATH + "info/");
     }
 
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private static final Map<String, Level> levels = new ConcurrentHashMap<>();
+    private static final AtomicInteger levelsVersion = new AtomicInteger();
+    //levels from the system properties, restored when a path is removed from the levels file
+    private static final Map<String, Level> propertyLevels = new HashMap<>();
+    private static final Set<String> fileLoggerPaths = new HashSet<>();
+    private static long levelsFileLastModified = 0;
+
+    static {
+        propertyLevels.put(ROOT_LOGGER, parseLevel(LOG_LEVEL_PROPERTY, System.getProperty(LOG_LEVEL_PROPERTY), DEFAULT_LOG_LEVEL));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(property -> property.startsWith(LOG_LEVEL_PROPERTY + "."))
+                .forEach(property -> {
+                    Level level = parseLevel(property, System.getProperty(property), null);
+                    if (level != null) {
+                        propertyLevels.put(property.substring(LOG_LEVEL_PROPERTY.length() + 1), level);
+                    }
+                });
+        levels.putAll(propertyLevels);
+    }
+
+    /**
+     * Level of the logger path with the version of the levels it was resolved for, published as one reference.
+     */
+    private record CachedLevel(int version, Level level) {  }
+
     private String path = null;
     private Integer clientNumber = null;
+    private final String name;
+    private final String directory;
+    private final String infoDirectory;
+
+    private CachedLevel cachedLevel = new CachedLevel(-1, DEBUG);
 
-    public Log() {  }
+    public Log() {
+        this.name = ROOT_LOGGER;
+        this.directory = LOGS_DIR_PATH + "debug/";
+        this.infoDirectory = LOGS_DIR_PATH + "info/";
+    }
 
     public Log(String path) {
         ensureLogDirectoryExists(LOGS_DIR_PATH + path);
         this.path = path;
+        this.name = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        this.directory = LOGS_DIR_PATH + path;
+        this.infoDirectory = LOGS_DIR_PATH + "info/";
     }
 
     public Log(int clientNumber) {
@@ -51,6 +98,103 @@ public class Log {
         ensureLogDirectoryExists(LOGS_DIR_PATH + "info/" + clientNumber);
         ensureLogDirectoryExists(STATE_FILE_PATH + clientNumber);
         this.clientNumber = clientNumber;
+        this.name = "account/" + clientNumber;
+        this.directory = LOGS_DIR_PATH + "debug/" + clientNumber + "/";
+        this.infoDirectory = LOGS_DIR_PATH + "info/" + clientNumber + "/";
+    }
+
+    /**
+     * Sets level for the logger path (e.g. "market_data", "order_book", "account/1", "account")
+     * or for all loggers when the path is "root". The most specific configured path wins.
+     */
+    public static void setLevel(String loggerPath, Level level) {
+        if (level == null) {
+            levels.remove(loggerPath);
+        } else {
+            levels.put(loggerPath, level);
+        }
+        levelsVersion.incrementAndGet();
+    }
+
+    public static Level getLevel(String loggerPath) {
+        String current = loggerPath;
+        while (true) {
+            Level level = levels.get(current);
+            if (level != null) {
+                return level;
+            }
+            int separator = current.lastIndexOf('/');
+            if (separator < 0) {
+                return levels.get(ROOT_LOGGER);
+            }
+            current = current.substring(0, separator);
+        }
+    }
+
+    /**
+     * Reloads levels from {@link Settings#LOG_LEVELS_FILE_PATH} if the file was changed since the last call.
+     * Every line of the file is {@code <logger path>=<level>}, a path removed from the file falls back
+     * to its system property level or to the parent path.
+     */
+    public static synchronized void reloadLevels() {
+        File file = new File(LOG_LEVELS_FILE_PATH);
+        if (!file.exists() || file.lastModified() == levelsFileLastModified) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (FileReader reader = new FileReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            System.err.println("Failed to read log levels: " + e.getMessage());
+            return;
+        }
+        levelsFileLastModified = file.lastModified();
+        Set<String> loggerPaths = properties.stringPropertyNames();
+        for (String removed : fileLoggerPaths) {
+            if (!loggerPaths.contains(removed)) {
+                Level propertyLevel = propertyLevels.get(removed);
+                if (propertyLevel == null) {
+                    levels.remove(removed);
+                } else {
+                    levels.put(removed, propertyLevel);
+                }
+            }
+        }
+        fileLoggerPaths.clear();
+        fileLoggerPaths.addAll(loggerPaths);
+        loggerPaths.forEach(loggerPath -> {
+            Level level = parseLevel(loggerPath, properties.getProperty(loggerPath), null);
+            if (level != null) {
+                levels.put(loggerPath, level);
+            }
+        });
+        levelsVersion.incrementAndGet();
+    }
+
+    private static Level parseLevel(String source, String value, Level fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid log level for " + source + ": " + value + (fallback == null ? ", ignored" : ", using " + fallback));
+            return fallback;
+        }
+    }
+
+    public boolean isEnabled(Level level) {
+        CachedLevel cached = cachedLevel;
+        int version = levelsVersion.get();
+        if (cached.version() != version) {
+            cached = new CachedLevel(version, getLevel(name));
+            cachedLevel = cached;
+        }
+        return level.ordinal() >= cached.level().ordinal();
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(DEBUG);
     }
 
     public void debug(String message) {
@@ -61,6 +205,30 @@ public class Log {
         log(message, DEBUG, mills);
     }
 
+    public void debug(Supplier<String> message) {
+        if (isEnabled(DEBUG)) {
+            log(message.get(), DEBUG);
+        }
+    }
+
+    public void debugf(String format, Object arg) {
+        if (isEnabled(DEBUG)) {
+            log(String.format(format, arg), DEBUG);
+        }
+    }
+
+    public void debugf(String format, Object arg1, Object arg2) {
+        if (isEnabled(DEBUG)) {
+            log(String.format(format, arg1, arg2), DEBUG);
+        }
+    }
+
+    public void debugf(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(DEBUG)) {
+            log(String.format(format, arg1, arg2, arg3), DEBUG);
+        }
+    }
+
     public void info(String message) {
         log(message, INFO);
     }
@@ -69,6 +237,24 @@ public class Log {
         log(message, INFO, mills);
     }
 
+    public void info(Supplier<String> message) {
+        if (isEnabled(INFO)) {
+            log(message.get(), INFO);
+        }
+    }
+
+    public void infof(String format, Object arg) {
+        if (isEnabled(INFO)) {
+            log(String.format(format, arg), INFO);
+        }
+    }
+
+    public void infof(String format, Object arg1, Object arg2) {
+        if (isEnabled(INFO)) {
+            log(String.format(format, arg1, arg2), INFO);
+        }
+    }
+
     public void warn(String message) {
         log(message, WARN);
     }
@@ -105,7 +291,8 @@ public class Log {
     }
 
     public void removeLines(int count) {
-        String dateSuffix = "_" + DATE_FORMAT.format(new Date()) + ".log";
+        flush();
+        String dateSuffix = "_" + LocalDate.now().format(DATE_FORMATTER) + ".log";
         try (RandomAccessFile file = new RandomAccessFile(LOGS_DIR_PATH + path + dateSuffix, "rw")) {
             long length = file.length();
             int linesCount = 0;
@@ -128,49 +315,36 @@ public class Log {
     }
 
     private void log(String message, Level level, long mills) {
-        String classAndMethodName = getClassAndMethod();
-        String logEntry = "[" + TimeFormatter.now() + "] " + level + ((level == INFO || level == WARN) ? "  " : " ") + classAndMethodName + message;
-
-        if (mills != -1) {
-            logEntry += " on " + TimeFormatter.format(mills) + " (" + mills + ")";
+        if (!isEnabled(level)) {
+            return;
         }
+        LogWriter.getInstance().write(System.currentTimeMillis(), level, getClassAndMethod(), message, mills,
+                directory, level != DEBUG ? infoDirectory : null);
 
-        writeLogFile(logEntry, Objects.requireNonNullElse(path, "debug/"));
-
-        if (level != DEBUG) {
-            writeLogFile(logEntry, "info/");
-        }
         if (level == ERROR) {
             TradingBot.getInstance().logAll();
+            FlightRecording.getInstance().dumpOnError();
         }
     }
 
-    private void writeLogFile(String logEntry, String filePath) {
-        String finalPath = LOGS_DIR_PATH + filePath;
-        if (clientNumber != null) {
-            finalPath += clientNumber + "/";
-        }
-        finalPath += DATE_FORMAT.format(new Date()) + ".log";
+    public static void flush() {
+        LogWriter.getInstance().flush();
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(finalPath, true))) {
-            writer.write(logEntry);
-            writer.newLine();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public static void shutdown() {
+        LogWriter.getInstance().shutdown();
     }
 
-    private String getClassAndMethod() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        int i = 1;
-        String fullClassName = stackTrace[i].getClassName();
-        while (fullClassName.equals(Log.class.getName())) {
-            i++;
-            fullClassName = stackTrace[i].getClassName();
-        }
-        String methodName = stackTrace[i].getMethodName();
-        String simpleClassName = fullClassName.substring(fullClassName.lastIndexOf('.') + 1);
-        return simpleClassName + "." + methodName + " :::: ";
+    private static String getClassAndMethod() {
+        return STACK_WALKER.walk(frames -> frames
+                .dropWhile(frame -> frame.getClassName().equals(Log.class.getName()))
+                .findFirst()
+                .map(frame -> {
+                    String fullClassName = frame.getClassName();
+                    String simpleClassName = fullClassName.substring(fullClassName.lastIndexOf('.') + 1);
+                    return simpleClassName + "." + frame.getMethodName() + " :::: ";
+                })
+                .orElse(""));
     }
 
     private static void ensureLogDirectoryExists() {
@@ -187,14 +361,6 @@ public class Log {
         }
     }
 
-    public void updateState(TradingBotState state) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(STATE_FILE_PATH + clientNumber + "/state.json", false))) {
-            writer.write(state.toString());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     public void writeHttpError(APIError apiError) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(STATE_FILE_PATH + clientNumber + "/api_error.json", false))) {
             writer.write(parseAPIError(apiError));
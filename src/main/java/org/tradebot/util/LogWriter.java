@@ -0,0 +1,285 @@
+package org.tradebot.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Asynchronous log backend. Callers claim a pre-allocated slot of the ring and publish it without locks,
+ * the single background thread formats entries, writes them in batches to the files it keeps open
+ * and rolls the files over when the date changes. Once the writer thread is gone (after {@link #shutdown()})
+ * entries are written synchronously by the caller, so logging never blocks on a full ring without a consumer.
+ */
+public class LogWriter {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static LogWriter instance;
+
+    public static synchronized LogWriter getInstance() {
+        if (instance == null) {
+            instance = new LogWriter(LOG_RING_SIZE);
+        }
+        return instance;
+    }
+
+    private final Entry[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(0);
+    private volatile long consumed = 0;
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final Map<String, BufferedWriter> writers = new HashMap<>();
+    private final StringBuilder line = new StringBuilder(256);
+    private LocalDate currentDate = LocalDate.now();
+
+    private LogWriter(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Log ring size must be a power of two: " + size);
+        }
+        this.ring = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Entry();
+        }
+        this.mask = size - 1;
+
+        this.writerThread = new Thread(this::run, "log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void write(long timestamp, Log.Level level, String caller, String message, long mills,
+                      String directory, String mirrorDirectory) {
+        if (!writerThread.isAlive()) {
+            writeDirectly(timestamp, level, caller, message, mills, directory, mirrorDirectory);
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= ring.length) {
+            if (!writerThread.isAlive()) {
+                // the claimed slot is never consumed, nothing reads the ring any more
+                writeDirectly(timestamp, level, caller, message, mills, directory, mirrorDirectory);
+                return;
+            }
+            LockSupport.unpark(writerThread);
+            Thread.onSpinWait();
+        }
+
+        Entry entry = ring[(int) (sequence & mask)];
+        entry.fill(timestamp, level, caller, message, mills, directory, mirrorDirectory);
+        entry.publish(sequence);
+    }
+
+    /**
+     * Number of entries that could not be written.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of entries waiting to be written.
+     */
+    public long backlog() {
+        return claimed.get() - consumed;
+    }
+
+    /**
+     * Waits until all entries claimed before the call are written to the files.
+     */
+    public void flush() {
+        long target = claimed.get();
+        while (consumed < target && writerThread.isAlive()) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    public void shutdown() {
+        flush();
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running || consumed < claimed.get()) {
+            int written;
+            try {
+                written = drain();
+            } catch (Throwable t) {
+                System.err.println("Log writer failure: " + t);
+                written = 0;
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        synchronized (this) {
+            closeWriters();
+        }
+    }
+
+    /**
+     * Writes on the caller thread, only used when the writer thread has stopped.
+     */
+    private synchronized void writeDirectly(long timestamp, Log.Level level, String caller, String message, long mills,
+                                            String directory, String mirrorDirectory) {
+        Entry entry = new Entry();
+        entry.fill(timestamp, level, caller, message, mills, directory, mirrorDirectory);
+        try {
+            rollDate();
+            writeEntry(entry);
+            flushWriters();
+        } catch (Throwable t) {
+            dropped.incrementAndGet();
+            System.err.println("Failed to write log entry: " + t);
+        }
+    }
+
+    private int drain() {
+        long sequence = consumed;
+        int count = 0;
+        rollDate();
+
+        Entry entry = ring[(int) (sequence & mask)];
+        while (entry.isPublished(sequence)) {
+            try {
+                writeEntry(entry);
+            } catch (Throwable t) {
+                // one bad entry must not stop the writer, producers would wait on a full ring forever
+                dropped.incrementAndGet();
+                System.err.println("Failed to write log entry: " + t);
+            }
+            entry.clear();
+            sequence++;
+            count++;
+            consumed = sequence;
+            entry = ring[(int) (sequence & mask)];
+        }
+
+        if (count > 0) {
+            flushWriters();
+        }
+        return count;
+    }
+
+    private void rollDate() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(currentDate)) {
+            closeWriters();
+            currentDate = today;
+        }
+    }
+
+    private void writeEntry(Entry entry) {
+        line.setLength(0);
+        line.append('[').append(TimeFormatter.format(entry.timestamp)).append("] ")
+                .append(entry.level)
+                .append((entry.level == Log.Level.INFO || entry.level == Log.Level.WARN) ? "  " : " ")
+                .append(entry.caller)
+                .append(entry.message);
+        if (entry.mills != -1) {
+            line.append(" on ").append(TimeFormatter.format(entry.mills)).append(" (").append(entry.mills).append(')');
+        }
+        line.append(System.lineSeparator());
+
+        append(entry.directory);
+        if (entry.mirrorDirectory != null) {
+            append(entry.mirrorDirectory);
+        }
+    }
+
+    private void append(String directory) {
+        try {
+            BufferedWriter writer = writers.get(directory);
+            if (writer == null) {
+                Path file = Path.of(directory + currentDate.format(DATE_FORMATTER) + ".log");
+                writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND), WRITE_BUFFER_SIZE);
+                writers.put(directory, writer);
+            }
+            writer.append(line);
+        } catch (IOException e) {
+            System.err.println("Failed to write log entry to " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void flushWriters() {
+        writers.forEach((directory, writer) -> {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Failed to flush log file in " + directory + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void closeWriters() {
+        writers.forEach((directory, writer) -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close log file in " + directory + ": " + e.getMessage());
+            }
+        });
+        writers.clear();
+    }
+
+    private static class Entry {
+        private volatile long sequence = -1;
+
+        private long timestamp;
+        private Log.Level level;
+        private String caller;
+        private String message;
+        private long mills;
+        private String directory;
+        private String mirrorDirectory;
+
+        private void fill(long timestamp, Log.Level level, String caller, String message, long mills,
+                          String directory, String mirrorDirectory) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.caller = caller;
+            this.message = message;
+            this.mills = mills;
+            this.directory = directory;
+            this.mirrorDirectory = mirrorDirectory;
+        }
+
+        private void publish(long sequence) {
+            this.sequence = sequence;
+        }
+
+        private boolean isPublished(long sequence) {
+            return this.sequence == sequence;
+        }
+
+        private void clear() {
+            caller = null;
+            message = null;
+            directory = null;
+            mirrorDirectory = null;
+        }
+    }
+}
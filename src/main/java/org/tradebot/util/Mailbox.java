@@ -0,0 +1,96 @@
+package org.tradebot.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-consumer queue of tasks executed one by one on its own thread, so the tasks of one owner never run
+ * concurrently and need no locks. Tasks run in the order they are added, a task submitted from the mailbox thread
+ * itself is queued as well, so the mailbox thread must not wait for its future.
+ * Start lag is the time between adding a task and starting it.
+ */
+public class Mailbox {
+
+    private final Log log;
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor executor;
+    private volatile Thread thread;
+    private volatile long lastLag = 0;
+    private volatile long maxLag = 0;
+
+    public Mailbox(String name, Log log) {
+        this(name, log, false);
+    }
+
+    /**
+     * @param virtual drain the mailbox on a virtual thread instead of a platform one
+     */
+    public Mailbox(String name, Log log, boolean virtual) {
+        this.log = log;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread;
+            if (virtual) {
+                thread = Thread.ofVirtual().name(name).unstarted(runnable);
+            } else {
+                thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+            }
+            this.thread = thread;
+            return thread;
+        });
+    }
+
+    /**
+     * Adds the task to the mailbox. The future completes when the task is executed.
+     */
+    public CompletableFuture<Void> execute(Runnable task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long enqueued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long lag = System.nanoTime() - enqueued;
+                lastLag = lag;
+                if (lag > maxLag) {
+                    maxLag = lag;
+                }
+                run(task, future);
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Mailbox is stopped, task is dropped");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public boolean isMailboxThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(Runnable task, CompletableFuture<Void> future) {
+        try {
+            task.run();
+            future.complete(null);
+        } catch (Exception e) {
+            log.error("Mailbox task failed", e);
+            future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ pending :: %d, completed :: %d, start lag :: %.3f ms (max %.3f ms) }",
+                queue.size(), executor.getCompletedTaskCount(), lastLag / 1_000_000.0, maxLag / 1_000_000.0);
+    }
+}
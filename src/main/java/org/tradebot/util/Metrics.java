@@ -0,0 +1,164 @@
+package org.tradebot.util;
+
+import org.json.JSONObject;
+import org.tradebot.service.TaskManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Named latency histograms and counters of the whole bot. Recording is lock-free, every
+ * {@link Settings#METRICS_PUBLISH_PERIOD} the values of the interval are written to
+ * {@code output/state/metrics.json} and reset.
+ */
+public class Metrics {
+
+    public static final String MARKET_EVENT_TO_RECEIVE = "market_event_to_receive";
+    public static final String MARKET_WS_RECEIVE_TO_DECODE = "market_ws_receive_to_decode";
+    public static final String USER_WS_RECEIVE_TO_DECODE = "user_ws_receive_to_decode";
+    public static final String DECODE_TO_BAR = "decode_to_bar";
+    public static final String BAR_TO_DECISION = "bar_to_decision";
+    public static final String SIGNAL_TO_ORDER_SENT = "signal_to_order_sent";
+    public static final String ORDER_SENT_SPREAD = "order_sent_spread";
+    public static final String ORDER_SENT_TO_ACK = "order_sent_to_ack";
+    public static final String FILL_TO_STOP_ACK = "fill_to_stop_ack";
+    public static final String REST_PREFIX = "rest ";
+    public static final String REST_ERRORS_PREFIX = "rest_errors ";
+    public static final String REST_USED_WEIGHT = "rest_used_weight_1m";
+    public static final String TRADES_DROPPED = "trades_dropped";
+
+    private final Log log = new Log();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private volatile long intervalStart = System.currentTimeMillis();
+    private volatile JSONObject lastPublished = new JSONObject();
+
+    private static Metrics instance;
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    private Metrics() {  }
+
+    public void start() {
+        TaskManager.getInstance().scheduleAtFixedRate(METRICS_PUBLISH_TASK_KEY, this::publish,
+                METRICS_PUBLISH_PERIOD, METRICS_PUBLISH_PERIOD, TimeUnit.MILLISECONDS);
+        log.info(String.format("Metrics are published every %d s", TimeUnit.MILLISECONDS.toSeconds(METRICS_PUBLISH_PERIOD)));
+    }
+
+    public void record(String name, long nanos) {
+        latencies.computeIfAbsent(name, _ -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void increment(String name) {
+        counters.computeIfAbsent(name, _ -> new LongAdder()).increment();
+    }
+
+    /**
+     * Last value, not reset per interval.
+     */
+    public void setGauge(String name, long value) {
+        gauges.computeIfAbsent(name, _ -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * Latency and error count of one REST call, the endpoint path is the metric name.
+     */
+    public void recordRest(String method, String endpoint, long nanos, boolean error) {
+        String name = method + " " + endpoint;
+        record(REST_PREFIX + name, nanos);
+        if (error) {
+            increment(REST_ERRORS_PREFIX + name);
+        }
+    }
+
+    /**
+     * Used request weight from the response header. An invalid value is skipped, it must not fail the request
+     * because a failed request is retried and an order could be sent twice.
+     */
+    public void recordUsedWeight(String header) {
+        if (header == null) {
+            return;
+        }
+        try {
+            setGauge(REST_USED_WEIGHT, Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Skipping invalid used weight header: " + header);
+        }
+    }
+
+    /**
+     * Takes the values of the finished interval and resets them.
+     */
+    public JSONObject snapshotAndReset() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> latencyValues = new TreeMap<>();
+        latencies.forEach((name, histogram) -> latencyValues.put(name, histogram.snapshotAndReset().toMap()));
+        Map<String, Object> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sumThenReset()));
+        Map<String, Object> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.get()));
+
+        JSONObject result = new JSONObject()
+                .put("time", TimeFormatter.format(now))
+                .put("intervalMs", now - intervalStart)
+                .put("latencies", latencyValues)
+                .put("counters", counterValues)
+                .put("gauges", gaugeValues);
+        intervalStart = now;
+        return result;
+    }
+
+    /**
+     * Values of the last published interval.
+     */
+    public JSONObject getLastPublished() {
+        return lastPublished;
+    }
+
+    private void publish() {
+        JSONObject snapshot = snapshotAndReset();
+        lastPublished = snapshot;
+        Path target = Path.of(STATE_FILE_PATH, METRICS_FILE_NAME);
+        Path temp = Path.of(STATE_FILE_PATH, METRICS_FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(target.getParent());
+            Files.writeString(temp, snapshot.toString(4), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write metrics", e);
+        }
+    }
+
+    public void logAll() {
+        try {
+            log.debug(String.format("""
+                    Metrics:
+                        last interval: %s
+                    """, lastPublished));
+        } catch (Exception e) {
+            log.warn("Failed to write", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.tradebot.util;
+
+/**
+ * Fixed-size window of the last values with O(1) mean and exponentially weighted mean.
+ * The sum is recalculated from the stored values once per full turn to avoid floating point drift.
+ */
+public class RollingWindow {
+
+    private final double[] values;
+    private final double alpha;
+    private int count = 0;
+    private int next = 0;
+    private double sum = 0;
+    private double ewma = Double.NaN;
+
+    public RollingWindow(int capacity) {
+        this.values = new double[capacity];
+        this.alpha = 2. / (capacity + 1);
+    }
+
+    public void add(double value) {
+        if (count == values.length) {
+            sum -= values[next];
+        } else {
+            count++;
+        }
+        values[next] = value;
+        sum += value;
+        next = (next + 1) % values.length;
+        if (next == 0) {
+            sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += values[i];
+            }
+        }
+        ewma = Double.isNaN(ewma) ? value : alpha * value + (1 - alpha) * ewma;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Mean of the window as if the value was added, without changing the window.
+     */
+    public double meanWith(double value) {
+        if (count < values.length) {
+            return (sum + value) / (count + 1);
+        }
+        return (sum - values[next] + value) / count;
+    }
+
+    public double ewma() {
+        return ewma;
+    }
+
+    /**
+     * Exponentially weighted mean as if the value was added, without changing the window.
+     */
+    public double ewmaWith(double value) {
+        return Double.isNaN(ewma) ? value : alpha * value + (1 - alpha) * ewma;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{ size :: %d, mean :: %.6f, ewma :: %.6f }", count, mean(), ewma);
+    }
+}
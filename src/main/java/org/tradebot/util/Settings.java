@@ -2,7 +2,7 @@ package org.tradebot.util;
 
 import org.tradebot.domain.Precision;
 
-import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
 
 public class Settings {
 
@@ -51,7 +51,9 @@ public class Settings {
     public static final double RETURNED_PRICE_IMBALANCE_PARTITION = 0.5;
 
     //volatility service params
-    public static final long UPDATE_TIME_PERIOD_HOURS = 12;
+    public static final long VOLATILITY_BUCKET_SIZE = 15 * 60_000L;
+    public static final long VOLATILITY_NOTIFY_PERIOD = 60_000L;
+    public static final boolean VOLATILITY_USE_EWMA = false;
     public static final int VOLATILITY_CALCULATE_PAST_TIME_DAYS = 1;
     public static final int AVERAGE_PRICE_CALCULATE_PAST_TIME_DAYS = 1;
 
@@ -69,9 +71,25 @@ public class Settings {
     }
 
     public static final int MAX_TRADE_QUEUE_SIZE = 100000;
-
-
-    //http and websocket settings
+    public static final int ORDER_BOOK_RESYNC_BUFFER_SIZE = 1000;
+    public static final int ORDER_BOOK_SNAPSHOT_DEPTH = 20;
+    public static final double ORDER_BOOK_DEFAULT_MAX_UPDATES_PER_SECOND = 10;
+    //number of best levels for depth imbalance and band around mid price for depth, basis points
+    public static final int ORDER_BOOK_FEATURE_DEPTH = 5;
+    public static final double ORDER_BOOK_FEATURE_BAND_BPS = 10;
+    public static final long ORDER_BOOK_SNAPSHOT_RETRY_DELAY = 1000L;
+
+    //each account handles its events on one mailbox thread
+    public static final boolean ACCOUNT_MAILBOX_VIRTUAL_THREAD = false;
+    //maximum count of open orders sent by all accounts at the same time
+    public static final int OPEN_ORDER_MAX_IN_FLIGHT = 32;
+    //stop order is placed from the open order fill event on a pre-started thread, not after the mailbox handles it
+    public static final boolean PROTECTIVE_STOP_FAST_PATH = true;
+
+
+    //http and websocket settings, the urls can be overridden with -Dtradebot.ws.url and -Dtradebot.base.url
+    public static final String WEB_SOCKET_URL_PROPERTY = "tradebot.ws.url";
+    public static final String BASE_URL_PROPERTY = "tradebot.base.url";
     public static final String WEB_SOCKET_URL;
     public static final String BASE_URL;
     public static final int RECV_WINDOW = 2000;
@@ -79,12 +97,12 @@ public class Settings {
 
     static {
         if (TEST_RUN) {
-            WEB_SOCKET_URL = "wss://stream.binancefuture.com/ws";
-            BASE_URL = "https://testnet.binancefuture.com";
+            WEB_SOCKET_URL = System.getProperty(WEB_SOCKET_URL_PROPERTY, "wss://stream.binancefuture.com/ws");
+            BASE_URL = System.getProperty(BASE_URL_PROPERTY, "https://testnet.binancefuture.com");
             RISK_LEVEL = 0.2;
         } else {
-            WEB_SOCKET_URL = "wss://fstream.binance.com/ws";
-            BASE_URL = "https://fapi.binance.com";
+            WEB_SOCKET_URL = System.getProperty(WEB_SOCKET_URL_PROPERTY, "wss://fstream.binance.com/ws");
+            BASE_URL = System.getProperty(BASE_URL_PROPERTY, "https://fapi.binance.com");
             RISK_LEVEL = 0.95;
         }
     }
@@ -114,24 +132,80 @@ public class Settings {
     public static final String STATE_UPDATE_TASK_KEY = "state_update";
     public static final String BALANCE_UPDATE_TASK = "balance_update";
     public static final String WRITE_HTTP_ERROR_TASK = "write_http_error";
+    public static final String LOG_LEVELS_RELOAD_TASK_KEY = "log_levels_reload";
+    public static final String ORDER_BOOK_SNAPSHOT_TASK_KEY = "order_book_snapshot";
+    public static final String METRICS_PUBLISH_TASK_KEY = "metrics_publish";
+    public static final String MONITORING_SNAPSHOT_TASK_KEY = "monitoring_snapshot";
 
     //account specific task key prefixes
     public static final String USER_STREAM_PING_TASK_KEY = "user_stream_ping";
     public static final String USER_STREAM_RECONNECT_TASK_KEY = "user_stream_reconnect";
     public static final String USER_STREAM_UNEXPECTED_RECONNECT_TASK_KEY = "user_stream_reconnect_unexpected_code";
 
-    public static final String CHECK_ORDERS_API_MODE_TASK_KEY = "check_orders_api";
     public static final String AUTOCLOSE_POSITION_TASK_KEY = "auto_close_position";
-    public static final String HANDLE_OPEN_ORDER_FILLED_TASK_KEY = "open_order_filled";
-    public static final String HANDLE_TAKE_0_ORDER_FILLED_TASK_KEY = "first_take_order_filled";
-    public static final String HANDLE_UNKNOWN_ORDER_FILLED_TASK_KEY = "unknown_order_filled";
-    public static final String HANDLE_CLOSE_ORDER_FILLED_TASK_KEY = "close_order_filled";
     public static final String HANDLE_CLOSE_POSITION_TASK_KEY = "close_position";
 
 
     //logging settings
     public static final String LOGS_DIR_PATH = System.getProperty("user.dir") + "/output/logs/";
     public static final String STATE_FILE_PATH = System.getProperty("user.dir") + "/output/state/";
-    public static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    public static final long STATE_PUBLISH_HEARTBEAT_PERIOD = 30_000L;
+    public static final String METRICS_FILE_NAME = "metrics.json";
+    public static final long METRICS_PUBLISH_PERIOD = 10_000L;
+
+    //local monitoring http server, /metrics in prometheus format and /health
+    public static final boolean MONITORING_SERVER_ENABLED = true;
+    public static final String MONITORING_SERVER_HOST = "127.0.0.1";
+    public static final int MONITORING_SERVER_PORT = 9400;
+    public static final long MONITORING_SNAPSHOT_PERIOD = 1000L;
+    public static final String LOG_LEVELS_FILE_PATH = System.getProperty("user.dir") + "/log-levels.properties";
+    public static final String LOG_LEVEL_PROPERTY = "tradebot.log.level";
+    public static final String ROOT_LOGGER = "root";
+    public static final Log.Level DEFAULT_LOG_LEVEL = Log.Level.DEBUG;
+    public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    public static final int LOG_RING_SIZE = 1 << 16;
+
+    //binary event journal settings
+    public static final boolean EVENT_JOURNAL_ENABLED = true;
+    public static final String JOURNAL_DIR_PATH = System.getProperty("user.dir") + "/output/journal/";
+    public static final int JOURNAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+    //oldest segments are deleted on roll beyond the count or the age
+    public static final int JOURNAL_MAX_SEGMENTS = 16;
+    public static final long JOURNAL_MAX_AGE = 7 * 24 * 60 * 60_000L;
+    public static final long ORDER_JOURNAL_FSYNC_PERIOD = 100L;
+    //stop and take requests still in flight are awaited on account stop before the journal is closed
+    public static final long PROTECTION_EXECUTOR_STOP_TIMEOUT = 5_000L;
+
+    //reconciliation settings
+    public static final long RECONCILIATION_TICK_PERIOD = 200L;
+    public static final long RECONCILIATION_IN_FLIGHT_INTERVAL = 1_000L;
+    public static final long RECONCILIATION_POSITION_INTERVAL = 3_000L;
+    public static final long RECONCILIATION_IDLE_INTERVAL = 10_000L;
+    public static final long RECONCILIATION_ERROR_DELAY = 1_000L;
+    public static final int RECONCILIATION_MAX_PARALLEL = 4;
+
+    //kline store settings
+    public static final String KLINE_STORE_DIR_PATH = System.getProperty("user.dir") + "/output/klines/";
+    public static final int KLINE_STORE_PAGE_SIZE = 1500;
+    public static final String VOLATILITY_KLINE_INTERVAL = "15m";
+    public static final String LARGE_DATA_KLINE_INTERVAL = "1m";
+    public static final long LARGE_DATA_KLINE_SIZE = 60_000L;
+    public static final int LARGE_DATA_KLINE_STORE_CAPACITY = 24 * 60;
+    public static final int VOLATILITY_KLINE_STORE_CAPACITY = 7 * 24 * 4;
+
+    //imbalance checkpoint settings
+    public static final boolean IMBALANCE_CHECKPOINT_ENABLED = true;
+    public static final String IMBALANCE_CHECKPOINT_DIR_PATH = System.getProperty("user.dir") + "/output/checkpoint/";
+    public static final String IMBALANCE_CHECKPOINT_FILE_NAME = "imbalance.bin";
+    public static final long IMBALANCE_CHECKPOINT_PERIOD = 5_000L;
+    public static final long IMBALANCE_CHECKPOINT_MAX_AGE = 60_000L;
+
+    //java flight recorder settings, "default" is the continuous profile of the jdk with ~1% overhead
+    public static final boolean JFR_RECORDING_ENABLED = true;
+    public static final String JFR_CONFIGURATION = "default";
+    public static final String JFR_DIR_PATH = System.getProperty("user.dir") + "/output/jfr/";
+    public static final long JFR_MAX_AGE = 15 * 60_000L;
+    public static final long JFR_MAX_SIZE = 128 * 1024 * 1024L;
+    public static final long JFR_DUMP_MIN_INTERVAL = 60_000L;
 
 }
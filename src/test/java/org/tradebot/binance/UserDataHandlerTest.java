@@ -1,54 +1,106 @@
 package org.tradebot.binance;
 
-import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.tradebot.domain.HTTPResponse;
+import org.tradebot.domain.Position;
 import org.tradebot.listener.UserDataCallback;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class UserDataHandlerTest {
 
-    @InjectMocks
+    private static final String FILLED = """
+            {"e":"ORDER_TRADE_UPDATE","E":1568879465651,"T":1568879465650,"o":{"s":"BTCUSDT","c":"stop_market",\
+            "S":"SELL","o":"STOP_MARKET","q":"0.001","p":"0","ap":"9000.5","sp":"8990","x":"TRADE","X":"FILLED",\
+            "i":8886774,"l":"0.001","z":"0.001","L":"9000.5","N":"USDT","n":"0.0036","R":true,"ps":"BOTH"}}""";
+    private static final String ACCOUNT_UPDATE = """
+            {"e":"ACCOUNT_UPDATE","E":1564745798939,"T":1564745798938,"a":{"m":"ORDER",\
+            "B":[{"a":"USDT","wb":"122624.12345678","cw":"100.12345678","bc":"50.12345678"}],\
+            "P":[{"s":"ETHUSDT","pa":"1","ep":"2500","bep":"2501","cr":"0","up":"0","mt":"cross","iw":"0","ps":"BOTH"},\
+            {"s":"BTCUSDT","pa":"-0.015","ep":"60123.45","bep":"60100.1","cr":"200","up":"-1.5","mt":"isolated","iw":"6.8","ps":"BOTH"}]}}""";
+
     private UserDataHandler userDataHandler;
 
+    @Mock
+    private APIService apiService;
+
     @Mock
     private UserDataCallback callback;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(apiService.getBalance(anyString())).thenReturn(HTTPResponse.success(200, 100.0));
+        userDataHandler = new UserDataHandler(apiService, 0, "USDT");
+        userDataHandler.setCallback(callback);
     }
 
     @Test
-    void testSetCallback() {
-        userDataHandler.setCallback(callback);
-        assertEquals(userDataHandler.callback, callback);
+    void testOnMessage_OrderTradeUpdate() {
+        userDataHandler.onMessage(FILLED);
+        verify(callback).notifyUserDataReceived();
+        verify(callback).notifyOrderUpdate("stop_market", "FILLED", 9000.5, 0.001);
     }
 
     @Test
-    void testOnMessage_OrderTradeUpdate() {
-        JSONObject orderJson = new JSONObject()
-                .put("X", "FILLED")
-                .put("c", "testClientId");
-        JSONObject message = new JSONObject().put("o", orderJson);
-        doNothing().when(callback).notifyOrderUpdate("testClientId", "FILLED");
-        userDataHandler.setCallback(callback);
-        userDataHandler.onMessage("ORDER_TRADE_UPDATE", message);
-        verify(callback).notifyOrderUpdate("testClientId", "FILLED");
+    void testOnMessage_NotFilledOrderIsIgnored() {
+        userDataHandler.onMessage(FILLED.replace("\"X\":\"FILLED\"", "\"X\":\"NEW\""));
+        userDataHandler.onMessage(FILLED.replace("\"X\":\"FILLED\"", "\"X\":\"PARTIALLY_FILLED\""));
+        userDataHandler.onMessage(FILLED.replace("BTCUSDT", "ETHUSDT"));
+        verify(callback, times(3)).notifyUserDataReceived();
+        verify(callback, never()).notifyOrderUpdate(anyString(), anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void testOnMessage_AccountUpdate() {
+        userDataHandler.onMessage(ACCOUNT_UPDATE);
+        ArgumentCaptor<Position> captor = ArgumentCaptor.forClass(Position.class);
+        verify(callback).notifyPositionUpdate(captor.capture());
+
+        Position position = captor.getValue();
+        assertEquals("BTCUSDT", position.getSymbol());
+        assertEquals(-0.015, position.getPositionAmt());
+        assertEquals(60123.45, position.getEntryPrice());
+        assertEquals(Position.Type.SHORT, position.getType());
+    }
+
+    @Test
+    void testOnMessage_ClosedPosition() {
+        userDataHandler.onMessage(ACCOUNT_UPDATE.replace("\"pa\":\"-0.015\",\"ep\":\"60123.45\"", "\"pa\":\"0\",\"ep\":\"0.00000\""));
+        verify(callback).notifyPositionUpdate(null);
     }
 
     @Test
     void testOnMessage_InvalidEventType() {
-        JSONObject orderJson = new JSONObject()
-                .put("X", "FILLED")
-                .put("c", "testClientId");
-        JSONObject message = new JSONObject().put("o", orderJson);
-        userDataHandler.onMessage("INVALID_EVENT", message);
-        verify(callback, never()).notifyOrderUpdate(anyString(), anyString());
+        userDataHandler.onMessage(FILLED.replace("ORDER_TRADE_UPDATE", "INVALID_EVENT"));
+        userDataHandler.onMessage("{\"result\":null,\"id\":3}");
+        verify(callback, never()).notifyOrderUpdate(anyString(), anyString(), anyDouble(), anyDouble());
+        verify(callback, never()).notifyPositionUpdate(any());
+    }
+
+    @Test
+    void testDecoder_ReusesEventsAndParsesNumbers() {
+        UserDataDecoder decoder = new UserDataDecoder();
+        assertEquals(UserDataDecoder.EventType.ACCOUNT_UPDATE, decoder.decode(ACCOUNT_UPDATE));
+        UserDataDecoder.AccountUpdate accountUpdate = decoder.accountUpdate();
+        assertEquals(2, accountUpdate.size());
+        assertTrue(accountUpdate.position(0).isSymbol("ETHUSDT"));
+        assertEquals(-0.015, accountUpdate.position(1).toPosition().getPositionAmt());
+
+        assertEquals(UserDataDecoder.EventType.ORDER_TRADE_UPDATE, decoder.decode(FILLED));
+        assertSame(accountUpdate, decoder.accountUpdate());
+        assertEquals(0, decoder.accountUpdate().size());
+        assertEquals("stop_market", decoder.orderUpdate().clientId());
+
+        assertEquals(UserDataDecoder.EventType.ACCOUNT_UPDATE, decoder.decode("""
+                { "e" : "ACCOUNT_UPDATE", "a" : { "m" : "ORDER", "P" : [ { "s" : "BTCUSDT", "pa" : 1.5e-3, "ep" : "12345678901234567890.5", "ps" : "BOTH" } ] } }"""));
+        Position position = decoder.accountUpdate().position(0).toPosition();
+        assertEquals(0.0015, position.getPositionAmt());
+        assertEquals(12345678901234567890.5, position.getEntryPrice());
     }
 }
@@ -0,0 +1,111 @@
+package org.tradebot.domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookSideTest {
+
+    private OrderBookSide asks;
+    private OrderBookSide bids;
+
+    @BeforeEach
+    void setUp() {
+        asks = new OrderBookSide(OrderBookSide.Type.ASK, 1);
+        bids = new OrderBookSide(OrderBookSide.Type.BID, 1);
+    }
+
+    @Test
+    void bestLevels() {
+        asks.update(100.2, 1);
+        asks.update(100.1, 2);
+        asks.update(100.5, 3);
+        bids.update(99.9, 1);
+        bids.update(100.0, 2);
+        bids.update(99.5, 3);
+
+        assertEquals(100.1, asks.bestPrice());
+        assertEquals(2, asks.bestQuantity());
+        assertEquals(100.0, bids.bestPrice());
+        assertEquals(2, bids.bestQuantity());
+        assertEquals(100.5, asks.priceAt(2));
+        assertEquals(99.5, bids.priceAt(2));
+    }
+
+    @Test
+    void updateAndRemoveLevels() {
+        bids.update(100.0, 1);
+        bids.update(100.1, 2);
+        bids.update(100.0, 5);
+        assertEquals(5, bids.quantity(100.0));
+        assertEquals(2, bids.size());
+
+        bids.update(100.1, 0);
+        assertEquals(100.0, bids.bestPrice());
+        assertEquals(1, bids.size());
+
+        bids.update(42.0, 0);
+        assertEquals(1, bids.size());
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        for (int i = 1; i <= 5000; i++) {
+            asks.update(i / 10.0, i);
+        }
+        assertEquals(5000, asks.size());
+        assertEquals(0.1, asks.bestPrice());
+        assertEquals(500.0, asks.priceAt(4999));
+    }
+
+    @Test
+    void topLevelsAsMap() {
+        asks.update(100.3, 3);
+        asks.update(100.1, 1);
+        asks.update(100.2, 2);
+
+        Map<Double, Double> top = asks.toMap(2);
+        assertEquals(Map.of(100.1, 1.0, 100.2, 2.0), top);
+        assertEquals(100.1, top.keySet().iterator().next());
+
+        double[] prices = new double[5];
+        double[] quantities = new double[5];
+        assertEquals(3, asks.copyTop(5, prices, quantities));
+        assertArrayEquals(new double[]{100.1, 100.2, 100.3, 0, 0}, prices);
+    }
+
+    @Test
+    void incrementalSumsMatchFullScan() {
+        OrderBookSide side = new OrderBookSide(OrderBookSide.Type.ASK, 1, 5);
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double price = 1000 + random.nextInt(200) / 10.0;
+            double quantity = random.nextInt(4) == 0 ? 0 : random.nextInt(100) + 1;
+            side.update(price, quantity);
+            if (i % 7 == 0) {
+                side.setBandLimit(side.bestPrice() + random.nextInt(50) / 10.0);
+            }
+            if (i % 7 == 0 || i % 101 == 0) {
+                double top = 0;
+                for (int level = 0; level < Math.min(5, side.size()); level++) {
+                    top += side.quantityAt(level);
+                }
+                assertEquals(top, side.topQuantity(), 1e-6);
+            }
+        }
+
+        double limit = side.bestPrice() + 2.0;
+        side.setBandLimit(limit);
+        double band = 0;
+        for (int level = 0; level < side.size(); level++) {
+            if (side.priceAt(level) <= limit + 1e-9) {
+                band += side.quantityAt(level);
+            }
+        }
+        assertEquals(band, side.bandQuantity(), 1e-6);
+    }
+}
@@ -0,0 +1,16 @@
+package org.tradebot.jfr;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebSocketFrameEventTest {
+
+    @Test
+    void eventTypeOfRawFrame() {
+        assertEquals("ORDER_TRADE_UPDATE", WebSocketFrameEvent.eventTypeOf("{\"e\":\"ORDER_TRADE_UPDATE\",\"E\":1568879465651}"));
+        assertEquals("listenKeyExpired", WebSocketFrameEvent.eventTypeOf("{\"E\":1,\"e\":\"listenKeyExpired\"}"));
+        assertNull(WebSocketFrameEvent.eventTypeOf("{\"result\":null,\"id\":3}"));
+        assertNull(WebSocketFrameEvent.eventTypeOf("{\"e\":\"broken"));
+    }
+}
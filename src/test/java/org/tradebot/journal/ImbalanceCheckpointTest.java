@@ -0,0 +1,60 @@
+package org.tradebot.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.MarketEntry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImbalanceCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAndRead() throws Exception {
+        TreeMap<Long, MarketEntry> seconds = new TreeMap<>();
+        seconds.put(1_000L, new MarketEntry(101, 100, 5));
+        seconds.put(2_000L, new MarketEntry(102, 101, 6));
+        TreeMap<Long, MarketEntry> largeData = new TreeMap<>();
+        largeData.put(15_000L, new MarketEntry(103, 99, 50));
+        Imbalance imbalance = new Imbalance(1_000L, 100, 2_000L, 102, Imbalance.Type.UP);
+        imbalance.setComputedDuration(1500);
+
+        ImbalanceCheckpoint checkpoint = new ImbalanceCheckpoint(2_000L, 2, imbalance, 10, 0.5,
+                102, 100, 11, 1_000L, seconds, largeData);
+        Path path = dir.resolve("imbalance.bin");
+        checkpoint.write(path);
+
+        ImbalanceCheckpoint restored = ImbalanceCheckpoint.read(path);
+        assertNotNull(restored);
+        assertEquals(2_000L, restored.lastEntryTime);
+        assertEquals(2, restored.state);
+        assertEquals(10, restored.priceChangeThreshold);
+        assertEquals(Imbalance.Type.UP, restored.imbalance.getType());
+        assertEquals(102, restored.imbalance.getEndPrice());
+        assertEquals(1500, restored.imbalance.getComputedDuration());
+        assertEquals(seconds, restored.seconds());
+        assertEquals(largeData, restored.largeData());
+    }
+
+    @Test
+    void corruptedFileIsRejected() throws Exception {
+        ImbalanceCheckpoint checkpoint = new ImbalanceCheckpoint(2_000L, 0, null, 10, 0.5,
+                0, Double.MAX_VALUE, 0, -1L, new TreeMap<>(), new TreeMap<>());
+        Path path = dir.resolve("imbalance.bin");
+        checkpoint.write(path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[10] ^= 1;
+        Files.write(path, bytes);
+
+        assertNull(ImbalanceCheckpoint.read(path));
+        assertNull(ImbalanceCheckpoint.read(dir.resolve("missing.bin")));
+    }
+}
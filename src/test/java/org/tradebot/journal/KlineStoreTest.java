@@ -0,0 +1,150 @@
+package org.tradebot.journal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tradebot.binance.PublicAPIService;
+import org.tradebot.domain.HTTPResponse;
+import org.tradebot.domain.MarketEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.tradebot.util.Settings.KLINE_STORE_PAGE_SIZE;
+import static org.tradebot.util.Settings.SYMBOL;
+
+class KlineStoreTest {
+
+    // daily klines, so the current kline does not change while the test runs
+    private static final String INTERVAL = "1d";
+    private static final long INTERVAL_MILLIS = 24 * 60 * 60_000L;
+
+    @TempDir
+    Path dir;
+
+    private PublicAPIService publicAPIService;
+    private long currentOpenTime;
+
+    @BeforeEach
+    void setUp() {
+        long now = System.currentTimeMillis();
+        currentOpenTime = now - now % INTERVAL_MILLIS;
+        publicAPIService = mock(PublicAPIService.class);
+        // the exchange also returns the kline that is still open
+        when(publicAPIService.getMarketDataPublicAPI(eq(SYMBOL), eq(INTERVAL), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long startTime = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            TreeMap<Long, MarketEntry> klines = new TreeMap<>();
+            for (long openTime = startTime; openTime <= currentOpenTime && klines.size() < limit; openTime += INTERVAL_MILLIS) {
+                klines.put(openTime, kline(openTime));
+            }
+            return HTTPResponse.success(200, klines);
+        });
+    }
+
+    @Test
+    void syncFetchesOnlyMissingTail() throws IOException {
+        writeRecords(openTimes(10, 4));
+        KlineStore store = open(10);
+
+        store.sync();
+
+        verify(publicAPIService).getMarketDataPublicAPI(SYMBOL, INTERVAL, currentOpenTime - 3 * INTERVAL_MILLIS, KLINE_STORE_PAGE_SIZE);
+        TreeMap<Long, MarketEntry> klines = store.load(0);
+        assertEquals(10, klines.size());
+        assertEquals(currentOpenTime - 10 * INTERVAL_MILLIS, klines.firstKey());
+        assertEquals(currentOpenTime - INTERVAL_MILLIS, klines.lastKey());
+
+        store.sync();
+        open(10).sync();
+        verifyNoMoreInteractions(publicAPIService);
+    }
+
+    @Test
+    void loadReturnsOnlyClosedKlines() {
+        KlineStore store = open(5).sync();
+
+        TreeMap<Long, MarketEntry> klines = store.load(0);
+        assertEquals(5, klines.size());
+        assertFalse(klines.containsKey(currentOpenTime));
+        assertEquals(kline(klines.lastKey()), klines.lastEntry().getValue());
+
+        TreeMap<Long, MarketEntry> recent = store.load(currentOpenTime - 2 * INTERVAL_MILLIS);
+        assertEquals(List.of(currentOpenTime - 2 * INTERVAL_MILLIS, currentOpenTime - INTERVAL_MILLIS), List.copyOf(recent.keySet()));
+    }
+
+    @Test
+    void fullStoreDropsOlderHalf() throws IOException {
+        writeRecords(openTimes(8, 5));
+        KlineStore store = open(4);
+
+        store.sync();
+
+        TreeMap<Long, MarketEntry> klines = store.load(0);
+        assertEquals(openTimes(4, 1), List.copyOf(klines.keySet()));
+        klines.forEach((openTime, entry) -> assertEquals(kline(openTime), entry));
+    }
+
+    @Test
+    void reopenStopsAtPartiallyWrittenRecord() throws IOException {
+        List<Long> stored = openTimes(6, 4);
+        writeRecords(stored);
+        // payload of the next record is written, its open time (written the last) is not
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            ByteBuffer payload = ByteBuffer.allocate(KlineStore.RECORD_SIZE - 8);
+            payload.putDouble(1).putDouble(2).putDouble(3).flip();
+            channel.write(payload, stored.size() * (long) KlineStore.RECORD_SIZE + 8);
+        }
+
+        KlineStore store = open(10);
+        assertEquals(stored, List.copyOf(store.load(0).keySet()));
+
+        store.sync();
+        assertEquals(openTimes(6, 1), List.copyOf(store.load(0).keySet()));
+        assertEquals(kline(currentOpenTime - 3 * INTERVAL_MILLIS), store.load(0).get(currentOpenTime - 3 * INTERVAL_MILLIS));
+    }
+
+    private KlineStore open(int capacity) {
+        return new KlineStore(publicAPIService, dir, INTERVAL, INTERVAL_MILLIS, capacity);
+    }
+
+    private Path file() {
+        return dir.resolve(String.format("%s-%s.bin", SYMBOL, INTERVAL));
+    }
+
+    /**
+     * Open times from {@code from} to {@code to} intervals before the current one.
+     */
+    private List<Long> openTimes(int from, int to) {
+        return LongStream.rangeClosed(0, from - to)
+                .map(i -> currentOpenTime - (from - i) * INTERVAL_MILLIS)
+                .boxed()
+                .toList();
+    }
+
+    private void writeRecords(List<Long> openTimes) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(openTimes.size() * KlineStore.RECORD_SIZE);
+        for (long openTime : openTimes) {
+            MarketEntry entry = kline(openTime);
+            records.putLong(openTime).putDouble(entry.high()).putDouble(entry.low()).putDouble(entry.volume());
+        }
+        records.flip();
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(records, 0);
+        }
+    }
+
+    private static MarketEntry kline(long openTime) {
+        double base = 90_000 + (openTime / INTERVAL_MILLIS) % 1000;
+        return new MarketEntry(base + 10, base - 10, openTime % 997);
+    }
+}
@@ -0,0 +1,109 @@
+package org.tradebot.journal;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.Order;
+import org.tradebot.service.OrderManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.tradebot.service.OrderManager.OrderType.*;
+import static org.tradebot.util.JsonParser.parseOrder;
+
+class OrderJournalTest {
+
+    private static final int CLIENT = 7;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsAreReadBackInOrder() {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        Imbalance imbalance = new Imbalance(1_000L, 97_000, 61_000L, 99_000, Imbalance.Type.UP);
+        Order open = order("position_open_market");
+
+        journal.writeImbalance(imbalance);
+        journal.writeIntent(OPEN, open);
+        journal.writeAck(OPEN, open.getNewClientOrderId());
+        journal.writeState(OrderManager.State.OPEN_ORDER_PLACED);
+        journal.writeFill(open.getNewClientOrderId());
+        journal.writeCancel(STOP);
+        journal.writeRemove(TAKE_0);
+        journal.writeClear();
+        journal.close();
+
+        List<JSONObject> records = new OrderJournal(CLIENT, dir).read();
+        assertEquals(List.of("IMBALANCE", "INTENT", "ACK", "STATE", "FILL", "CANCEL", "REMOVE", "CLEAR"),
+                records.stream().map(record -> record.getString("event")).toList());
+        assertEquals("UP", records.get(0).getString("type"));
+        assertEquals(99_000, records.get(0).getDouble("endPrice"));
+        Order restored = parseOrder(records.get(1).getJSONObject("order"));
+        assertEquals(open.getNewClientOrderId(), restored.getNewClientOrderId());
+        assertEquals(open.getSide(), restored.getSide());
+        assertEquals(open.getType(), restored.getType());
+        assertEquals("OPEN_ORDER_PLACED", records.get(3).getString("state"));
+        assertEquals("TAKE_0", records.get(6).getString("orderType"));
+    }
+
+    @Test
+    void emptyPositionTruncatesJournal() {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeIntent(OPEN, order("position_open_market"));
+        journal.writeState(OrderManager.State.OPEN_ORDER_PLACED);
+
+        journal.writeState(OrderManager.State.POSITION_EMPTY);
+        journal.writeClear();
+
+        List<JSONObject> records = journal.read();
+        assertEquals(2, records.size());
+        assertEquals("POSITION_EMPTY", records.get(0).getString("state"));
+        assertEquals("CLEAR", records.get(1).getString("event"));
+        journal.close();
+    }
+
+    @Test
+    void tornLastRecordIsDroppedOnOpen() throws Exception {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeIntent(OPEN, order("position_open_market"));
+        journal.close();
+        Files.writeString(dir.resolve("orders-" + CLIENT + ".jsonl"), "{\"time\":1,\"event\":\"AC",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        OrderJournal reopened = new OrderJournal(CLIENT, dir);
+        assertEquals(List.of("INTENT"), reopened.read().stream().map(record -> record.getString("event")).toList());
+
+        reopened.writeAck(OPEN, "position_open_market");
+        assertEquals(List.of("INTENT", "ACK"), reopened.read().stream().map(record -> record.getString("event")).toList());
+        reopened.close();
+    }
+
+    @Test
+    void corruptedLineIsSkipped() throws Exception {
+        Files.writeString(dir.resolve("orders-" + CLIENT + ".jsonl"), """
+                {"time":1,"event":"CLEAR"}
+                not a record
+                {"time":2,"event":"STATE","state":"OPEN_ORDER_PLACED"}
+                """);
+
+        List<JSONObject> records = new OrderJournal(CLIENT, dir).read();
+        assertEquals(List.of("CLEAR", "STATE"), records.stream().map(record -> record.getString("event")).toList());
+    }
+
+    // no quantity: rounding it asks TradingBot for the symbol precision
+    private static Order order(String clientId) {
+        Order order = new Order();
+        order.setSymbol("BTCUSDT");
+        order.setSide(Order.Side.SELL);
+        order.setType(Order.Type.MARKET);
+        order.setNewClientOrderId(clientId);
+        return order;
+    }
+}
@@ -0,0 +1,115 @@
+package org.tradebot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tradebot.binance.APIService;
+import org.tradebot.domain.HTTPResponse;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.Order;
+import org.tradebot.journal.EventJournal;
+import org.tradebot.journal.OrderJournal;
+import org.tradebot.strategy_state_handlers.StrategyStateDispatcher;
+import org.tradebot.util.Log;
+import org.tradebot.util.Mailbox;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.tradebot.service.OrderManager.OrderType.*;
+import static org.tradebot.service.OrderManager.State.*;
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Open order fill handled by the protective stop fast path with a mocked exchange. The bot is replaced by a mock,
+ * so orders are rounded with the default precision.
+ */
+class OrderManagerFastPathTest {
+
+    private static final int CLIENT = 9;
+    private static final Imbalance IMBALANCE = new Imbalance(1_000L, 97_000, 61_000L, 99_000, Imbalance.Type.UP);
+    private static final String OPEN_CLIENT_ID = "position_open_market";
+    // whole units, the default precision rounds quantities to 0.1
+    private static final double QUANTITY = 2;
+
+    @TempDir
+    Path dir;
+
+    private APIService apiService;
+    private Mailbox mailbox;
+    private OrderManager orderManager;
+
+    @BeforeEach
+    void setUp() {
+        TradingBot.setInstance(mock(TradingBot.class));
+        EventJournal.getInstance().setDirectory(dir.resolve("events"));
+        apiService = mock(APIService.class);
+        when(apiService.placeOrder(any())).thenAnswer(invocation -> HTTPResponse.success(200, invocation.getArgument(0)));
+        mailbox = new Mailbox("account-" + CLIENT, new Log());
+    }
+
+    @AfterEach
+    void tearDown() {
+        TaskManager.getInstance(CLIENT).cancel(AUTOCLOSE_POSITION_TASK_KEY);
+        if (orderManager != null) {
+            orderManager.close();
+        }
+        mailbox.shutdown();
+        EventJournal.getInstance().setDirectory(Path.of(JOURNAL_DIR_PATH));
+        TradingBot.setInstance(null);
+    }
+
+    @Test
+    void takesUseFillPositionWhenFillArrivesBeforePositionUpdate() {
+        assumeFastPath();
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeImbalance(IMBALANCE);
+        journal.writeIntent(OPEN, openOrder());
+        journal.writeAck(OPEN, OPEN_CLIENT_ID);
+        journal.writeState(OPEN_ORDER_PLACED);
+        orderManager = new OrderManager(apiService, journal, CLIENT, "USDT", false, new StrategyStateDispatcher(CLIENT), mailbox);
+        orderManager.recover();
+
+        // no ACCOUNT_UPDATE before the fill
+        orderManager.notifyOrderUpdate(OPEN_CLIENT_ID, Order.Status.FILLED.toString(), 99_000, QUANTITY);
+        awaitState(STOP_ORDERS_PLACED);
+
+        Map<OrderManager.OrderType, Order> orders = orderManager.getOrders();
+        assertEquals(Set.of(OPEN, STOP, TAKE_0, TAKE_1), orders.keySet());
+        assertEquals(Order.Side.BUY, orders.get(TAKE_0).getSide());
+        assertEquals(Order.Side.BUY, orders.get(TAKE_1).getSide());
+        assertEquals(QUANTITY, orders.get(TAKE_0).getQuantity().add(orders.get(TAKE_1).getQuantity()).doubleValue(), 1e-9);
+        assertTrue(orders.get(TAKE_0).getPrice().doubleValue() < 99_000);
+        verify(apiService, times(3)).placeOrder(any());
+    }
+
+    private void awaitState(OrderManager.State state) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (orderManager.getState() != state) {
+            assertTrue(System.nanoTime() < deadline, "state is " + orderManager.getState());
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static void assumeFastPath() {
+        assumeTrue(PROTECTIVE_STOP_FAST_PATH, "fast path is disabled");
+    }
+
+    private static Order openOrder() {
+        Order order = new Order();
+        order.setSymbol(SYMBOL);
+        order.setSide(Order.Side.SELL);
+        order.setType(Order.Type.MARKET);
+        order.setQuantity(QUANTITY);
+        order.setNewClientOrderId(OPEN_CLIENT_ID);
+        return order;
+    }
+}
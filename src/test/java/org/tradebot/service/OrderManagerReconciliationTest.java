@@ -0,0 +1,112 @@
+package org.tradebot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tradebot.binance.APIService;
+import org.tradebot.domain.HTTPResponse;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.Order;
+import org.tradebot.domain.Position;
+import org.tradebot.journal.EventJournal;
+import org.tradebot.journal.OrderJournal;
+import org.tradebot.strategy_state_handlers.OpenPositionOrderFilledStateHandler;
+import org.tradebot.strategy_state_handlers.StrategyStateDispatcher;
+import org.tradebot.util.Log;
+import org.tradebot.util.Mailbox;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.tradebot.service.OrderManager.OrderType.*;
+import static org.tradebot.service.OrderManager.State.*;
+import static org.tradebot.util.Settings.*;
+
+/**
+ * Reconciliation of an account with a mocked exchange. The bot is replaced by a mock, so orders are rounded
+ * with the default precision.
+ */
+class OrderManagerReconciliationTest {
+
+    private static final int CLIENT = 8;
+    private static final Imbalance IMBALANCE = new Imbalance(1_000L, 97_000, 61_000L, 99_000, Imbalance.Type.UP);
+    private static final String OPEN_CLIENT_ID = "position_open_market";
+
+    @TempDir
+    Path dir;
+
+    private APIService apiService;
+    private StrategyStateDispatcher dispatcher;
+    private Mailbox mailbox;
+    private OrderManager orderManager;
+
+    @BeforeEach
+    void setUp() {
+        TradingBot.setInstance(mock(TradingBot.class));
+        EventJournal.getInstance().setDirectory(dir.resolve("events"));
+        apiService = mock(APIService.class);
+        when(apiService.placeOrder(any())).thenAnswer(invocation -> HTTPResponse.success(200, invocation.getArgument(0)));
+        dispatcher = new StrategyStateDispatcher(CLIENT);
+        mailbox = new Mailbox("account-" + CLIENT, new Log());
+    }
+
+    @AfterEach
+    void tearDown() {
+        TaskManager.getInstance(CLIENT).cancel(AUTOCLOSE_POSITION_TASK_KEY);
+        if (orderManager != null) {
+            orderManager.close();
+        }
+        mailbox.shutdown();
+        EventJournal.getInstance().setDirectory(Path.of(JOURNAL_DIR_PATH));
+        TradingBot.setInstance(null);
+    }
+
+    @Test
+    void restPositionIsUsedWhenPositionUpdateWasMissed() {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeImbalance(IMBALANCE);
+        journal.writeIntent(OPEN, openOrder());
+        journal.writeAck(OPEN, OPEN_CLIENT_ID);
+        journal.writeState(OPEN_ORDER_PLACED);
+        journal.writeFill(OPEN_CLIENT_ID);
+        journal.writeState(OPEN_ORDER_FILLED);
+        orderManager = new OrderManager(apiService, journal, CLIENT, "USDT", false, dispatcher, mailbox);
+        dispatcher.registerHandler(OPEN_ORDER_FILLED, new OpenPositionOrderFilledStateHandler(orderManager, CLIENT));
+        orderManager.recover();
+        assertEquals(OPEN_ORDER_FILLED, orderManager.getState());
+
+        // the local position is empty, the exchange reports the filled short
+        when(apiService.getOpenPosition(SYMBOL)).thenReturn(HTTPResponse.success(200, shortPosition()));
+        when(apiService.getOpenOrders(SYMBOL)).thenReturn(HTTPResponse.success(200, List.of()));
+        orderManager.checkOrdersAPI();
+
+        assertEquals(STOP_ORDERS_PLACED, orderManager.getState());
+        assertEquals(Set.of(OPEN, STOP, TAKE_0, TAKE_1), orderManager.getOrders().keySet());
+        verify(apiService, times(3)).placeOrder(any());
+        verify(apiService, never()).cancelAllOpenOrders(any());
+    }
+
+    private static Order openOrder() {
+        Order order = new Order();
+        order.setSymbol(SYMBOL);
+        order.setSide(Order.Side.SELL);
+        order.setType(Order.Type.MARKET);
+        order.setQuantity(0.012);
+        order.setNewClientOrderId(OPEN_CLIENT_ID);
+        return order;
+    }
+
+    private static Position shortPosition() {
+        Position position = new Position();
+        position.setSymbol(SYMBOL);
+        position.setEntryPrice(99_000);
+        position.setPositionAmt(-0.012);
+        position.setBreakEvenPrice(99_000);
+        return position;
+    }
+}
@@ -0,0 +1,117 @@
+package org.tradebot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tradebot.binance.APIService;
+import org.tradebot.domain.Imbalance;
+import org.tradebot.domain.Order;
+import org.tradebot.journal.OrderJournal;
+import org.tradebot.strategy_state_handlers.StrategyStateDispatcher;
+import org.tradebot.util.Log;
+import org.tradebot.util.Mailbox;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.tradebot.service.OrderManager.OrderType.*;
+import static org.tradebot.service.OrderManager.State.*;
+import static org.tradebot.util.Settings.AUTOCLOSE_POSITION_TASK_KEY;
+
+class OrderManagerRecoveryTest {
+
+    private static final int CLIENT = 7;
+    private static final Imbalance IMBALANCE = new Imbalance(1_000L, 97_000, 61_000L, 99_000, Imbalance.Type.UP);
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        TaskManager.getInstance(CLIENT).cancel(AUTOCLOSE_POSITION_TASK_KEY);
+    }
+
+    @Test
+    void openIntentWithoutAckIsRecoveredAsPlaced() {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeState(POSITION_EMPTY);
+        journal.writeImbalance(IMBALANCE);
+        journal.writeIntent(OPEN, order("position_open_market", Order.Type.MARKET));
+
+        OrderManager orderManager = recover(journal);
+
+        assertEquals(OPEN_ORDER_PLACED, orderManager.getState());
+        assertEquals("position_open_market", orderManager.getOrders().get(OPEN).getNewClientOrderId());
+    }
+
+    @Test
+    void removedOpenIntentLeavesEmptyPosition() {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeImbalance(IMBALANCE);
+        journal.writeIntent(OPEN, order("position_open_market", Order.Type.MARKET));
+        journal.writeRemove(OPEN);
+
+        OrderManager orderManager = recover(journal);
+
+        assertEquals(POSITION_EMPTY, orderManager.getState());
+        assertTrue(orderManager.getOrders().isEmpty());
+    }
+
+    @Test
+    void positionWithStopsIsRestored() {
+        OrderJournal journal = new OrderJournal(CLIENT, dir);
+        journal.writeImbalance(IMBALANCE);
+        journal.writeIntent(OPEN, order("position_open_market", Order.Type.MARKET));
+        journal.writeAck(OPEN, "position_open_market");
+        journal.writeState(OPEN_ORDER_PLACED);
+        journal.writeFill("position_open_market");
+        journal.writeState(OPEN_ORDER_FILLED);
+        journal.writeIntent(STOP, order("stop_market", Order.Type.STOP_MARKET));
+        journal.writeAck(STOP, "stop_market");
+        journal.writeIntent(TAKE_0, order("take_limit_0", Order.Type.LIMIT));
+        journal.writeRemove(TAKE_0);
+        journal.writeState(STOP_ORDERS_PLACED);
+
+        OrderManager orderManager = recover(journal);
+
+        assertEquals(STOP_ORDERS_PLACED, orderManager.getState());
+        assertEquals(Set.of(OPEN, STOP), orderManager.getOrders().keySet());
+        assertEquals(Order.Status.FILLED, orderManager.getOrders().get(OPEN).getStatus());
+    }
+
+    @Test
+    void invalidRecordsAreSkipped() throws Exception {
+        Files.writeString(dir.resolve("orders-" + CLIENT + ".jsonl"), """
+                {"time":1,"event":"UNKNOWN"}
+                {"time":2,"event":"STATE","state":"OPEN_ORDER_PLACED"}
+                {"time":3,"event":"STATE","state":"NOT_A_STATE"}
+                {"time":4,"event":"INTENT","orderType":"NOT_A_TYPE","order":{}}
+                {"time":5,"event":"REMOVE"}
+                """);
+
+        OrderManager orderManager = recover(new OrderJournal(CLIENT, dir));
+
+        assertEquals(OPEN_ORDER_PLACED, orderManager.getState());
+        assertTrue(orderManager.getOrders().isEmpty());
+    }
+
+    private static OrderManager recover(OrderJournal journal) {
+        OrderManager orderManager = new OrderManager(mock(APIService.class), journal, CLIENT, "USDT", false,
+                new StrategyStateDispatcher(CLIENT), new Mailbox("account-" + CLIENT, new Log()));
+        orderManager.recover();
+        return orderManager;
+    }
+
+    // no quantity: rounding it asks TradingBot for the symbol precision
+    private static Order order(String clientId, Order.Type type) {
+        Order order = new Order();
+        order.setSymbol("BTCUSDT");
+        order.setSide(Order.Side.SELL);
+        order.setType(type);
+        order.setNewClientOrderId(clientId);
+        return order;
+    }
+}
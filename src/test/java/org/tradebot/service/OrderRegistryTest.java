@@ -0,0 +1,44 @@
+package org.tradebot.service;
+
+import org.junit.jupiter.api.Test;
+import org.tradebot.domain.Order;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.tradebot.service.OrderManager.OrderType.*;
+
+class OrderRegistryTest {
+
+    private final OrderRegistry registry = new OrderRegistry();
+
+    @Test
+    void lookupByClientId() {
+        registry.put(OPEN, order("position_open_market"));
+        registry.put(STOP, order("stop_market"));
+
+        assertEquals(OPEN, registry.typeOf("position_open_market"));
+        assertEquals(STOP, registry.typeOf("stop_market"));
+        assertNull(registry.typeOf("manual"));
+        assertNull(registry.typeOf(null));
+    }
+
+    @Test
+    void replacedAndRemovedOrdersAreUnindexed() {
+        registry.put(CLOSE, order("close_market_1"));
+        registry.put(CLOSE, order("close_market_2"));
+        assertNull(registry.typeOf("close_market_1"));
+        assertEquals(CLOSE, registry.typeOf("close_market_2"));
+
+        assertFalse(registry.putIfAbsent(CLOSE, order("close_market_3")));
+        assertNull(registry.typeOf("close_market_3"));
+
+        assertTrue(registry.remove(CLOSE));
+        assertFalse(registry.remove(CLOSE));
+        assertNull(registry.typeOf("close_market_2"));
+    }
+
+    private static Order order(String clientId) {
+        Order order = new Order();
+        order.setNewClientOrderId(clientId);
+        return order;
+    }
+}
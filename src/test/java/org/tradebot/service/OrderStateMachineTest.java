@@ -0,0 +1,75 @@
+package org.tradebot.service;
+
+import org.junit.jupiter.api.Test;
+import org.tradebot.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.tradebot.service.OrderManager.State.*;
+
+class OrderStateMachineTest {
+
+    private final OrderStateMachine stateMachine = new OrderStateMachine(new Log());
+
+    @Test
+    void fullCycle() {
+        assertEquals(POSITION_EMPTY, stateMachine.transition(OPEN_ORDER_PLACED));
+        assertEquals(OPEN_ORDER_PLACED, stateMachine.transition(OPEN_ORDER_FILLED));
+        assertEquals(OPEN_ORDER_FILLED, stateMachine.transition(STOP_ORDERS_PLACED));
+        assertEquals(STOP_ORDERS_PLACED, stateMachine.transition(FIRST_TAKE_FILLED));
+        assertEquals(FIRST_TAKE_FILLED, stateMachine.transition(BREAK_EVEN_ORDER_CREATED));
+        assertEquals(BREAK_EVEN_ORDER_CREATED, stateMachine.transition(POSITION_EMPTY));
+        assertEquals(POSITION_EMPTY, stateMachine.get());
+    }
+
+    @Test
+    void illegalTransitionIsRejected() {
+        assertNull(stateMachine.transition(STOP_ORDERS_PLACED));
+        assertEquals(POSITION_EMPTY, stateMachine.get());
+
+        stateMachine.reset(FIRST_TAKE_FILLED);
+        assertNull(stateMachine.transition(STOP_ORDERS_PLACED));
+        assertEquals(FIRST_TAKE_FILLED, stateMachine.get());
+    }
+
+    @Test
+    void sameStateIsNotTransition() {
+        assertEquals(POSITION_EMPTY, stateMachine.transition(POSITION_EMPTY));
+        assertEquals(POSITION_EMPTY, stateMachine.get());
+    }
+
+    @Test
+    void onlyOneConcurrentTransitionWins() throws Exception {
+        stateMachine.reset(OPEN_ORDER_FILLED);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+
+        executor.execute(() -> {
+            await(start);
+            if (stateMachine.transition(STOP_ORDERS_PLACED) == OPEN_ORDER_FILLED) applied.incrementAndGet();
+        });
+        executor.execute(() -> {
+            await(start);
+            if (stateMachine.transition(POSITION_EMPTY) == OPEN_ORDER_FILLED) applied.incrementAndGet();
+        });
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, applied.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
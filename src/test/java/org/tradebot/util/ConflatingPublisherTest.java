@@ -0,0 +1,114 @@
+package org.tradebot.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflatingPublisherTest {
+
+    private static final int SIGNALS = 2_000;
+    private static final double LIMITED_RATE = 20;
+    private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AtomicLong value = new AtomicLong();
+    private ConflatingPublisher<Listener, Long> publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new ConflatingPublisher<>("test-publisher", value::get, Listener::accept);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void latestValueIsDeliveredAndRateIsRespected() {
+        Listener fast = new Listener();
+        Listener limited = new Listener();
+        publisher.subscribe(fast, 0);
+        publisher.subscribe(limited, LIMITED_RATE);
+        publisher.start();
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= SIGNALS; i++) {
+            value.set(i);
+            publisher.signal();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(250));
+        }
+        long producing = System.nanoTime() - start;
+
+        awaitTrue(() -> fast.last() == SIGNALS && limited.last() == SIGNALS);
+
+        assertNotDecreasing(fast.values);
+        assertNotDecreasing(limited.values);
+        long minInterval = (long) (TimeUnit.SECONDS.toNanos(1) / LIMITED_RATE);
+        for (int i = 1; i < limited.times.size(); i++) {
+            assertTrue(limited.times.get(i) - limited.times.get(i - 1) >= minInterval - TOLERANCE,
+                    "limited subscriber got updates faster than its rate");
+        }
+        // one delivery per interval of the producing time plus the final latest value
+        assertTrue(limited.values.size() <= producing / minInterval + 2,
+                "limited subscriber got " + limited.values.size() + " updates");
+        assertTrue(fast.values.size() > limited.values.size());
+    }
+
+    @Test
+    void nothingIsDeliveredBeforeStartOrAfterShutdown() {
+        Listener listener = new Listener();
+        publisher.subscribe(listener, 0);
+        value.set(1);
+        publisher.signal();
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(listener.values.isEmpty());
+
+        publisher.start();
+        awaitTrue(() -> listener.last() == 1);
+
+        publisher.shutdown();
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        value.set(2);
+        publisher.signal();
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, listener.last());
+    }
+
+    // the value can be read before its signal, so the same value may arrive twice but never an older one
+    private static void assertNotDecreasing(List<Long> values) {
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i) >= values.get(i - 1), "older value delivered after a newer one");
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static class Listener {
+        private final List<Long> values = new CopyOnWriteArrayList<>();
+        private final List<Long> times = new CopyOnWriteArrayList<>();
+
+        private void accept(Long update) {
+            times.add(System.nanoTime());
+            values.add(update);
+        }
+
+        private long last() {
+            return values.isEmpty() ? 0 : values.getLast();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.tradebot.util;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FanOutSpreadTest {
+
+    private static final String METRIC = "test_order_sent_spread";
+
+    @Test
+    void spreadIsRecordedAfterLastAccount() {
+        Metrics.getInstance().snapshotAndReset();
+        FanOutSpread spread = new FanOutSpread(METRIC, 4);
+        long first = System.nanoTime();
+
+        spread.sent(first + TimeUnit.MILLISECONDS.toNanos(3));
+        spread.skipped();
+        spread.sent(first);
+        assertEquals(0, recorded().getLong("count"));
+
+        spread.sent(first + TimeUnit.MILLISECONDS.toNanos(1));
+        JSONObject recorded = recorded();
+        assertEquals(1, recorded.getLong("count"));
+        assertEquals(3, recorded.getDouble("maxMs"), 0.1);
+    }
+
+    @Test
+    void singleOrderIsNotASpread() {
+        Metrics.getInstance().snapshotAndReset();
+        FanOutSpread spread = new FanOutSpread(METRIC, 2);
+
+        spread.sent(System.nanoTime());
+        spread.skipped();
+
+        assertEquals(0, recorded().getLong("count"));
+    }
+
+    // the histogram stays registered after the first record and is only reset
+    private static JSONObject recorded() {
+        JSONObject latencies = Metrics.getInstance().snapshotAndReset().getJSONObject("latencies");
+        return latencies.has(METRIC) ? latencies.getJSONObject(METRIC) : new JSONObject().put("count", 0);
+    }
+}
@@ -0,0 +1,51 @@
+package org.tradebot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_500_000, histogram.getMean());
+        assertEquals(50_000_000, histogram.getPercentile(50), 50_000_000 / 8.0);
+        assertEquals(99_000_000, histogram.getPercentile(99), 99_000_000 / 8.0);
+        assertEquals(100_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void emptyAndSmallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        histogram.record(3);
+        histogram.record(-1);
+        assertEquals(1, histogram.getCount());
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(1L, histogram.toMap().get("count"));
+    }
+
+    @Test
+    void snapshotMovesValuesAndResets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        histogram.record(2_000);
+
+        LatencyHistogram snapshot = histogram.snapshotAndReset();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(2_000, snapshot.getMax());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+
+        histogram.record(500);
+        assertEquals(500, histogram.getMax());
+    }
+}
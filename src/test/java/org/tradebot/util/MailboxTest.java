@@ -0,0 +1,55 @@
+package org.tradebot.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxTest {
+
+    private final Mailbox mailbox = new Mailbox("test-mailbox", new Log());
+
+    @AfterEach
+    void tearDown() {
+        mailbox.shutdown();
+    }
+
+    @Test
+    void taskFromMailboxThreadRunsAfterQueuedTasks() throws Exception {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch queued = new CountDownLatch(1);
+        CompletableFuture<Void> nested = new CompletableFuture<>();
+
+        mailbox.execute(() -> {
+            awaitQuietly(queued);
+            executed.add("first");
+            mailbox.execute(() -> executed.add("nested")).thenRun(() -> nested.complete(null));
+        });
+        mailbox.execute(() -> executed.add("second"));
+        queued.countDown();
+
+        nested.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second", "nested"), executed);
+    }
+
+    @Test
+    void stoppedMailboxCompletesFutureExceptionally() {
+        mailbox.shutdown();
+        CompletableFuture<Void> future = mailbox.execute(() -> fail("task ran after shutdown"));
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
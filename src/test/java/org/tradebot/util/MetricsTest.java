@@ -0,0 +1,28 @@
+package org.tradebot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    @Test
+    void invalidUsedWeightHeaderIsSkipped() {
+        metrics.recordUsedWeight("42");
+        assertEquals(42, usedWeight());
+
+        assertDoesNotThrow(() -> metrics.recordUsedWeight("not a number"));
+        assertDoesNotThrow(() -> metrics.recordUsedWeight(""));
+        metrics.recordUsedWeight(null);
+        assertEquals(42, usedWeight());
+
+        metrics.recordUsedWeight(" 57 ");
+        assertEquals(57, usedWeight());
+    }
+
+    private long usedWeight() {
+        return metrics.snapshotAndReset().getJSONObject("gauges").getLong(Metrics.REST_USED_WEIGHT);
+    }
+}
@@ -0,0 +1,98 @@
+package org.tradebot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingWindowTest {
+
+    private static final int CAPACITY = 5;
+    private static final double ALPHA = 2. / (CAPACITY + 1);
+
+    @Test
+    void meanMatchesRecalculationAcrossWrapAround() {
+        RollingWindow window = new RollingWindow(CAPACITY);
+        List<Double> added = new ArrayList<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < CAPACITY * 4 + 3; i++) {
+            double value = 97_000 + random.nextGaussian() * 50;
+            window.add(value);
+            added.add(value);
+
+            List<Double> last = added.subList(Math.max(0, added.size() - CAPACITY), added.size());
+            assertEquals(last.size(), window.size());
+            assertEquals(mean(last), window.mean(), 1e-9);
+        }
+    }
+
+    @Test
+    void sumDoesNotDriftOverManyTurns() {
+        RollingWindow window = new RollingWindow(CAPACITY);
+        for (int i = 0; i < 100_000; i++) {
+            window.add(i % 2 == 0 ? 1e12 : 1e-3);
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            window.add(1);
+        }
+        assertEquals(1, window.mean(), 1e-12);
+    }
+
+    @Test
+    void emptyWindow() {
+        RollingWindow window = new RollingWindow(CAPACITY);
+        assertTrue(Double.isNaN(window.mean()));
+        assertTrue(Double.isNaN(window.ewma()));
+        assertEquals(3, window.meanWith(3));
+        assertEquals(3, window.ewmaWith(3));
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    void partiallyFilledWindow() {
+        RollingWindow window = new RollingWindow(CAPACITY);
+        window.add(1);
+        window.add(2);
+
+        assertEquals((1 + 2 + 6) / 3., window.meanWith(6), 1e-12);
+        double ewma = ALPHA * 2 + (1 - ALPHA) * 1;
+        assertEquals(ewma, window.ewma(), 1e-12);
+        assertEquals(ALPHA * 6 + (1 - ALPHA) * ewma, window.ewmaWith(6), 1e-12);
+        assertWithDoesNotChangeWindow(window, 6);
+    }
+
+    @Test
+    void fullWindowDropsOldestValue() {
+        RollingWindow window = new RollingWindow(CAPACITY);
+        for (int i = 1; i <= CAPACITY + 2; i++) {
+            window.add(i);
+        }
+        // window holds 3..7, the value replaces 3
+        assertEquals((4 + 5 + 6 + 7 + 20) / 5., window.meanWith(20), 1e-12);
+        assertWithDoesNotChangeWindow(window, 20);
+    }
+
+    private static void assertWithDoesNotChangeWindow(RollingWindow window, double value) {
+        int size = window.size();
+        double mean = window.mean();
+        double ewma = window.ewma();
+        double meanWith = window.meanWith(value);
+        double ewmaWith = window.ewmaWith(value);
+
+        assertEquals(size, window.size());
+        assertEquals(mean, window.mean());
+        assertEquals(ewma, window.ewma());
+
+        window.add(value);
+        assertEquals(meanWith, window.mean(), 1e-12);
+        assertEquals(ewmaWith, window.ewma(), 1e-12);
+    }
+
+    private static double mean(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+    }
+}